@@ -0,0 +1,44 @@
+import { expect, test, jest } from '@jest/globals';
+
+jest.mock('../src/Globals', () => {
+    const { EventEmitter } = require('events');
+    const emitter = new EventEmitter();
+    const originalAddListener = emitter.addListener.bind(emitter);
+    // @ts-ignore
+    emitter.addListener = (event, listener) => {
+        originalAddListener(event, listener);
+        return { remove: () => emitter.removeListener(event, listener) };
+    };
+    return {
+        __esModule: true,
+        nativeEventEmitter: emitter,
+        getNextId: () => 123,
+    };
+});
+
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+import { nativeEventEmitter } from '../src/Globals';
+
+const connection = { localAddress: '10.0.0.2', localPort: 5000, remoteAddress: '1.2.3.4', remotePort: 1234, remoteFamily: 'IPv4' };
+const timings = { queued: 0.2, network: 0, dns: 1.5, connect: 30, handshake: 0, total: 32 };
+
+test('the connect event sets the timings of the connection phases', () => {
+    const socket = net.createConnection({ port: 1234, host: '1.2.3.4' });
+    expect(socket.connectTimings).toBeUndefined();
+    nativeEventEmitter.emit('connect', { id: 123, connection, timings });
+    expect(socket.connectTimings).toEqual(timings);
+
+    const reconnectTimings = { ...timings, queued: 0, connect: 45, total: 46 };
+    nativeEventEmitter.emit('reconnect', { id: 123, connection, timings: reconnectTimings });
+    expect(socket.connectTimings).toEqual(reconnectTimings);
+    socket.destroy();
+});
+
+test('getConnectTimingStats() should resolve with the native histograms', async () => {
+    const histogram = { count: 1, average: 30, p50: 32, p90: 32, p99: 32, max: 30, buckets: [0, 0, 0, 0, 0, 0, 1] };
+    const stats = { queued: histogram, network: histogram, dns: histogram, connect: histogram, handshake: histogram, total: histogram };
+    // @ts-ignore
+    NativeModules.TcpSockets.getConnectTimingStats.mockReturnValueOnce(Promise.resolve(stats));
+    await expect(net.getConnectTimingStats()).resolves.toEqual(stats);
+});
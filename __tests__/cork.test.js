@@ -0,0 +1,67 @@
+import { expect, test, jest, beforeEach } from '@jest/globals';
+
+jest.mock('../src/Globals', () => {
+    const { EventEmitter } = require('events');
+    const emitter = new EventEmitter();
+    const originalAddListener = emitter.addListener.bind(emitter);
+    // @ts-ignore
+    emitter.addListener = (event, listener) => {
+        originalAddListener(event, listener);
+        return { remove: () => emitter.removeListener(event, listener) };
+    };
+    return {
+        __esModule: true,
+        nativeEventEmitter: emitter,
+        getNextId: () => 123,
+    };
+});
+
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+import { nativeEventEmitter } from '../src/Globals';
+
+const Sockets = NativeModules.TcpSockets;
+
+beforeEach(() => {
+    jest.clearAllMocks();
+});
+
+function emitConnect() {
+    nativeEventEmitter.emit('connect', {
+        id: 123,
+        connection: { localAddress: '127.0.0.1', localPort: 5000, remoteAddress: '1.2.3.4', remotePort: 1234, remoteFamily: 'IPv4' },
+    });
+}
+
+test('cork() before connecting is forwarded once connected', () => {
+    const socket = net.createConnection({ port: 1234, host: '1.2.3.4' });
+    socket.cork();
+    expect(socket.writableCorked).toBe(1);
+    expect(Sockets.cork).not.toHaveBeenCalled();
+    emitConnect();
+    expect(Sockets.cork).toHaveBeenCalledWith(123);
+
+    socket.uncork(true);
+    socket.uncork();
+    expect(socket.writableCorked).toBe(0);
+    expect(Sockets.uncork).toHaveBeenCalledTimes(1);
+    expect(Sockets.uncork).toHaveBeenCalledWith(123, true);
+    socket.destroy();
+    nativeEventEmitter.emit('close', { id: 123 });
+});
+
+test('end() flushes the corked writes before ending', () => {
+    const socket = net.createConnection({ port: 1234, host: '1.2.3.4' });
+    emitConnect();
+    socket.cork();
+    socket.cork();
+    socket.write('a');
+    socket.end();
+    expect(Sockets.uncork).toHaveBeenCalledTimes(2);
+    expect(Sockets.write).toHaveBeenLastCalledWith(123, '', 1);
+    expect(Sockets.end).not.toHaveBeenCalled();
+    nativeEventEmitter.emit('written', { id: 123, msgId: 0 });
+    nativeEventEmitter.emit('written', { id: 123, msgId: 1 });
+    expect(Sockets.end).toHaveBeenCalledWith(123);
+    nativeEventEmitter.emit('close', { id: 123 });
+});
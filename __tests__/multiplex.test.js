@@ -0,0 +1,92 @@
+import { expect, test, jest } from '@jest/globals';
+
+jest.mock('../src/Globals', () => {
+    const { EventEmitter } = require('events');
+    const emitter = new EventEmitter();
+    const originalAddListener = emitter.addListener.bind(emitter);
+    // @ts-ignore
+    emitter.addListener = (event, listener) => {
+        originalAddListener(event, listener);
+        return { remove: () => emitter.removeListener(event, listener) };
+    };
+    return {
+        __esModule: true,
+        nativeEventEmitter: emitter,
+        getNextId: () => 123,
+    };
+});
+
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+import { nativeEventEmitter } from '../src/Globals';
+
+const Sockets = NativeModules.TcpSockets;
+
+function connectedSocket() {
+    const socket = net.createConnection({ port: 1234, host: '1.2.3.4', multiplex: true }, () => {});
+    nativeEventEmitter.emit('connect', {
+        id: 123,
+        connection: { localAddress: '127.0.0.1', localPort: 5000, remoteAddress: '1.2.3.4', remotePort: 1234, remoteFamily: 'IPv4' },
+    });
+    return socket;
+}
+
+test('request() waits for the connection and resolves with the native response', async () => {
+    Sockets.request.mockClear();
+    Sockets.request.mockReturnValueOnce(Promise.resolve(Buffer.from('pong').toString('base64')));
+    const socket = net.createConnection({ port: 1234, host: '1.2.3.4', multiplex: true }, () => {});
+    const response = socket.request('ping', { timeout: 500 });
+    expect(Sockets.request).not.toHaveBeenCalled();
+    nativeEventEmitter.emit('connect', {
+        id: 123,
+        connection: { localAddress: '127.0.0.1', localPort: 5000, remoteAddress: '1.2.3.4', remotePort: 1234, remoteFamily: 'IPv4' },
+    });
+    await expect(response).resolves.toEqual(Buffer.from('pong'));
+    expect(Sockets.request).toHaveBeenCalledWith(123, Buffer.from('ping').toString('base64'), 500);
+    socket.destroy();
+    nativeEventEmitter.emit('close', { id: 123 });
+});
+
+test('request events are answered with respond()', () => {
+    Sockets.respond.mockClear();
+    const socket = connectedSocket();
+    const requests = [];
+    socket.on('request', (requestId, data) => {
+        requests.push([requestId, data.toString()]);
+        socket.respond(requestId, requestId === 1 ? new Error('unknown method') : 'ok');
+    });
+    nativeEventEmitter.emit('request', { id: 123, requestId: 0, data: Buffer.from('a').toString('base64') });
+    nativeEventEmitter.emit('request', { id: 123, requestId: 1, data: Buffer.from('b').toString('base64') });
+    expect(requests).toEqual([
+        [0, 'a'],
+        [1, 'b'],
+    ]);
+    expect(Sockets.respond).toHaveBeenNthCalledWith(1, 123, 0, Buffer.from('ok').toString('base64'), false, 0);
+    expect(Sockets.respond).toHaveBeenNthCalledWith(
+        2,
+        123,
+        1,
+        Buffer.from('unknown method').toString('base64'),
+        true,
+        1
+    );
+    socket.destroy();
+    nativeEventEmitter.emit('close', { id: 123 });
+});
+
+test('raw writes are rejected on multiplexed sockets', () => {
+    Sockets.write.mockClear();
+    Sockets.writev.mockClear();
+    Sockets.end.mockClear();
+    const socket = connectedSocket();
+    expect(() => socket.write('raw')).toThrow('Cannot write raw data to a multiplexed socket');
+    expect(() => socket.writev(['a', 'b'])).toThrow('Cannot write raw data to a multiplexed socket');
+    expect(() => socket.end('bye')).toThrow('Cannot write raw data to a multiplexed socket');
+    expect(Sockets.write).not.toHaveBeenCalled();
+    expect(Sockets.writev).not.toHaveBeenCalled();
+    // Ending without data is still allowed
+    socket.end();
+    expect(Sockets.end).toHaveBeenCalledWith(123);
+    socket.destroy();
+    nativeEventEmitter.emit('close', { id: 123 });
+});
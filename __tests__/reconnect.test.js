@@ -0,0 +1,46 @@
+import { expect, test, jest } from '@jest/globals';
+
+jest.mock('../src/Globals', () => {
+    const { EventEmitter } = require('events');
+    const emitter = new EventEmitter();
+    const originalAddListener = emitter.addListener.bind(emitter);
+    // @ts-ignore
+    emitter.addListener = (event, listener) => {
+        originalAddListener(event, listener);
+        return { remove: () => emitter.removeListener(event, listener) };
+    };
+    return {
+        __esModule: true,
+        nativeEventEmitter: emitter,
+        getNextId: () => 123,
+    };
+});
+
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+import { nativeEventEmitter } from '../src/Globals';
+
+const connection = { localAddress: '10.0.0.2', localPort: 5000, remoteAddress: '1.2.3.4', remotePort: 1234, remoteFamily: 'IPv4' };
+
+test('a reconnecting socket keeps its id and updates its addresses', () => {
+    const options = { port: 1234, host: '1.2.3.4', reconnect: { initialDelay: 100, maxAttempts: 0 } };
+    const socket = net.createConnection(options);
+    expect(NativeModules.TcpSockets.connect).toHaveBeenLastCalledWith(123, '1.2.3.4', 1234, expect.objectContaining(options));
+    nativeEventEmitter.emit('connect', { id: 123, connection });
+    const reconnecting = jest.fn();
+    const reconnect = jest.fn();
+    const error = jest.fn();
+    socket.on('reconnecting', reconnecting);
+    socket.on('reconnect', reconnect);
+    socket.on('error', error);
+
+    nativeEventEmitter.emit('reconnecting', { id: 123, attempt: 1, delay: 80, error: 'Connection reset' });
+    expect(reconnecting).toHaveBeenCalledWith({ attempt: 1, delay: 80, error: 'Connection reset' });
+    expect(socket.destroyed).toBe(false);
+
+    nativeEventEmitter.emit('reconnect', { id: 123, connection: { ...connection, localAddress: '192.168.1.7', localPort: 6000 } });
+    expect(reconnect).toHaveBeenCalledTimes(1);
+    expect(socket.localAddress).toBe('192.168.1.7');
+    expect(socket.localPort).toBe(6000);
+    expect(error).not.toHaveBeenCalled();
+});
@@ -16,6 +16,7 @@ jest.mock('../src/Globals', () => {
     };
 });
 
+import { NativeModules } from 'react-native';
 import net from '../src/index';
 import { nativeEventEmitter } from '../src/Globals';
 
@@ -51,3 +52,81 @@ test('server option pauseOnConnect should pause the socket', () => {
         });
     });
 });
+
+test('connections should be tagged with the listener they arrived on', () => {
+    const server = net.createServer();
+    server.listen({ port: 12345, listeners: [{ port: 12346, host: '::' }] });
+
+    nativeEventEmitter.emit('listening', {
+        id: 123,
+        connection: {
+            localAddress: '0.0.0.0',
+            localPort: 12345,
+            localFamily: 'IPv4',
+            listeners: [
+                { localAddress: '0.0.0.0', localPort: 12345, localFamily: 'IPv4', tls: false },
+                { localAddress: '::', localPort: 12346, localFamily: 'IPv6', tls: false },
+            ],
+        },
+    });
+    expect(server.addresses()).toEqual([
+        { address: '0.0.0.0', port: 12345, family: 'IPv4' },
+        { address: '::', port: 12346, family: 'IPv6' },
+    ]);
+
+    /** @type {import('../src/Socket').default[]} */
+    const sockets = [];
+    server.on('connection', (socket) => sockets.push(socket));
+    nativeEventEmitter.emit('connection', {
+        id: 123,
+        info: {
+            id: 457,
+            listener: 1,
+            connection: {
+                localAddress: '::1',
+                localPort: 12346,
+                remoteAddress: '::1',
+                remotePort: 54321,
+                remoteFamily: 'IPv6',
+            },
+        },
+    });
+    expect(sockets).toHaveLength(1);
+    expect(sockets[0].listenerIndex).toBe(1);
+});
+
+test('broadcast() sends the data once with the ids of the filtered connections', async () => {
+    const server = net.createServer();
+    server.listen(12345);
+    /** @type {import('../src/Socket').default[]} */
+    const sockets = [];
+    server.on('connection', (socket) => sockets.push(socket));
+    nativeEventEmitter.emit('connection', {
+        id: 123,
+        info: {
+            id: 458,
+            connection: {
+                localAddress: '127.0.0.1',
+                localPort: 12345,
+                remoteAddress: '127.0.0.1',
+                remotePort: 54322,
+                remoteFamily: 'IPv4',
+            },
+        },
+    });
+    NativeModules.TcpSockets.broadcast.mockResolvedValueOnce({ written: 2, failed: 0 });
+    await expect(server.broadcast('tick', { exclude: sockets })).resolves.toEqual({ written: 2, failed: 0 });
+    expect(NativeModules.TcpSockets.broadcast).toHaveBeenCalledWith(
+        123,
+        'dGljaw==',
+        { include: undefined, exclude: [458] }
+    );
+});
+
+test('broadcast() rejects on multiplex servers', async () => {
+    NativeModules.TcpSockets.broadcast.mockClear();
+    const server = net.createServer();
+    server.listen({ port: 12345, multiplex: true });
+    await expect(server.broadcast('tick')).rejects.toThrow('Cannot broadcast raw data to multiplexed sockets');
+    expect(NativeModules.TcpSockets.broadcast).not.toHaveBeenCalled();
+});
@@ -0,0 +1,73 @@
+import { expect, test } from '@jest/globals';
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+
+const Sockets = NativeModules.TcpSockets;
+
+const tuningOptions = {
+    receiveBufferSize: 1 << 20,
+    sendBufferSize: 1 << 20,
+    readBufferSize: 65536,
+    linger: 0,
+    trafficClass: 0x10,
+};
+
+test('connect() should forward socket tuning options to the native module', () => {
+    Sockets.connect.mockClear();
+    const socket = net.createConnection({ port: 1234, host: '1.2.3.4', ...tuningOptions }, () => {});
+    expect(Sockets.connect).toHaveBeenCalledWith(
+        // @ts-ignore
+        socket._id,
+        '1.2.3.4',
+        1234,
+        expect.objectContaining(tuningOptions)
+    );
+});
+
+test('listen() should forward socket tuning options to the native module', () => {
+    Sockets.listen.mockClear();
+    const server = net.createServer();
+    server.listen({ port: 1234, ...tuningOptions });
+    expect(Sockets.listen).toHaveBeenCalledWith(
+        // @ts-ignore
+        server._id,
+        expect.objectContaining({ port: 1234, host: '0.0.0.0', ...tuningOptions })
+    );
+});
+
+test('listen() should forward admission limits and maxConnections to the native module', () => {
+    Sockets.listen.mockClear();
+    const server = net.createServer();
+    server.maxConnections = 100;
+    server.listen({ port: 1234, maxConnectionsPerIp: 4, acceptRate: 50, acceptBurst: 10 });
+    expect(Sockets.listen).toHaveBeenCalledWith(
+        // @ts-ignore
+        server._id,
+        expect.objectContaining({ maxConnections: 100, maxConnectionsPerIp: 4, acceptRate: 50, acceptBurst: 10 })
+    );
+});
+
+test('getStats() should resolve with the native server stats', async () => {
+    const stats = { connections: 1, accepted: 3, rejectedMaxConnections: 2, rejectedPerIp: 0, throttledAccepts: 0 };
+    Sockets.getServerStats.mockReturnValueOnce(Promise.resolve(stats));
+    const server = net.createServer();
+    await expect(server.getStats()).resolves.toEqual(stats);
+    // @ts-ignore
+    expect(Sockets.getServerStats).toHaveBeenCalledWith(server._id);
+});
+
+test('setBandwidth() should forward the limits of the socket, 0 for none', () => {
+    Sockets.setBandwidth.mockClear();
+    const socket = new net.Socket();
+    socket.setBandwidth({ read: 65536 });
+    // @ts-ignore
+    expect(Sockets.setBandwidth).toHaveBeenCalledWith(socket._id, 65536, 0);
+});
+
+test('setGlobalBandwidth() and getBandwidthStats() should use the global limits', async () => {
+    const stats = { readThrottledTime: 0, writeThrottledTime: 12.5 };
+    Sockets.getGlobalBandwidthStats.mockReturnValueOnce(Promise.resolve(stats));
+    net.setGlobalBandwidth({ read: 1000, write: 2000 });
+    expect(Sockets.setGlobalBandwidth).toHaveBeenCalledWith(1000, 2000);
+    await expect(net.getBandwidthStats()).resolves.toEqual(stats);
+});
@@ -0,0 +1,60 @@
+import { expect, test, jest } from '@jest/globals';
+import net from '../src/index';
+import { nativeEventEmitter } from '../src/Globals';
+import { NativeModules } from 'react-native';
+
+const Sockets = NativeModules.TcpSockets;
+
+jest.mock('../src/Globals', () => {
+    const { EventEmitter } = require('events');
+    const emitter = new EventEmitter();
+    const originalAddListener = emitter.addListener.bind(emitter);
+    // @ts-ignore
+    emitter.addListener = (event, listener) => {
+        originalAddListener(event, listener);
+        return { remove: () => emitter.removeListener(event, listener) };
+    };
+
+    let idCounter = 2000;
+    return {
+        __esModule: true,
+        nativeEventEmitter: emitter,
+        getNextId: () => idCounter++,
+    };
+});
+
+const connection = {
+    localAddress: '127.0.0.1',
+    localPort: 54321,
+    remoteAddress: '127.0.0.1',
+    remotePort: 12345,
+    remoteFamily: 'IPv4',
+};
+
+test('setTimeout() should be forwarded to the native module once connected', () => {
+    Sockets.setTimeout.mockClear();
+    const socket = net.createConnection({ port: 12345 }, () => {});
+    socket.setTimeout(1000);
+    expect(Sockets.setTimeout).not.toHaveBeenCalled();
+
+    // @ts-ignore
+    nativeEventEmitter.emit('connect', { id: socket._id, connection });
+    // @ts-ignore
+    expect(Sockets.setTimeout).toHaveBeenCalledWith(socket._id, 1000);
+
+    socket.setTimeout(0);
+    // @ts-ignore
+    expect(Sockets.setTimeout).toHaveBeenLastCalledWith(socket._id, 0);
+});
+
+test('native timeout events should be emitted on the socket', () => {
+    const socket = net.createConnection({ port: 12345 }, () => {});
+    // @ts-ignore
+    nativeEventEmitter.emit('connect', { id: socket._id, connection });
+    const onTimeout = jest.fn();
+    socket.setTimeout(1000, onTimeout);
+
+    // @ts-ignore
+    nativeEventEmitter.emit('timeout', { id: socket._id });
+    expect(onTimeout).toHaveBeenCalledTimes(1);
+});
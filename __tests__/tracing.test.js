@@ -0,0 +1,19 @@
+import { expect, test } from '@jest/globals';
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+
+const Sockets = NativeModules.TcpSockets;
+
+test('setTracing() should pass the mode to the native module', () => {
+    net.setTracing({ mode: 'buffer', capacity: 1024 });
+    expect(Sockets.setTracing).toHaveBeenLastCalledWith({ mode: 'buffer', capacity: 1024 });
+    net.setTracing({ mode: 'off' });
+    expect(Sockets.setTracing).toHaveBeenLastCalledWith({ mode: 'off' });
+});
+
+test('dumpTrace() should resolve with the native spans', async () => {
+    const dump = { spans: [{ name: 'tcp write-to-ack', id: 5, start: 1200.5, duration: 0.3 }], dropped: 0 };
+    // @ts-ignore
+    Sockets.dumpTrace.mockReturnValueOnce(Promise.resolve(dump));
+    await expect(net.dumpTrace()).resolves.toEqual(dump);
+});
@@ -0,0 +1,112 @@
+import { expect, test, jest, beforeEach } from '@jest/globals';
+
+jest.mock('../src/Globals', () => {
+    const { EventEmitter } = require('events');
+    const emitter = new EventEmitter();
+    const originalAddListener = emitter.addListener.bind(emitter);
+    // @ts-ignore
+    emitter.addListener = (event, listener) => {
+        originalAddListener(event, listener);
+        return { remove: () => emitter.removeListener(event, listener) };
+    };
+    return {
+        __esModule: true,
+        nativeEventEmitter: emitter,
+        getNextId: () => 123,
+    };
+});
+
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+import { nativeEventEmitter } from '../src/Globals';
+
+const Sockets = NativeModules.TcpSockets;
+
+beforeEach(() => {
+    jest.clearAllMocks();
+});
+
+function emitListening() {
+    nativeEventEmitter.emit('listening', {
+        id: 123,
+        connection: { localAddress: '0.0.0.0', localPort: 41234, localFamily: 'IPv4' },
+    });
+}
+
+/**
+ * @param {import('../src/UdpSocket').default} socket
+ */
+function closeSocket(socket) {
+    socket.close();
+    nativeEventEmitter.emit('close', { id: 123, hadError: false });
+}
+
+test('sends of the same tick are coalesced into one native call', async () => {
+    const socket = net.createSocket('udp4');
+    socket.bind(41234);
+    emitListening();
+    expect(socket.address()).toEqual({ address: '0.0.0.0', port: 41234, family: 'IPv4' });
+
+    const callback = jest.fn();
+    socket.send('a', 1000, '10.0.0.1', callback);
+    socket.send(Buffer.from('bc'), 1001, callback);
+    await Promise.resolve();
+
+    expect(Sockets.sendDatagrams).toHaveBeenCalledTimes(1);
+    expect(Sockets.sendDatagrams).toHaveBeenCalledWith(
+        123,
+        [
+            { data: Buffer.from('a').toString('base64'), port: 1000, address: '10.0.0.1' },
+            { data: Buffer.from('bc').toString('base64'), port: 1001, address: '127.0.0.1' },
+        ],
+        0
+    );
+    nativeEventEmitter.emit('written', { id: 123, msgId: 0, err: null });
+    expect(callback).toHaveBeenNthCalledWith(1, null, 1);
+    expect(callback).toHaveBeenNthCalledWith(2, null, 2);
+    closeSocket(socket);
+});
+
+test('send binds the socket and waits for it to listen', async () => {
+    const socket = net.createSocket({ type: 'udp4' });
+    socket.send('hello', 1000);
+    expect(Sockets.bindDatagram).toHaveBeenCalledWith(123, { port: 0, address: '0.0.0.0', reuseAddress: false });
+    await Promise.resolve();
+    expect(Sockets.sendDatagrams).not.toHaveBeenCalled();
+
+    emitListening();
+    await Promise.resolve();
+    expect(Sockets.sendDatagrams).toHaveBeenCalledTimes(1);
+    closeSocket(socket);
+});
+
+test('batched message events are emitted one datagram at a time', () => {
+    const messages = [];
+    const socket = net.createSocket('udp4', (msg, rinfo) => messages.push([msg.toString(), rinfo]));
+    socket.bind();
+    emitListening();
+    nativeEventEmitter.emit('message', {
+        id: 123,
+        messages: [
+            { data: Buffer.from('one').toString('base64'), address: '10.0.0.2', port: 5000, family: 'IPv4' },
+            { data: Buffer.from('two').toString('base64'), address: '10.0.0.3', port: 5001, family: 'IPv4' },
+        ],
+    });
+    expect(messages).toEqual([
+        ['one', { address: '10.0.0.2', port: 5000, family: 'IPv4', size: 3 }],
+        ['two', { address: '10.0.0.3', port: 5001, family: 'IPv4', size: 3 }],
+    ]);
+    closeSocket(socket);
+});
+
+test('close fails the queued sends', () => {
+    const socket = net.createSocket('udp4');
+    const callback = jest.fn();
+    socket.bind();
+    socket.send('late', 1000, callback);
+    socket.close();
+    expect(Sockets.closeDatagram).toHaveBeenCalledWith(123);
+    nativeEventEmitter.emit('close', { id: 123, hadError: false });
+    expect(callback).toHaveBeenCalledWith(expect.any(Error));
+    expect(() => socket.send('again', 1000)).toThrow();
+});
@@ -0,0 +1,88 @@
+import { expect, test, jest, beforeEach } from '@jest/globals';
+
+jest.mock('../src/Globals', () => {
+    const { EventEmitter } = require('events');
+    const emitter = new EventEmitter();
+    const originalAddListener = emitter.addListener.bind(emitter);
+    // @ts-ignore
+    emitter.addListener = (event, listener) => {
+        originalAddListener(event, listener);
+        return { remove: () => emitter.removeListener(event, listener) };
+    };
+    return {
+        __esModule: true,
+        nativeEventEmitter: emitter,
+        getNextId: () => 123,
+    };
+});
+
+import { NativeModules } from 'react-native';
+import net from '../src/index';
+import { nativeEventEmitter } from '../src/Globals';
+
+beforeEach(() => {
+    jest.clearAllMocks();
+});
+
+/**
+ * @param {import('../src/Socket').WriteAcks} writeAcks
+ */
+function connect(writeAcks) {
+    const socket = net.createConnection({ port: 1234, host: '1.2.3.4', writeAcks });
+    nativeEventEmitter.emit('connect', {
+        id: 123,
+        connection: { localAddress: '127.0.0.1', localPort: 5000, remoteAddress: '1.2.3.4', remotePort: 1234, remoteFamily: 'IPv4' },
+    });
+    return socket;
+}
+
+test('a cumulative acknowledgement completes every earlier write', () => {
+    const socket = connect('cumulative');
+    socket.writableHighWaterMark = 4;
+    const callback = jest.fn();
+    const drain = jest.fn();
+    socket.on('drain', drain);
+    socket.write('ab', undefined, callback);
+    socket.write('cd', undefined, callback);
+    socket.write('ef', undefined, callback);
+    expect(socket.writableNeedDrain).toBe(true);
+
+    nativeEventEmitter.emit('written', { id: 123, msgId: 1 });
+    expect(callback).toHaveBeenCalledTimes(2);
+    expect(drain).not.toHaveBeenCalled();
+
+    nativeEventEmitter.emit('written', { id: 123, msgId: 2, err: 'Broken pipe' });
+    expect(callback).toHaveBeenCalledTimes(3);
+    expect(callback).toHaveBeenLastCalledWith(new Error('Broken pipe'));
+    expect(drain).toHaveBeenCalledTimes(1);
+    expect(socket.writableNeedDrain).toBe(false);
+    socket.destroy();
+    nativeEventEmitter.emit('close', { id: 123 });
+});
+
+test('fire-and-forget writes do not wait for an acknowledgement', async () => {
+    const socket = connect('none');
+    socket.writableHighWaterMark = 1;
+    const callback = jest.fn();
+    expect(socket.write('abc', undefined, callback)).toBe(true);
+    await Promise.resolve();
+    expect(callback).toHaveBeenCalledWith();
+    socket.destroy();
+    nativeEventEmitter.emit('close', { id: 123 });
+});
+
+test('a prioritized write is only completed by its own acknowledgement', () => {
+    const socket = connect('cumulative');
+    const callback = jest.fn();
+    socket.write('bulk', { priority: 'low' }, () => callback('low'));
+    socket.write('data', 'utf8', () => callback('normal'));
+    expect(NativeModules.TcpSockets.writeWithPriority).toHaveBeenCalledWith(123, 'YnVsaw==', 0, 'low');
+    expect(NativeModules.TcpSockets.write).toHaveBeenLastCalledWith(123, 'ZGF0YQ==', 1);
+
+    nativeEventEmitter.emit('written', { id: 123, msgId: 1 });
+    expect(callback.mock.calls).toEqual([['normal']]);
+    nativeEventEmitter.emit('written', { id: 123, msgId: 0 });
+    expect(callback.mock.calls).toEqual([['normal'], ['low']]);
+    socket.destroy();
+    nativeEventEmitter.emit('close', { id: 123 });
+});
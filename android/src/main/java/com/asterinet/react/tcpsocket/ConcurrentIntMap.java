@@ -0,0 +1,173 @@
+package com.asterinet.react.tcpsocket;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open-addressing hash map keyed by primitive `int`s.
+ * <p>
+ * Lookups are lock-free: they read an immutable entry from the current table with a single
+ * volatile load per probe and never box the key. Mutations are serialized by the map lock and
+ * publish either a single entry or, when the table grows, a whole new table.
+ */
+final class ConcurrentIntMap<V> {
+    private static final int MIN_CAPACITY = 16;
+    private static final Entry<Object> TOMBSTONE = new Entry<>(0, null);
+
+    private volatile AtomicReferenceArray<Entry<V>> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+    // Guarded by this
+    private int size;
+    private int usedSlots;
+
+    private static final class Entry<V> {
+        final int key;
+        final V value;
+
+        Entry(int key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    @Nullable
+    V get(int key) {
+        final AtomicReferenceArray<Entry<V>> tab = table;
+        final int mask = tab.length() - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> entry = tab.get(i);
+            if (entry == null) return null;
+            if (entry.key == key && entry != TOMBSTONE) return entry.value;
+        }
+    }
+
+    /**
+     * @return the previous value associated with `key`, or `null`
+     */
+    @Nullable
+    synchronized V put(int key, V value) {
+        if (value == null) throw new NullPointerException("value");
+        if ((usedSlots + 1) * 2 > table.length()) rehash();
+        final AtomicReferenceArray<Entry<V>> tab = table;
+        final int mask = tab.length() - 1;
+        int free = -1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> entry = tab.get(i);
+            if (entry == null) {
+                if (free < 0) {
+                    free = i;
+                    usedSlots++;
+                }
+                break;
+            }
+            if (entry == TOMBSTONE) {
+                if (free < 0) free = i;
+            } else if (entry.key == key) {
+                tab.set(i, new Entry<>(key, value));
+                return entry.value;
+            }
+        }
+        tab.set(free, new Entry<>(key, value));
+        size++;
+        return null;
+    }
+
+    /**
+     * @return `false` if `key` was already mapped
+     */
+    synchronized boolean putIfAbsent(int key, V value) {
+        if (get(key) != null) return false;
+        put(key, value);
+        return true;
+    }
+
+    @Nullable
+    synchronized V remove(int key) {
+        final AtomicReferenceArray<Entry<V>> tab = table;
+        final int mask = tab.length() - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> entry = tab.get(i);
+            if (entry == null) return null;
+            if (entry.key == key && entry != TOMBSTONE) {
+                tab.set(i, tombstone());
+                size--;
+                return entry.value;
+            }
+        }
+    }
+
+    /**
+     * Removes `key` only if it is still mapped to `value`.
+     */
+    synchronized boolean remove(int key, V value) {
+        if (get(key) != value) return false;
+        remove(key);
+        return true;
+    }
+
+    /**
+     * @return the values mapped when the table is read, without blocking mutations. A value added
+     * or removed concurrently may or may not be included.
+     */
+    List<V> values() {
+        final AtomicReferenceArray<Entry<V>> tab = table;
+        final List<V> values = new ArrayList<>();
+        for (int j = 0; j < tab.length(); j++) {
+            Entry<V> entry = tab.get(j);
+            if (entry != null && entry != TOMBSTONE) values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Empties the map.
+     *
+     * @return the values that were mapped
+     */
+    synchronized List<V> removeAll() {
+        final AtomicReferenceArray<Entry<V>> oldTab = table;
+        final List<V> values = new ArrayList<>(size);
+        for (int j = 0; j < oldTab.length(); j++) {
+            Entry<V> entry = oldTab.get(j);
+            if (entry != null && entry != TOMBSTONE) values.add(entry.value);
+        }
+        table = new AtomicReferenceArray<>(MIN_CAPACITY);
+        size = 0;
+        usedSlots = 0;
+        return values;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void rehash() {
+        final AtomicReferenceArray<Entry<V>> oldTab = table;
+        int capacity = MIN_CAPACITY;
+        while (capacity < (size + 1) * 4) capacity <<= 1;
+        final AtomicReferenceArray<Entry<V>> newTab = new AtomicReferenceArray<>(capacity);
+        final int mask = capacity - 1;
+        for (int j = 0; j < oldTab.length(); j++) {
+            Entry<V> entry = oldTab.get(j);
+            if (entry == null || entry == TOMBSTONE) continue;
+            int i = hash(entry.key) & mask;
+            while (newTab.get(i) != null) i = (i + 1) & mask;
+            newTab.set(i, entry);
+        }
+        usedSlots = size;
+        table = newTab;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Entry<V> tombstone() {
+        return (Entry<V>) TOMBSTONE;
+    }
+
+    private static int hash(int key) {
+        // Socket ids are mostly sequential, spread them across the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
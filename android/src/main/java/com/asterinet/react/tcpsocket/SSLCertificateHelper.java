@@ -32,7 +32,6 @@ import java.util.Locale;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLPeerUnverifiedException;
-import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
@@ -63,7 +62,10 @@ final class SSLCertificateHelper {
         return ctx.getSocketFactory();
     }
 
-    static SSLServerSocketFactory createServerSocketFactory(Context context, @NonNull final String keyStoreResourceUri) throws GeneralSecurityException, IOException {
+    /**
+     * Creates the TLS context of a server, to be used in server mode on accepted sockets.
+     */
+    static SSLContext createServerSSLContext(Context context, @NonNull final String keyStoreResourceUri) throws GeneralSecurityException, IOException {
         char[] password = "".toCharArray();
 
         InputStream keyStoreInput = getRawResourceStream(context, keyStoreResourceUri);
@@ -76,8 +78,7 @@ final class SSLCertificateHelper {
 
         SSLContext sslContext = SSLContext.getInstance("TLS");
         sslContext.init(keyManagerFactory.getKeyManagers(), new TrustManager[]{new BlindTrustManager()}, null);
-
-        return sslContext.getServerSocketFactory();
+        return sslContext;
     }
 
     static boolean hasIdentity(ReadableMap options) {
@@ -0,0 +1,71 @@
+package com.asterinet.react.tcpsocket;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the bytes per second going one way through one or more sockets.
+ * <p>
+ * Every socket has a limiter for its reads and one for its writes, and is also subject to the
+ * global limiters shared by every socket of the process. The socket waits for the most restrictive
+ * of the two before reading or writing more: a throttled socket stops reading, so the peer is
+ * slowed down by the TCP window instead of data piling up in memory.
+ */
+final class TcpBandwidthLimiter {
+    static final TcpBandwidthLimiter GLOBAL_READ = new TcpBandwidthLimiter();
+    static final TcpBandwidthLimiter GLOBAL_WRITE = new TcpBandwidthLimiter();
+
+    // Bytes the bucket holds, as a fraction of a second of traffic
+    private static final double BURST_SECONDS = 0.25;
+    // Sleeps are split so that a closed socket stops waiting soon
+    private static final long MAX_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Nullable
+    private volatile TcpTokenBucket bucket;
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    /**
+     * Replaces the limit, `0` or less disables it. Takes effect for the next read or write.
+     */
+    void setRate(double bytesPerSecond) {
+        bucket = bytesPerSecond > 0 ? new TcpTokenBucket(bytesPerSecond, bytesPerSecond * BURST_SECONDS) : null;
+    }
+
+    boolean isLimited() {
+        return bucket != null;
+    }
+
+    /**
+     * @return the total time spent waiting for this limiter
+     */
+    long getThrottledNanos() {
+        return throttledNanos.get();
+    }
+
+    private long reserve(int bytes) {
+        final TcpTokenBucket current = bucket;
+        return current != null ? current.reserve(bytes) : 0;
+    }
+
+    interface ClosedCheck {
+        boolean isClosed();
+    }
+
+    /**
+     * Accounts for `bytes` on both limiters and waits until the most restrictive one allows them.
+     */
+    static void pace(TcpBandwidthLimiter own, TcpBandwidthLimiter global, int bytes, ClosedCheck closedCheck)
+            throws InterruptedException {
+        final long ownDelay = own.reserve(bytes);
+        final long globalDelay = global.reserve(bytes);
+        if (ownDelay > 0) own.throttledNanos.addAndGet(ownDelay);
+        if (globalDelay > 0) global.throttledNanos.addAndGet(globalDelay);
+        final long deadline = System.nanoTime() + Math.max(ownDelay, globalDelay);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !closedCheck.isClosed()) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, MAX_SLEEP_NANOS));
+        }
+    }
+}
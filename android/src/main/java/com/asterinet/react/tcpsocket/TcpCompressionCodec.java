@@ -0,0 +1,285 @@
+package com.asterinet.react.tcpsocket;
+
+import android.os.Debug;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib compression between a {@link TcpSocketClient} and the wire.
+ * <p>
+ * In {@link #MODE_STREAM} both directions are a single zlib stream and every write is flushed, so
+ * the peer can decode it as soon as it arrives. In {@link #MODE_FRAME} every write is compressed
+ * on its own and sent as a frame prefixed by its big-endian compressed length, and every frame is
+ * delivered to JS as a single `data` event. An optional preset dictionary primes the compressor of
+ * each stream or frame, which is what makes small frames compress well.
+ * <p>
+ * The codec is the first handler of the pipeline of the socket. {@link #encode} is only called by
+ * the write thread of the socket and {@link #decode} by its receiver thread. The counters may be
+ * read from any thread.
+ */
+final class TcpCompressionCodec extends TcpHandler {
+    static final int MODE_STREAM = 0;
+    static final int MODE_FRAME = 1;
+    private static final int FRAME_HEADER_SIZE = 4;
+
+    interface Sink {
+        void onData(byte[] data, int offset, int length) throws IOException;
+    }
+
+    private final int mode;
+    @Nullable
+    private final byte[] dictionary;
+    private final int maxFrameSize;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    // Write thread state
+    private byte[] deflateBuffer = new byte[8192];
+    // Receiver thread state
+    private final byte[] inflateBuffer;
+    private final ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+    @Nullable
+    private byte[] frame;
+    private int frameOffset;
+    @Nullable
+    private Sink readSink;
+
+    // Each counter has a single writer thread
+    private volatile long uncompressedBytesWritten;
+    private volatile long compressedBytesWritten;
+    private volatile long compressedBytesRead;
+    private volatile long uncompressedBytesRead;
+    private volatile long compressNanos;
+    private volatile long decompressNanos;
+
+    /**
+     * @param level        {@link Deflater} compression level
+     * @param dictionary   preset dictionary, must be the same on both peers
+     * @param maxFrameSize largest compressed or decompressed frame accepted in frame mode
+     * @param chunkSize    largest `data` event emitted in stream mode
+     */
+    TcpCompressionCodec(int mode, int level, @Nullable byte[] dictionary, int maxFrameSize, int chunkSize) {
+        this.mode = mode;
+        this.dictionary = dictionary;
+        this.maxFrameSize = maxFrameSize;
+        deflater = new Deflater(level);
+        inflater = new Inflater();
+        inflateBuffer = new byte[chunkSize];
+        if (mode == MODE_STREAM && dictionary != null) deflater.setDictionary(dictionary);
+    }
+
+    @Override
+    public void onRead(final Context ctx, byte[] data, int offset, int length) throws IOException {
+        if (readSink == null) {
+            readSink = new Sink() {
+                @Override
+                public void onData(byte[] data, int offset, int length) throws IOException {
+                    ctx.fireRead(data, offset, length);
+                }
+            };
+        }
+        decode(data, offset, length, readSink);
+    }
+
+    @Override
+    public void onWrite(Context ctx, byte[] data) throws IOException {
+        ctx.write(encode(data));
+    }
+
+    @Override
+    public void onInputClosed(Context ctx) {
+        endDecoder();
+    }
+
+    @Override
+    public void onOutputClosed(Context ctx) {
+        endEncoder();
+    }
+
+    /**
+     * Compresses data about to be written.
+     */
+    byte[] encode(byte[] data) {
+        final long start = Debug.threadCpuTimeNanos();
+        int length;
+        if (mode == MODE_FRAME) {
+            deflater.reset();
+            if (dictionary != null) deflater.setDictionary(dictionary);
+            deflater.setInput(data);
+            deflater.finish();
+            length = FRAME_HEADER_SIZE;
+            while (!deflater.finished()) {
+                length += deflater.deflate(ensureDeflateCapacity(length), length, deflateBuffer.length - length);
+            }
+            ByteBuffer.wrap(deflateBuffer).putInt(0, length - FRAME_HEADER_SIZE);
+        } else {
+            deflater.setInput(data);
+            length = 0;
+            int available;
+            int count;
+            // The output is complete once SYNC_FLUSH leaves room in the buffer
+            do {
+                available = ensureDeflateCapacity(length).length - length;
+                count = deflater.deflate(deflateBuffer, length, available, Deflater.SYNC_FLUSH);
+                length += count;
+            } while (count == available);
+        }
+        final byte[] encoded = Arrays.copyOf(deflateBuffer, length);
+        uncompressedBytesWritten += data.length;
+        compressedBytesWritten += encoded.length;
+        if (start >= 0) compressNanos += Debug.threadCpuTimeNanos() - start;
+        return encoded;
+    }
+
+    private byte[] ensureDeflateCapacity(int length) {
+        if (deflateBuffer.length - length < 64) {
+            deflateBuffer = Arrays.copyOf(deflateBuffer, deflateBuffer.length * 2);
+        }
+        return deflateBuffer;
+    }
+
+    /**
+     * Decompresses data read from the socket and hands it to `sink`. The buffers given to `sink`
+     * are reused, so it must copy what it keeps.
+     *
+     * @throws IOException if the data is not valid compressed data
+     */
+    void decode(byte[] data, int offset, int length, Sink sink) throws IOException {
+        final long start = Debug.threadCpuTimeNanos();
+        compressedBytesRead += length;
+        try {
+            if (mode == MODE_FRAME) {
+                decodeFrames(data, offset, length, sink);
+            } else {
+                inflater.setInput(data, offset, length);
+                inflate(sink);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data: " + e.getMessage(), e);
+        } finally {
+            if (start >= 0) decompressNanos += Debug.threadCpuTimeNanos() - start;
+        }
+    }
+
+    private void inflate(Sink sink) throws DataFormatException, IOException {
+        while (true) {
+            final int count = inflater.inflate(inflateBuffer);
+            if (count > 0) {
+                uncompressedBytesRead += count;
+                sink.onData(inflateBuffer, 0, count);
+            } else if (inflater.needsDictionary()) {
+                if (dictionary == null) throw new DataFormatException("Missing preset dictionary");
+                inflater.setDictionary(dictionary);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void decodeFrames(byte[] data, int offset, int length, Sink sink) throws DataFormatException, IOException {
+        final int end = offset + length;
+        while (offset < end) {
+            if (frame == null) {
+                final int count = Math.min(frameHeader.remaining(), end - offset);
+                frameHeader.put(data, offset, count);
+                offset += count;
+                if (frameHeader.hasRemaining()) return;
+                final int frameLength = frameHeader.getInt(0);
+                if (frameLength < 0 || frameLength > maxFrameSize) {
+                    throw new IOException("Compressed frame of " + (frameLength & 0xffffffffL) + " bytes exceeds maxFrameSize");
+                }
+                frame = new byte[frameLength];
+                frameOffset = 0;
+            }
+            final int count = Math.min(frame.length - frameOffset, end - offset);
+            System.arraycopy(data, offset, frame, frameOffset, count);
+            frameOffset += count;
+            offset += count;
+            if (frameOffset == frame.length) {
+                final byte[] compressed = frame;
+                frame = null;
+                frameHeader.clear();
+                inflateFrame(compressed, sink);
+            }
+        }
+    }
+
+    private void inflateFrame(byte[] compressed, Sink sink) throws DataFormatException, IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        // One byte of headroom, the inflater may only report the end of a frame filling the whole
+        // buffer on the next call
+        final int capacity = (int) Math.min((long) maxFrameSize + 1, Integer.MAX_VALUE);
+        byte[] output = new byte[Math.min(Math.max(compressed.length * 4, 64), capacity)];
+        int length = 0;
+        while (!inflater.finished()) {
+            if (length == output.length) {
+                output = Arrays.copyOf(output, (int) Math.min((long) output.length * 2, capacity));
+            }
+            final int count = inflater.inflate(output, length, output.length - length);
+            if (count > 0) {
+                length += count;
+                if (length > maxFrameSize) {
+                    throw new IOException("Decompressed frame exceeds maxFrameSize");
+                }
+            } else if (inflater.needsDictionary()) {
+                if (dictionary == null) throw new DataFormatException("Missing preset dictionary");
+                inflater.setDictionary(dictionary);
+            } else if (inflater.needsInput() && !inflater.finished()) {
+                throw new DataFormatException("Truncated compressed frame");
+            }
+        }
+        uncompressedBytesRead += length;
+        sink.onData(output, 0, length);
+    }
+
+    /**
+     * Releases the compressor, called by the write thread once the socket is closed.
+     */
+    void endEncoder() {
+        deflater.end();
+    }
+
+    /**
+     * Releases the decompressor, called by the receiver thread once it stops reading.
+     */
+    void endDecoder() {
+        inflater.end();
+    }
+
+    long getUncompressedBytesWritten() {
+        return uncompressedBytesWritten;
+    }
+
+    long getCompressedBytesWritten() {
+        return compressedBytesWritten;
+    }
+
+    long getCompressedBytesRead() {
+        return compressedBytesRead;
+    }
+
+    long getUncompressedBytesRead() {
+        return uncompressedBytesRead;
+    }
+
+    /**
+     * @return CPU time spent compressing, 0 where per-thread CPU time is not available
+     */
+    long getCompressNanos() {
+        return compressNanos;
+    }
+
+    /**
+     * @return CPU time spent decompressing, 0 where per-thread CPU time is not available
+     */
+    long getDecompressNanos() {
+        return decompressNanos;
+    }
+}
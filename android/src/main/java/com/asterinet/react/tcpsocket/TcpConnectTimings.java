@@ -0,0 +1,69 @@
+package com.asterinet.react.tcpsocket;
+
+/**
+ * Time spent by a client socket in each phase of its connection, from the `connect()` call of JS:
+ * waiting for a module thread, selecting the network of the `interface` option, resolving the
+ * addresses, connecting and the TLS handshake. The total also counts the work between the phases.
+ * <p>
+ * Every successful connection is added to the histograms shared by the process, see
+ * {@link #getHistogram}, skipping the phases it went without: the handshake of plain sockets, the
+ * network selection without the `interface` option.
+ */
+final class TcpConnectTimings {
+    static final int QUEUED = 0;
+    static final int NETWORK = 1;
+    static final int DNS = 2;
+    static final int CONNECT = 3;
+    static final int HANDSHAKE = 4;
+    static final int TOTAL = 5;
+    // Names of the phases in the events and the stats, by index
+    static final String[] NAMES = {"queued", "network", "dns", "connect", "handshake", "total"};
+
+    private static final TcpLatencyHistogram[] HISTOGRAMS = new TcpLatencyHistogram[NAMES.length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) HISTOGRAMS[i] = new TcpLatencyHistogram();
+    }
+
+    private final long startNanos;
+    private final long[] nanos = new long[NAMES.length];
+    // Bit per phase that has ended
+    private int ended;
+
+    /**
+     * @param startNanos {@link System#nanoTime} when the connection was requested
+     */
+    TcpConnectTimings(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Ends `phase`, started at `phaseStartNanos`.
+     */
+    void end(int phase, long phaseStartNanos) {
+        nanos[phase] += System.nanoTime() - phaseStartNanos;
+        ended |= 1 << phase;
+    }
+
+    /**
+     * Ends the connection and adds its timings to the histograms.
+     */
+    void finish() {
+        end(TOTAL, startNanos);
+        for (int i = 0; i < NAMES.length; i++) {
+            if ((ended & 1 << i) != 0) HISTOGRAMS[i].record(nanos[i]);
+        }
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getNanos(int phase) {
+        return nanos[phase];
+    }
+
+    static TcpLatencyHistogram getHistogram(int phase) {
+        return HISTOGRAMS[phase];
+    }
+}
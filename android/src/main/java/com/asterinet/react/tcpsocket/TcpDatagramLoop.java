@@ -0,0 +1,115 @@
+package com.asterinet.react.tcpsocket;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop serving every UDP socket of the module from a single thread.
+ * <p>
+ * Datagram channels are non-blocking and registered with one {@link Selector}. All the state of
+ * the sockets is only touched by the loop thread: other threads hand work over with
+ * {@link #execute(Runnable)}. The thread is started on first use.
+ */
+final class TcpDatagramLoop implements Runnable {
+    // Largest UDP payload over IPv4
+    static final int MAX_DATAGRAM_SIZE = 65507;
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Only used by the loop thread, datagrams are copied out of it
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+    private Selector selector;
+    private Thread worker;
+
+    /**
+     * Runs `task` on the loop thread.
+     */
+    synchronized void execute(Runnable task) throws IOException {
+        if (selector == null) {
+            selector = Selector.open();
+            worker = new Thread(this, "TcpSocketDatagram");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the loop thread once the tasks already queued, such as closing sockets, have run.
+     * Sockets still registered are not closed.
+     */
+    synchronized void stop() {
+        if (selector == null) return;
+        final Selector stopped = selector;
+        tasks.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stopped.close();
+                } catch (IOException e) {
+                    Log.e(TcpSocketModule.TAG, "Could not close the datagram selector", e);
+                }
+            }
+        });
+        stopped.wakeup();
+    }
+
+    /**
+     * Registers the channel of `socket` for reads. Must be called from the loop thread.
+     */
+    SelectionKey register(TcpDatagramSocket socket) throws ClosedChannelException {
+        return socket.getChannel().register(selector, SelectionKey.OP_READ, socket);
+    }
+
+    @Override
+    public void run() {
+        final Selector selector;
+        synchronized (this) {
+            selector = this.selector;
+        }
+        while (true) {
+            runTasks();
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    TcpDatagramSocket socket = (TcpDatagramSocket) key.attachment();
+                    try {
+                        if (key.isReadable()) socket.onReadable(receiveBuffer);
+                        if (key.isValid() && key.isWritable()) socket.onWritable();
+                    } catch (CancelledKeyException e) {
+                        // Closed by a task of this iteration
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TcpSocketModule.TAG, "Datagram selector failed", e);
+                return;
+            } catch (ClosedSelectorException e) {
+                // Stopped
+                return;
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TcpSocketModule.TAG, "Datagram task failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.asterinet.react.tcpsocket;
+
+import android.util.Base64;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A UDP socket served by the {@link TcpDatagramLoop} of the module.
+ * <p>
+ * Datagrams are sent and received in batches: a single bridge call sends several datagrams, and
+ * every datagram read in one wake-up of the loop is delivered in a single event.
+ */
+final class TcpDatagramSocket extends TcpSocket {
+    // Bounds the size of a receive event and the time spent on one socket per wake-up
+    static final int MAX_RECEIVE_BATCH = 64;
+
+    private final TcpEventListener receiverListener;
+    private final TcpDatagramLoop loop;
+    private final DatagramChannel channel;
+    // Only used by the loop thread
+    private final ArrayDeque<OutgoingDatagram> sendQueue = new ArrayDeque<>();
+    private SelectionKey key;
+    private boolean closed;
+
+    static final class Datagram {
+        final byte[] data;
+        final InetSocketAddress address;
+
+        Datagram(byte[] data, InetSocketAddress address) {
+            this.data = data;
+            this.address = address;
+        }
+    }
+
+    private static final class OutgoingDatagram {
+        final ByteBuffer data;
+        final InetSocketAddress address;
+        final int msgId;
+        // The `written` event of a batch is emitted after its last datagram
+        final boolean last;
+
+        OutgoingDatagram(ByteBuffer data, InetSocketAddress address, int msgId, boolean last) {
+            this.data = data;
+            this.address = address;
+            this.msgId = msgId;
+            this.last = last;
+        }
+    }
+
+    TcpDatagramSocket(TcpEventListener receiverListener, TcpDatagramLoop loop, int id) throws IOException {
+        super(id);
+        this.receiverListener = receiverListener;
+        this.loop = loop;
+        channel = DatagramChannel.open();
+    }
+
+    DatagramChannel getChannel() {
+        return channel;
+    }
+
+    DatagramSocket getSocket() {
+        return channel.socket();
+    }
+
+    /**
+     * Binds the socket and starts receiving datagrams. The channel is closed if binding fails.
+     */
+    void bind(ReadableMap options) throws IOException {
+        try {
+            DatagramSocket socket = channel.socket();
+            socket.setReuseAddress(options.hasKey("reuseAddress") && options.getBoolean("reuseAddress"));
+            if (options.hasKey("broadcast")) socket.setBroadcast(options.getBoolean("broadcast"));
+            if (options.hasKey("receiveBufferSize")) socket.setReceiveBufferSize(options.getInt("receiveBufferSize"));
+            if (options.hasKey("sendBufferSize")) socket.setSendBufferSize(options.getInt("sendBufferSize"));
+            final String address = options.hasKey("address") ? options.getString("address") : "0.0.0.0";
+            final int port = options.hasKey("port") ? options.getInt("port") : 0;
+            socket.bind(new InetSocketAddress(InetAddress.getByName(address), port));
+            channel.configureBlocking(false);
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (closed) return;
+                    try {
+                        key = loop.register(TcpDatagramSocket.this);
+                    } catch (ClosedChannelException e) {
+                        receiverListener.onError(getId(), e);
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    void setBroadcast(boolean broadcast) throws SocketException {
+        channel.socket().setBroadcast(broadcast);
+    }
+
+    /**
+     * Queues a batch of `{ data, address, port }` datagrams, with base64 encoded data. The hosts are
+     * resolved by the calling thread so DNS lookups never block the loop.
+     */
+    void send(ReadableArray datagrams, int msgId) throws IOException {
+        final List<Datagram> batch = new ArrayList<>(datagrams.size());
+        for (int i = 0; i < datagrams.size(); i++) {
+            ReadableMap datagram = datagrams.getMap(i);
+            byte[] data = Base64.decode(datagram.getString("data"), Base64.NO_WRAP);
+            InetAddress address = InetAddress.getByName(datagram.getString("address"));
+            batch.add(new Datagram(data, new InetSocketAddress(address, datagram.getInt("port"))));
+        }
+        send(batch, msgId);
+    }
+
+    /**
+     * Queues a batch of datagrams with resolved addresses. A single `written` event is emitted
+     * once all of them have been sent or the batch failed.
+     */
+    void send(List<Datagram> datagrams, final int msgId) throws IOException {
+        final List<OutgoingDatagram> batch = new ArrayList<>(datagrams.size());
+        for (int i = 0; i < datagrams.size(); i++) {
+            Datagram datagram = datagrams.get(i);
+            batch.add(new OutgoingDatagram(ByteBuffer.wrap(datagram.data), datagram.address, msgId,
+                    i == datagrams.size() - 1));
+        }
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    receiverListener.onWritten(getId(), msgId, new IOException("Attempted to send from closed socket"));
+                    return;
+                }
+                if (batch.isEmpty()) {
+                    receiverListener.onWritten(getId(), msgId, null);
+                    return;
+                }
+                sendQueue.addAll(batch);
+                flush();
+            }
+        });
+    }
+
+    void close() throws IOException {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) return;
+                closed = true;
+                if (key != null) key.cancel();
+                IOException error = null;
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    error = e;
+                }
+                while (!sendQueue.isEmpty()) {
+                    failBatch(sendQueue.peek().msgId, new IOException("Socket closed before sending"));
+                }
+                receiverListener.onClose(getId(), error);
+            }
+        });
+    }
+
+    /**
+     * Called by the loop thread when datagrams are available.
+     *
+     * @param buffer scratch buffer of the loop, large enough for any datagram
+     */
+    void onReadable(ByteBuffer buffer) {
+        List<Datagram> batch = null;
+        for (int i = 0; i < MAX_RECEIVE_BATCH; i++) {
+            buffer.clear();
+            SocketAddress from;
+            try {
+                from = channel.receive(buffer);
+            } catch (IOException e) {
+                receiverListener.onError(getId(), e);
+                break;
+            }
+            if (from == null) break;
+            buffer.flip();
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            if (batch == null) batch = new ArrayList<>();
+            batch.add(new Datagram(data, (InetSocketAddress) from));
+        }
+        if (batch != null) receiverListener.onDatagrams(getId(), batch);
+    }
+
+    /**
+     * Called by the loop thread when the send buffer has room again.
+     */
+    void onWritable() {
+        flush();
+    }
+
+    private void flush() {
+        while (!sendQueue.isEmpty()) {
+            OutgoingDatagram datagram = sendQueue.peek();
+            try {
+                final boolean empty = !datagram.data.hasRemaining();
+                // All or nothing, 0 bytes sent out of a non-empty datagram means the send buffer is full
+                if (channel.send(datagram.data, datagram.address) == 0 && !empty) {
+                    // Wait until it drains
+                    if (key != null) key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            } catch (IOException e) {
+                failBatch(datagram.msgId, e);
+                continue;
+            }
+            sendQueue.poll();
+            if (datagram.last) receiverListener.onWritten(getId(), datagram.msgId, null);
+        }
+        if (key != null && key.isValid()) key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Drops the queued datagrams of the batch at the head of the queue.
+     */
+    private void failBatch(int msgId, IOException e) {
+        while (!sendQueue.isEmpty() && sendQueue.peek().msgId == msgId) {
+            sendQueue.poll();
+        }
+        receiverListener.onWritten(getId(), msgId, e);
+    }
+}
@@ -0,0 +1,142 @@
+package com.asterinet.react.tcpsocket;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Emits the events of every socket of the module to JS from a single thread.
+ * <p>
+ * Socket threads only enqueue {@link Event}s on a lock-free queue and return to their I/O. The
+ * dispatcher thread builds the event parameters and hands them to the bridge in enqueue order, so
+ * the events of a socket keep the order of the calls that produced them. The thread is started on
+ * first use and parks while the queue is empty.
+ */
+final class TcpEventDispatcher implements Runnable {
+    /**
+     * An event waiting to be emitted. The parameters are built on the dispatcher thread.
+     */
+    abstract static class Event {
+        final String name;
+        long enqueueTime;
+
+        Event(String name) {
+            this.name = name;
+        }
+
+        abstract WritableMap toParams();
+
+        /**
+         * Called on the dispatcher thread once the event has been handed to the bridge.
+         */
+        void onDispatched() {
+        }
+    }
+
+    private final DeviceEventManagerModule.RCTDeviceEventEmitter rctEvtEmitter;
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean parked = new AtomicBoolean();
+    private volatile int maxDepth;
+    private volatile Thread worker;
+    private volatile boolean stopped;
+    // Written by the dispatcher thread only
+    private volatile long dispatchedCount;
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+
+    TcpEventDispatcher(DeviceEventManagerModule.RCTDeviceEventEmitter rctEvtEmitter) {
+        this.rctEvtEmitter = rctEvtEmitter;
+    }
+
+    void enqueue(Event event) {
+        if (stopped) return;
+        event.enqueueTime = System.nanoTime();
+        queue.offer(event);
+        final int currentDepth = depth.incrementAndGet();
+        // Racy on purpose, a missed maximum under contention is close enough for stats
+        if (currentDepth > maxDepth) maxDepth = currentDepth;
+        final Thread thread = worker;
+        if (thread == null) {
+            startWorker();
+        } else if (parked.get() && parked.compareAndSet(true, false)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private synchronized void startWorker() {
+        if (worker != null) return;
+        final Thread thread = new Thread(this, "TcpSocketEvents");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    void stop() {
+        stopped = true;
+        final Thread thread = worker;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            final Event event = queue.poll();
+            if (event == null) {
+                parked.set(true);
+                // An event enqueued before the flag was set did not unpark this thread
+                if (queue.isEmpty() && !stopped) LockSupport.park(this);
+                parked.set(false);
+                continue;
+            }
+            depth.decrementAndGet();
+            dispatch(event);
+        }
+    }
+
+    private void dispatch(Event event) {
+        try {
+            rctEvtEmitter.emit(event.name, event.toParams());
+        } catch (RuntimeException e) {
+            Log.e(TcpSocketModule.TAG, "Could not emit the " + event.name + " event", e);
+        }
+        event.onDispatched();
+        final long latency = System.nanoTime() - event.enqueueTime;
+        dispatchedCount++;
+        totalLatencyNanos += latency;
+        if (latency > maxLatencyNanos) maxLatencyNanos = latency;
+    }
+
+    /**
+     * @return the number of events waiting to be emitted
+     */
+    int getDepth() {
+        return depth.get();
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    long getDispatchedCount() {
+        return dispatchedCount;
+    }
+
+    /**
+     * @return the time between enqueuing and emitting an event, averaged over every event
+     */
+    long getAverageLatencyNanos() {
+        final long count = dispatchedCount;
+        return count > 0 ? totalLatencyNanos / count : 0;
+    }
+
+    long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+}
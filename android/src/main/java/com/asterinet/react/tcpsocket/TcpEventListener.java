@@ -5,135 +5,306 @@ import android.util.Log;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import java.net.Inet6Address;
+import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.List;
 
 import javax.annotation.Nullable;
 
 public class TcpEventListener {
 
-    private final DeviceEventManagerModule.RCTDeviceEventEmitter rctEvtEmitter;
+    private final TcpEventDispatcher dispatcher;
 
     public TcpEventListener(final ReactContext reactContext) {
-        rctEvtEmitter = reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        this(reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class));
     }
 
-    public void onConnection(int serverId, int clientId, Socket socket) {
-        onSocketConnection("connection", serverId, clientId, socket);
+    TcpEventListener(final DeviceEventManagerModule.RCTDeviceEventEmitter rctEvtEmitter) {
+        dispatcher = new TcpEventDispatcher(rctEvtEmitter);
     }
 
-    public void onSecureConnection(int serverId, int clientId, Socket socket) {
-        onSocketConnection("secureConnection", serverId, clientId, socket);
+    TcpEventDispatcher getDispatcher() {
+        return dispatcher;
     }
 
-    private void onSocketConnection(String connectionType, int serverId, int clientId, Socket socket) {
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", serverId);
+    public void onConnection(int serverId, int clientId, Socket socket, int listenerIndex) {
+        onSocketConnection("connection", serverId, clientId, socket, listenerIndex);
+    }
 
-        WritableMap infoParams = Arguments.createMap();
-        infoParams.putInt("id", clientId);
+    public void onSecureConnection(int serverId, int clientId, Socket socket, int listenerIndex) {
+        onSocketConnection("secureConnection", serverId, clientId, socket, listenerIndex);
+    }
 
-        WritableMap connectionParams = Arguments.createMap();
-        InetSocketAddress remoteAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+    private void onSocketConnection(String connectionType, final int serverId, final int clientId, Socket socket, final int listenerIndex) {
+        // Read now, the socket may be closed by the time the event is emitted
+        final InetAddress localAddress = socket.getLocalAddress();
+        final int localPort = socket.getLocalPort();
+        final InetSocketAddress remoteAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+        dispatcher.enqueue(new TcpEventDispatcher.Event(connectionType) {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", serverId);
 
-        connectionParams.putString("localAddress", socket.getLocalAddress().getHostAddress());
-        connectionParams.putInt("localPort", socket.getLocalPort());
-        connectionParams.putString("remoteAddress", remoteAddress.getAddress().getHostAddress());
-        connectionParams.putInt("remotePort", socket.getPort());
-        connectionParams.putString("remoteFamily", remoteAddress.getAddress() instanceof Inet6Address ? "IPv6" : "IPv4");
+                WritableMap infoParams = Arguments.createMap();
+                infoParams.putInt("id", clientId);
+                infoParams.putInt("listener", listenerIndex);
+                infoParams.putMap("connection", getConnectionInfo(localAddress, localPort, remoteAddress));
+                eventParams.putMap("info", infoParams);
+                return eventParams;
+            }
+        });
+    }
+
+    public void onConnect(int id, TcpSocketClient client) {
+        sendConnectEvent("connect", id, client);
+    }
 
-        infoParams.putMap("connection", connectionParams);
-        eventParams.putMap("info", infoParams);
+    /**
+     * The socket connected again after losing its connection, see {@link #onReconnecting}.
+     */
+    public void onReconnect(int id, TcpSocketClient client) {
+        sendConnectEvent("reconnect", id, client);
+    }
 
-        sendEvent(connectionType, eventParams);
+    private void sendConnectEvent(String eventName, final int id, TcpSocketClient client) {
+        final Socket socket = client.getSocket();
+        final InetAddress localAddress = socket.getLocalAddress();
+        final int localPort = socket.getLocalPort();
+        final InetSocketAddress remoteAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+        final TcpConnectTimings timings = client.getConnectTimings();
+        dispatcher.enqueue(new TcpEventDispatcher.Event(eventName) {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putMap("connection", getConnectionInfo(localAddress, localPort, remoteAddress));
+                if (timings != null) {
+                    WritableMap timingParams = Arguments.createMap();
+                    for (int phase = 0; phase < TcpConnectTimings.NAMES.length; phase++) {
+                        timingParams.putDouble(TcpConnectTimings.NAMES[phase], timings.getNanos(phase) / 1e6);
+                    }
+                    eventParams.putMap("timings", timingParams);
+                }
+                return eventParams;
+            }
+        });
     }
 
-    public void onConnect(int id, TcpSocketClient client) {
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", id);
+    private static WritableMap getConnectionInfo(InetAddress localAddress, int localPort, InetSocketAddress remoteAddress) {
         WritableMap connectionParams = Arguments.createMap();
-        Socket socket = client.getSocket();
-        InetSocketAddress remoteAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
-
-        connectionParams.putString("localAddress", socket.getLocalAddress().getHostAddress());
-        connectionParams.putInt("localPort", socket.getLocalPort());
+        connectionParams.putString("localAddress", localAddress.getHostAddress());
+        connectionParams.putInt("localPort", localPort);
         connectionParams.putString("remoteAddress", remoteAddress.getAddress().getHostAddress());
-        connectionParams.putInt("remotePort", socket.getPort());
+        connectionParams.putInt("remotePort", remoteAddress.getPort());
         connectionParams.putString("remoteFamily", remoteAddress.getAddress() instanceof Inet6Address ? "IPv6" : "IPv4");
-        eventParams.putMap("connection", connectionParams);
-        sendEvent("connect", eventParams);
+        return connectionParams;
     }
 
-    public void onListen(int id, TcpSocketServer server) {
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", id);
-        WritableMap connectionParams = Arguments.createMap();
-        ServerSocket serverSocket = server.getServerSocket();
-        InetAddress address = serverSocket.getInetAddress();
+    /**
+     * The socket lost its connection, or failed to connect again, and makes attempt `attempt` in
+     * `delay` milliseconds.
+     */
+    public void onReconnecting(final int id, final int attempt, final long delay, Exception e) {
+        Log.w(TcpSocketModule.TAG, "Connection lost on socket " + id, e);
+        final String error = e.getMessage();
+        dispatcher.enqueue(new TcpEventDispatcher.Event("reconnecting") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putInt("attempt", attempt);
+                eventParams.putDouble("delay", delay);
+                eventParams.putString("error", error);
+                return eventParams;
+            }
+        });
+    }
 
-        connectionParams.putString("localAddress", serverSocket.getInetAddress().getHostAddress());
-        connectionParams.putInt("localPort", serverSocket.getLocalPort());
-        connectionParams.putString("localFamily", address instanceof Inet6Address ? "IPv6" : "IPv4");
-        eventParams.putMap("connection", connectionParams);
-        sendEvent("listening", eventParams);
+    public void onListen(final int id, TcpSocketServer server) {
+        List<TcpSocketServer.Listener> listeners = server.getListeners();
+        final InetAddress[] addresses = new InetAddress[listeners.size()];
+        final int[] ports = new int[addresses.length];
+        final boolean[] tls = new boolean[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            ServerSocket serverSocket = listeners.get(i).getServerSocket();
+            addresses[i] = serverSocket.getInetAddress();
+            ports[i] = serverSocket.getLocalPort();
+            tls[i] = listeners.get(i).isTLS();
+        }
+        dispatcher.enqueue(new TcpEventDispatcher.Event("listening") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                // The main listener is reported as the address of the server
+                WritableMap connectionParams = getLocalInfo(addresses[0], ports[0]);
+                connectionParams.putBoolean("tls", tls[0]);
+                WritableArray listenersParams = Arguments.createArray();
+                for (int i = 0; i < addresses.length; i++) {
+                    WritableMap listenerParams = getLocalInfo(addresses[i], ports[i]);
+                    listenerParams.putBoolean("tls", tls[i]);
+                    listenersParams.pushMap(listenerParams);
+                }
+                connectionParams.putArray("listeners", listenersParams);
+                eventParams.putMap("connection", connectionParams);
+                return eventParams;
+            }
+        });
+    }
+
+    public void onBound(final int id, TcpDatagramSocket datagramSocket) {
+        DatagramSocket socket = datagramSocket.getSocket();
+        final InetAddress address = socket.getLocalAddress();
+        final int port = socket.getLocalPort();
+        dispatcher.enqueue(new TcpEventDispatcher.Event("listening") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putMap("connection", getLocalInfo(address, port));
+                return eventParams;
+            }
+        });
+    }
+
+    private static WritableMap getLocalInfo(InetAddress address, int port) {
+        WritableMap localParams = Arguments.createMap();
+        localParams.putString("localAddress", address.getHostAddress());
+        localParams.putInt("localPort", port);
+        localParams.putString("localFamily", address instanceof Inet6Address ? "IPv6" : "IPv4");
+        return localParams;
+    }
+
+    public void onDatagrams(final int id, final List<TcpDatagramSocket.Datagram> datagrams) {
+        dispatcher.enqueue(new TcpEventDispatcher.Event("message") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                WritableArray messagesParams = Arguments.createArray();
+                for (TcpDatagramSocket.Datagram datagram : datagrams) {
+                    WritableMap messageParams = Arguments.createMap();
+                    InetAddress address = datagram.address.getAddress();
+                    messageParams.putString("data", Base64.encodeToString(datagram.data, Base64.NO_WRAP));
+                    messageParams.putString("address", address.getHostAddress());
+                    messageParams.putInt("port", datagram.address.getPort());
+                    messageParams.putString("family", address instanceof Inet6Address ? "IPv6" : "IPv4");
+                    messagesParams.pushMap(messageParams);
+                }
+                eventParams.putArray("messages", messagesParams);
+                return eventParams;
+            }
+        });
     }
 
-    public void onData(int id, byte[] data) {
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", id);
-        eventParams.putString("data", Base64.encodeToString(data, Base64.NO_WRAP));
+    /**
+     * `data` must not be modified afterwards, it is encoded by the dispatcher thread.
+     */
+    public void onData(final int id, final byte[] data) {
+        final TcpTracer tracer = TcpTracer.get();
+        final long traceToken = tracer.begin(TcpTracer.READ_TO_EMIT, id);
+        dispatcher.enqueue(new TcpEventDispatcher.Event("data") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putString("data", Base64.encodeToString(data, Base64.NO_WRAP));
+                return eventParams;
+            }
 
-        sendEvent("data", eventParams);
+            @Override
+            void onDispatched() {
+                tracer.end(TcpTracer.READ_TO_EMIT, id, traceToken);
+            }
+        });
+    }
+
+    public void onRequest(final int id, final int requestId, final byte[] data) {
+        dispatcher.enqueue(new TcpEventDispatcher.Event("request") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putInt("requestId", requestId);
+                eventParams.putString("data", Base64.encodeToString(data, Base64.NO_WRAP));
+                return eventParams;
+            }
+        });
     }
 
     public void onEnd(int id) {
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", id);
-        sendEvent("end", eventParams);
+        sendIdEvent("end", id);
+    }
+
+    public void onTimeout(int id) {
+        sendIdEvent("timeout", id);
     }
 
-    public void onWritten(int id, int msgId, @Nullable Exception e) {
+    public void onWritten(final int id, final int msgId, @Nullable Exception e) {
         String error = null;
         if (e != null) {
             Log.e(TcpSocketModule.TAG, "Exception on socket " + id, e);
             error = e.getMessage();
         }
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", id);
-        eventParams.putInt("msgId", msgId);
-        eventParams.putString("err", error);
-
-        sendEvent("written", eventParams);
+        final String err = error;
+        dispatcher.enqueue(new TcpEventDispatcher.Event("written") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putInt("msgId", msgId);
+                eventParams.putString("err", err);
+                return eventParams;
+            }
+        });
     }
 
-    public void onClose(int id, Exception e) {
+    public void onClose(final int id, final Exception e) {
         if (e != null) {
             onError(id, e);
         }
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", id);
-        eventParams.putBoolean("hadError", e != null);
-
-        sendEvent("close", eventParams);
+        dispatcher.enqueue(new TcpEventDispatcher.Event("close") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putBoolean("hadError", e != null);
+                return eventParams;
+            }
+        });
     }
 
-    public void onError(int id, Exception e) {
+    public void onError(final int id, Exception e) {
         Log.e(TcpSocketModule.TAG, "Exception on socket " + id, e);
-        String error = e.getMessage();
-        WritableMap eventParams = Arguments.createMap();
-        eventParams.putInt("id", id);
-        eventParams.putString("error", error);
-
-        sendEvent("error", eventParams);
+        final String error = e.getMessage();
+        dispatcher.enqueue(new TcpEventDispatcher.Event("error") {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                eventParams.putString("error", error);
+                return eventParams;
+            }
+        });
     }
 
-    private void sendEvent(String eventName, WritableMap params) {
-        rctEvtEmitter.emit(eventName, params);
+    private void sendIdEvent(String eventName, final int id) {
+        dispatcher.enqueue(new TcpEventDispatcher.Event(eventName) {
+            @Override
+            WritableMap toParams() {
+                WritableMap eventParams = Arguments.createMap();
+                eventParams.putInt("id", id);
+                return eventParams;
+            }
+        });
     }
 }
@@ -0,0 +1,70 @@
+package com.asterinet.react.tcpsocket;
+
+import java.io.IOException;
+
+/**
+ * A stage of the native pipeline between a client socket and JS.
+ * <p>
+ * Inbound data flows from the wire through the handlers in order and reaches JS as `data` events.
+ * Outbound data flows the other way, from `write()` through the handlers in reverse order to the
+ * wire. Every method forwards the data unchanged by default, so a handler only overrides the
+ * directions it transforms. A handler may forward any number of buffers for each one it gets.
+ * <p>
+ * Handlers are registered by name with {@link TcpSocketPackage#addHandler} and enabled per socket
+ * with the `handlers` option. Each socket gets its own handlers from the registered
+ * {@link Factory}, so handlers may keep per-connection state. {@link #onRead} and
+ * {@link #onInputClosed} are only called by the receiver thread of the socket, {@link #onWrite}
+ * and {@link #onOutputClosed} only by its write thread.
+ */
+public abstract class TcpHandler {
+    public interface Context {
+        int getSocketId();
+
+        /**
+         * Passes inbound data to the next handler. The buffer is not copied, the next handlers
+         * must not keep a reference to it once they return.
+         */
+        void fireRead(byte[] data, int offset, int length) throws IOException;
+
+        /**
+         * Passes outbound data to the previous handler, or to the wire from the first handler.
+         * The buffer may be held until the socket is uncorked, it must not be modified afterwards.
+         */
+        void write(byte[] data) throws IOException;
+    }
+
+    public interface Factory {
+        TcpHandler create(int socketId);
+    }
+
+    /**
+     * Called with data read from the socket. `data` is reused by the receiver thread once this
+     * returns, so a handler that keeps it must copy it.
+     *
+     * @throws IOException to report an error and stop reading from the socket
+     */
+    public void onRead(Context ctx, byte[] data, int offset, int length) throws IOException {
+        ctx.fireRead(data, offset, length);
+    }
+
+    /**
+     * Called with data about to be written to the socket.
+     *
+     * @throws IOException to fail the write
+     */
+    public void onWrite(Context ctx, byte[] data) throws IOException {
+        ctx.write(data);
+    }
+
+    /**
+     * Called once the receiver thread stops reading from the socket.
+     */
+    public void onInputClosed(Context ctx) {
+    }
+
+    /**
+     * Called once the socket is destroyed, after the pending writes.
+     */
+    public void onOutputClosed(Context ctx) {
+    }
+}
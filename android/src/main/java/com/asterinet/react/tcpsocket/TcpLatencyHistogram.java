@@ -0,0 +1,81 @@
+package com.asterinet.react.tcpsocket;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in power of two millisecond buckets: bucket 0 holds the durations under 1ms and
+ * bucket `i` those from `2^(i-1)` to `2^i` milliseconds, the last bucket everything longer. The
+ * bucket counts of many devices can be summed, unlike percentiles.
+ */
+final class TcpLatencyHistogram {
+    // The last bucket starts at 2^18ms, about 4 minutes
+    static final int BUCKETS = 20;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    static int bucketOf(long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (millis <= 0) return 0;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    /**
+     * @return the upper bound of bucket `bucket` in milliseconds, infinite for the last one
+     */
+    static double upperBoundOf(int bucket) {
+        return bucket < BUCKETS - 1 ? (double) (1L << bucket) : Double.POSITIVE_INFINITY;
+    }
+
+    void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // Lost the race to a concurrent record, compare again
+        }
+    }
+
+    long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts.get(i);
+        return count;
+    }
+
+    long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the upper bound in milliseconds of the bucket holding `quantile`, `0` when empty,
+     * {@link #getMaxNanos} for the last bucket
+     */
+    double getQuantile(double quantile) {
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) return 0;
+        final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), getMaxNanos() / 1e6);
+        }
+        return getMaxNanos() / 1e6;
+    }
+}
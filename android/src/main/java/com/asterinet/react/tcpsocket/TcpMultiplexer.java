@@ -0,0 +1,206 @@
+package com.asterinet.react.tcpsocket;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request/response multiplexing over a single {@link TcpSocketClient}.
+ * <p>
+ * Every message is a frame made of a 9 bytes header, the big-endian payload length, the frame
+ * type and the big-endian correlation id, followed by the payload. Requests sent by this side are
+ * tracked by correlation id until the matching response, error or timeout completes them, so any
+ * number of requests may be in flight at once and responses may arrive in any order. Requests
+ * sent by the peer are reported to JS, which answers them with {@link #respond}.
+ * <p>
+ * The multiplexer is the last handler of the pipeline of the socket, it consumes every byte read
+ * instead of emitting `data` events. Raw writes are rejected by the socket, only frames are sent.
+ */
+final class TcpMultiplexer extends TcpHandler {
+    static final int HEADER_SIZE = 9;
+    static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    static final byte TYPE_REQUEST = 0;
+    static final byte TYPE_RESPONSE = 1;
+    // A response carrying an UTF-8 error message
+    static final byte TYPE_ERROR = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    interface ResponseCallback {
+        void onResponse(byte[] payload);
+
+        void onFailure(String code, String message);
+    }
+
+    private final TcpSocketClient client;
+    private final TcpEventListener receiverListener;
+    private final TcpTimerWheel timerWheel;
+    private final int maxFrameSize;
+    private final ConcurrentIntMap<PendingRequest> pending = new ConcurrentIntMap<>();
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+    private volatile boolean closed;
+    // Decoder state, only used by the receiver thread
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    @Nullable
+    private byte[] payload;
+    private int payloadOffset;
+
+    private final class PendingRequest implements Runnable {
+        final int correlationId;
+        final ResponseCallback callback;
+        final int timeout;
+        final TcpTimerWheel.Timeout timer;
+
+        PendingRequest(int correlationId, ResponseCallback callback, int timeout) {
+            this.correlationId = correlationId;
+            this.callback = callback;
+            this.timeout = timeout;
+            timer = new TcpTimerWheel.Timeout(this);
+        }
+
+        @Override
+        public void run() {
+            if (pending.remove(correlationId, this)) {
+                callback.onFailure("ETIMEDOUT", "Request timed out after " + timeout + "ms");
+            }
+        }
+    }
+
+    TcpMultiplexer(TcpSocketClient client, TcpEventListener receiverListener, TcpTimerWheel timerWheel, int maxFrameSize) {
+        this.client = client;
+        this.receiverListener = receiverListener;
+        this.timerWheel = timerWheel;
+        this.maxFrameSize = maxFrameSize > 0 ? maxFrameSize : DEFAULT_MAX_FRAME_SIZE;
+    }
+
+    /**
+     * Sends `data` as a new request.
+     *
+     * @param timeout milliseconds to wait for the response, 0 to wait until the socket closes
+     */
+    void request(byte[] data, int timeout, ResponseCallback callback) {
+        if (closed) {
+            callback.onFailure("ECLOSED", "Socket is closed");
+            return;
+        }
+        PendingRequest request;
+        // Skip ids still in flight after the counter wraps around
+        do {
+            request = new PendingRequest(nextCorrelationId.getAndIncrement(), callback, timeout);
+        } while (!pending.putIfAbsent(request.correlationId, request));
+        if (timeout > 0) timerWheel.schedule(request.timer, timeout, TimeUnit.MILLISECONDS);
+        // The socket may have closed before the request was tracked
+        if (closed) {
+            fail(request, "ECLOSED", "Socket is closed");
+            return;
+        }
+        final PendingRequest sentRequest = request;
+        client.write(encode(TYPE_REQUEST, request.correlationId, data), new TcpSocketClient.WriteCallback() {
+            @Override
+            public void onWritten(@Nullable IOException e) {
+                if (e != null) fail(sentRequest, "EWRITE", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Answers the peer request `correlationId`, emitting a `written` event with `msgId`.
+     *
+     * @param error `true` if `data` is an UTF-8 error message
+     */
+    void respond(int correlationId, byte[] data, boolean error, int msgId) {
+        client.writeFrame(msgId, encode(error ? TYPE_ERROR : TYPE_RESPONSE, correlationId, data));
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Fails every pending request. Called once the socket is closed.
+     */
+    void close() {
+        closed = true;
+        for (PendingRequest request : pending.removeAll()) {
+            timerWheel.cancel(request.timer);
+            request.callback.onFailure("ECLOSED", "Socket closed before the response was received");
+        }
+    }
+
+    @Override
+    public void onRead(Context ctx, byte[] data, int offset, int length) throws IOException {
+        // Frames are decoded straight from the read buffer
+        onData(data, offset, length);
+    }
+
+    /**
+     * Decodes the frames in the bytes read from the socket. Called by the receiver thread only.
+     *
+     * @throws IOException if the stream is not made of valid frames
+     */
+    void onData(byte[] buffer, int offset, int length) throws IOException {
+        final int end = offset + length;
+        while (offset < end) {
+            if (payload == null) {
+                final int count = Math.min(header.remaining(), end - offset);
+                header.put(buffer, offset, count);
+                offset += count;
+                if (header.hasRemaining()) return;
+                final int payloadLength = header.getInt(0);
+                if (payloadLength < 0 || payloadLength > maxFrameSize) {
+                    throw new IOException("Frame of " + (payloadLength & 0xffffffffL) + " bytes exceeds maxFrameSize");
+                }
+                payload = new byte[payloadLength];
+                payloadOffset = 0;
+            }
+            final int count = Math.min(payload.length - payloadOffset, end - offset);
+            System.arraycopy(buffer, offset, payload, payloadOffset, count);
+            payloadOffset += count;
+            offset += count;
+            if (payloadOffset == payload.length) {
+                final byte type = header.get(4);
+                final int correlationId = header.getInt(5);
+                final byte[] frame = payload;
+                payload = null;
+                header.clear();
+                dispatch(type, correlationId, frame);
+            }
+        }
+    }
+
+    private void dispatch(byte type, int correlationId, byte[] data) throws IOException {
+        switch (type) {
+            case TYPE_REQUEST:
+                receiverListener.onRequest(client.getId(), correlationId, data);
+                break;
+            case TYPE_RESPONSE:
+            case TYPE_ERROR:
+                final PendingRequest request = pending.remove(correlationId);
+                // Late responses of timed out requests are dropped
+                if (request == null) return;
+                timerWheel.cancel(request.timer);
+                if (type == TYPE_RESPONSE) request.callback.onResponse(data);
+                else request.callback.onFailure("EREMOTE", new String(data, UTF_8));
+                break;
+            default:
+                throw new IOException("Unknown frame type " + type);
+        }
+    }
+
+    private void fail(PendingRequest request, String code, String message) {
+        if (!pending.remove(request.correlationId, request)) return;
+        timerWheel.cancel(request.timer);
+        request.callback.onFailure(code, message);
+    }
+
+    static byte[] encode(byte type, int correlationId, byte[] data) {
+        final ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + data.length);
+        frame.putInt(data.length).put(type).putInt(correlationId).put(data);
+        return frame.array();
+    }
+}
@@ -0,0 +1,152 @@
+package com.asterinet.react.tcpsocket;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The chain of {@link TcpHandler}s of a {@link TcpSocketClient}. The first handler is the closest
+ * to the wire, data read from the socket leaving the last handler is emitted to JS.
+ */
+final class TcpPipeline {
+    // Handlers registered by the app, shared by every socket of the process
+    private static final ConcurrentHashMap<String, TcpHandler.Factory> factories = new ConcurrentHashMap<>();
+
+    private final TcpSocketClient client;
+    private final TcpEventListener receiverListener;
+    private final TcpHandler[] handlers;
+    private final HandlerContext[] contexts;
+
+    static void registerFactory(String name, TcpHandler.Factory factory) {
+        factories.put(name, factory);
+    }
+
+    @Nullable
+    static TcpHandler.Factory getFactory(String name) {
+        return factories.get(name);
+    }
+
+    private final class HandlerContext implements TcpHandler.Context {
+        private final int index;
+
+        HandlerContext(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int getSocketId() {
+            return client.getId();
+        }
+
+        @Override
+        public void fireRead(byte[] data, int offset, int length) throws IOException {
+            read(index + 1, data, offset, length);
+        }
+
+        @Override
+        public void write(byte[] data) throws IOException {
+            TcpPipeline.this.write(index - 1, data);
+        }
+    }
+
+    TcpPipeline(TcpSocketClient client, TcpEventListener receiverListener, List<TcpHandler> handlers) {
+        this.client = client;
+        this.receiverListener = receiverListener;
+        this.handlers = handlers.toArray(new TcpHandler[0]);
+        contexts = new HandlerContext[this.handlers.length];
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = new HandlerContext(i);
+        }
+    }
+
+    boolean isEmpty() {
+        return handlers.length == 0;
+    }
+
+    /**
+     * Passes data read from the socket through the handlers. Called by the receiver thread only.
+     */
+    void fireRead(byte[] data, int offset, int length) throws IOException {
+        try {
+            read(0, data, offset, length);
+        } catch (RuntimeException e) {
+            throw new IOException("Socket handler failed to read: " + e, e);
+        }
+    }
+
+    /**
+     * Passes data through the handlers and writes it to the socket. Called by the write thread only.
+     * Without handlers the buffers reach the socket as they are, otherwise they are merged into one.
+     */
+    void write(byte[][] buffers) throws IOException {
+        if (handlers.length == 0) {
+            client.writeToWire(buffers);
+            return;
+        }
+        try {
+            write(handlers.length - 1, buffers.length == 1 ? buffers[0] : concat(buffers));
+        } catch (RuntimeException e) {
+            throw new IOException("Socket handler failed to write: " + e, e);
+        }
+    }
+
+    static byte[] concat(byte[][] buffers) {
+        int length = 0;
+        for (byte[] buffer : buffers) length += buffer.length;
+        final byte[] data = new byte[length];
+        int offset = 0;
+        for (byte[] buffer : buffers) {
+            System.arraycopy(buffer, 0, data, offset, buffer.length);
+            offset += buffer.length;
+        }
+        return data;
+    }
+
+    private void read(int index, byte[] data, int offset, int length) throws IOException {
+        if (index < handlers.length) {
+            handlers[index].onRead(contexts[index], data, offset, length);
+        } else {
+            // The only copy of the data, the read buffer is reused
+            receiverListener.onData(client.getId(), Arrays.copyOfRange(data, offset, offset + length));
+        }
+    }
+
+    private void write(int index, byte[] data) throws IOException {
+        if (index >= 0) {
+            handlers[index].onWrite(contexts[index], data);
+        } else {
+            client.writeToWire(data);
+        }
+    }
+
+    /**
+     * Called by the receiver thread once it stops reading.
+     */
+    void closeInput() {
+        for (int i = 0; i < handlers.length; i++) {
+            try {
+                handlers[i].onInputClosed(contexts[i]);
+            } catch (RuntimeException e) {
+                Log.w(TcpSocketModule.TAG, "Socket handler failed to close on socket " + client.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Called by the write thread once the socket is destroyed.
+     */
+    void closeOutput() {
+        for (int i = handlers.length - 1; i >= 0; i--) {
+            try {
+                handlers[i].onOutputClosed(contexts[i]);
+            } catch (RuntimeException e) {
+                Log.w(TcpSocketModule.TAG, "Socket handler failed to close on socket " + client.getId(), e);
+            }
+        }
+    }
+}
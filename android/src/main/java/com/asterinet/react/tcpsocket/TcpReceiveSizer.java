@@ -0,0 +1,93 @@
+package com.asterinet.react.tcpsocket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks the size of the next read of a socket from the size of the previous reads.
+ * <p>
+ * Sizes are taken from a table of steps of 16 bytes up to 512 bytes and powers of two above. A
+ * read that fills the buffer grows the next one by four steps at once, while two reads in a row
+ * that would have fit a step smaller shrink it by one step, so bulk transfers quickly reach large
+ * reads and small-message sockets slowly settle on small buffers. Only used by the receiver thread.
+ */
+final class TcpReceiveSizer {
+    static final int DEFAULT_MIN_SIZE = 64;
+    static final int DEFAULT_INITIAL_SIZE = 2048;
+
+    private static final int INDEX_INCREMENT = 4;
+    private static final int INDEX_DECREMENT = 1;
+    private static final int[] SIZE_TABLE;
+
+    static {
+        List<Integer> sizes = new ArrayList<>();
+        for (int size = 16; size < 512; size += 16) {
+            sizes.add(size);
+        }
+        for (int size = 512; size > 0; size <<= 1) {
+            sizes.add(size);
+        }
+        SIZE_TABLE = new int[sizes.size()];
+        for (int i = 0; i < SIZE_TABLE.length; i++) {
+            SIZE_TABLE[i] = sizes.get(i);
+        }
+    }
+
+    private final int minIndex;
+    private final int maxIndex;
+    private final int minSize;
+    private final int maxSize;
+    private int index;
+    private int nextSize;
+    private boolean decreaseNow;
+
+    /**
+     * Sizes outside the table are kept as bounds, so a fixed size is used if `minSize` equals
+     * `maxSize`.
+     */
+    TcpReceiveSizer(int minSize, int initialSize, int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(1, Math.min(minSize, this.maxSize));
+        minIndex = sizeTableIndex(this.minSize);
+        maxIndex = sizeTableIndex(this.maxSize);
+        index = sizeTableIndex(Math.max(this.minSize, Math.min(initialSize, this.maxSize)));
+        nextSize = bounded(SIZE_TABLE[index]);
+    }
+
+    private static int sizeTableIndex(int size) {
+        for (int i = 0; i < SIZE_TABLE.length; i++) {
+            if (SIZE_TABLE[i] >= size) return i;
+        }
+        return SIZE_TABLE.length - 1;
+    }
+
+    private int bounded(int size) {
+        return Math.max(minSize, Math.min(size, maxSize));
+    }
+
+    /**
+     * @return the number of bytes to read next
+     */
+    int nextSize() {
+        return nextSize;
+    }
+
+    /**
+     * Records the number of bytes returned by the last read.
+     */
+    void record(int bytesRead) {
+        if (bytesRead <= SIZE_TABLE[Math.max(0, index - INDEX_DECREMENT)]) {
+            if (decreaseNow) {
+                index = Math.max(index - INDEX_DECREMENT, minIndex);
+                nextSize = bounded(SIZE_TABLE[index]);
+                decreaseNow = false;
+            } else {
+                decreaseNow = true;
+            }
+        } else if (bytesRead >= nextSize) {
+            index = Math.min(index + INDEX_INCREMENT, maxIndex);
+            nextSize = bounded(SIZE_TABLE[index]);
+            decreaseNow = false;
+        }
+    }
+}
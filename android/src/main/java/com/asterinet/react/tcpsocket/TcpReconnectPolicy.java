@@ -0,0 +1,70 @@
+package com.asterinet.react.tcpsocket;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When a client socket reconnects after losing its connection: exponential backoff from
+ * `initialDelay` up to `maxDelay` milliseconds, each delay shortened by a random fraction of up to
+ * `jitter` so that the sockets dropped by the same network change do not reconnect in lockstep.
+ */
+final class TcpReconnectPolicy {
+    static final int DEFAULT_INITIAL_DELAY = 500;
+    static final int DEFAULT_MAX_DELAY = 30000;
+    static final int DEFAULT_MAX_ATTEMPTS = 10;
+    static final double DEFAULT_JITTER = 0.5;
+
+    final int initialDelay;
+    final int maxDelay;
+    // 0 for no limit
+    final int maxAttempts;
+    final double jitter;
+
+    TcpReconnectPolicy(int initialDelay, int maxDelay, int maxAttempts, double jitter) {
+        this.initialDelay = Math.max(1, initialDelay);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+        this.maxAttempts = Math.max(0, maxAttempts);
+        this.jitter = Math.min(1, Math.max(0, jitter));
+    }
+
+    /**
+     * @return the policy of the `reconnect` option, `null` if the socket does not reconnect
+     */
+    @Nullable
+    static TcpReconnectPolicy fromReadableMap(ReadableMap options) {
+        if (!options.hasKey("reconnect") || options.isNull("reconnect")) return null;
+        final ReadableMap reconnect = options.getMap("reconnect");
+        if (reconnect == null) return null;
+        return new TcpReconnectPolicy(
+                getInt(reconnect, "initialDelay", DEFAULT_INITIAL_DELAY),
+                getInt(reconnect, "maxDelay", DEFAULT_MAX_DELAY),
+                getInt(reconnect, "maxAttempts", DEFAULT_MAX_ATTEMPTS),
+                reconnect.hasKey("jitter") && !reconnect.isNull("jitter") ? reconnect.getDouble("jitter") : DEFAULT_JITTER);
+    }
+
+    private static int getInt(ReadableMap options, String key, int fallback) {
+        return options.hasKey(key) && !options.isNull(key) ? options.getInt(key) : fallback;
+    }
+
+    boolean allowsAttempt(int attempt) {
+        return maxAttempts == 0 || attempt <= maxAttempts;
+    }
+
+    /**
+     * @param attempt the attempt about to be made, from 1
+     * @return the milliseconds to wait before the attempt
+     */
+    long getDelay(int attempt) {
+        return getDelay(attempt, ThreadLocalRandom.current().nextDouble());
+    }
+
+    long getDelay(int attempt, double random) {
+        // Capped before shifting so large attempts do not overflow
+        final int doublings = Math.min(attempt - 1, 30);
+        final long delay = Math.min(maxDelay, (long) initialDelay << doublings);
+        return Math.max(1, Math.round(delay * (1 - jitter * random)));
+    }
+}
@@ -2,37 +2,190 @@ package com.asterinet.react.tcpsocket;
 
 import android.content.Context;
 import android.net.Network;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableArray;
 
-import java.io.BufferedInputStream;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
 class TcpSocketClient extends TcpSocket {
+    // Linux TCP keep-alive socket options, not exposed by android.system.OsConstants
+    private static final int TCP_KEEPIDLE = 4;
+    private static final int TCP_KEEPINTVL = 5;
+    private static final int TCP_KEEPCNT = 6;
+    // Once writes of several priorities are queued, larger writes are split so that writes of a
+    // higher priority can be sent in between
+    static final int WRITE_CHUNK_SIZE = 16384;
+    static final int WRITE_STAGING_SIZE = 65536;
+
     private final ExecutorService listenExecutor;
     private final ExecutorService writeExecutor;
+    private final TcpTimerWheel timerWheel;
+    private final TcpTimerWheel.Timeout idleTimeoutTimer;
     private final TcpEventListener receiverListener;
+    @Nullable
+    private final TcpSocketServer server;
+    @Nullable
+    private volatile TcpMultiplexer multiplexer;
+    @Nullable
+    private volatile TcpCompressionCodec codec;
+    private volatile TcpPipeline pipeline;
+    private volatile TcpWriteAcknowledger acks;
+    // Writes handed to the write thread and not completed yet
+    private final AtomicInteger queuedWrites = new AtomicInteger();
+    private final TcpWriteQueue outbound = new TcpWriteQueue();
+    // Set by the first write that is not of the normal priority
+    private volatile boolean prioritized;
+    private final TcpBandwidthLimiter readLimiter = new TcpBandwidthLimiter();
+    private final TcpBandwidthLimiter writeLimiter = new TcpBandwidthLimiter();
+    private final TcpBandwidthLimiter.ClosedCheck closedCheck = new TcpBandwidthLimiter.ClosedCheck() {
+        @Override
+        public boolean isClosed() {
+            final Socket current = socket;
+            return current == null || current.isClosed();
+        }
+    };
     private TcpReceiverTask receiverTask;
-    private Socket socket;
-    private boolean closed = true;
+    private TcpSocketOptions socketOptions;
+    private volatile Socket socket;
+    // What connect() needs to open the connection again, see connectionLost()
+    @Nullable
+    private TcpReconnectPolicy reconnectPolicy;
+    @Nullable
+    private NetworkSelector networkSelector;
+    @Nullable
+    private SSLSocketFactory sslSocketFactory;
+    private String remoteHost;
+    private int remotePort;
+    private ReadableMap connectOptions;
+    @Nullable
+    private volatile Network boundNetwork;
+    private final Object reconnectLock = new Object();
+    // Guarded by reconnectLock
+    private boolean reconnecting;
+    private volatile boolean disconnected;
+    private int reconnectAttempt;
+    @Nullable
+    private Socket reconnectingSocket;
+    private final TcpTimerWheel.Timeout reconnectTimer;
+    // Of the last connection, initial or not
+    @Nullable
+    private volatile TcpConnectTimings connectTimings;
+    private volatile boolean closed = true;
+    private volatile long lastActivity;
+    private long lastTimeoutActivity;
+    private int idleTimeout;
+    // Corked writes, only used by the write thread
+    private int corkDepth;
+    private final ArrayList<byte[]> corkedBuffers = new ArrayList<>();
+    private final ArrayList<WriteCallback> corkedCallbacks = new ArrayList<>();
+    // Direct buffer the channel writes are copied through, only used by the write thread
+    @Nullable
+    private ByteBuffer writeStaging;
+
+    interface WriteCallback {
+        void onWritten(@Nullable IOException e);
+    }
+
+    /**
+     * Selects the network a reconnecting socket is bound to.
+     */
+    interface NetworkSelector {
+        @Nullable
+        Network select() throws IOException, InterruptedException;
+    }
+
+    TcpSocketClient(TcpEventListener receiverListener, TcpTimerWheel timerWheel, Integer id, Socket socket) {
+        this(receiverListener, timerWheel, id, socket, null, null);
+    }
 
-    TcpSocketClient(TcpEventListener receiverListener, Integer id, Socket socket) {
+    /**
+     * @param server the server that accepted `socket`, notified when the client is destroyed
+     */
+    TcpSocketClient(TcpEventListener receiverListener, TcpTimerWheel timerWheel, Integer id, Socket socket,
+                    TcpSocketOptions socketOptions, @Nullable TcpSocketServer server) {
         super(id);
         listenExecutor = Executors.newSingleThreadExecutor();
         writeExecutor = Executors.newSingleThreadExecutor();
+        this.timerWheel = timerWheel;
+        idleTimeoutTimer = new TcpTimerWheel.Timeout(new Runnable() {
+            @Override
+            public void run() {
+                checkIdle();
+            }
+        });
+        reconnectTimer = new TcpTimerWheel.Timeout(new Runnable() {
+            @Override
+            public void run() {
+                scheduleReconnect();
+            }
+        });
         this.socket = socket;
+        this.socketOptions = socketOptions;
         this.receiverListener = receiverListener;
+        this.server = server;
+        pipeline = new TcpPipeline(this, receiverListener, Collections.<TcpHandler>emptyList());
+        acks = new TcpWriteAcknowledger(receiverListener, id, TcpWriteAcknowledger.MODE_MESSAGE);
+        if (socketOptions != null) setupPipeline();
+    }
+
+    /**
+     * Sets up the pipeline, the write acknowledgements and the write queue from the socket options.
+     */
+    private void setupPipeline() {
+        pipeline = createPipeline();
+        acks = new TcpWriteAcknowledger(receiverListener, getId(), socketOptions.writeAcks);
+        setBandwidth(socketOptions.readBytesPerSecond, socketOptions.writeBytesPerSecond);
+        if (socketOptions.spillThreshold != TcpSocketOptions.DEFAULT) {
+            outbound.setSpillThreshold(socketOptions.spillThreshold, "tcp-socket-" + getId() + "-");
+        }
+    }
+
+    /**
+     * Creates the handlers between the socket and JS configured by the socket options: the codec
+     * next to the wire, then the handlers registered by the app and the multiplexer last. A new
+     * connection starts with new handlers, see {@link #reconnect}.
+     */
+    private TcpPipeline createPipeline() {
+        final List<TcpHandler> handlers = new ArrayList<>();
+        codec = socketOptions.createCompressionCodec();
+        if (codec != null) handlers.add(codec);
+        for (TcpHandler.Factory factory : socketOptions.handlerFactories) {
+            handlers.add(factory.create(getId()));
+        }
+        if (socketOptions.multiplex) {
+            multiplexer = new TcpMultiplexer(this, receiverListener, timerWheel, socketOptions.maxFrameSize);
+            handlers.add(multiplexer);
+        }
+        return new TcpPipeline(this, receiverListener, handlers);
     }
 
     public Socket getSocket() {
@@ -40,20 +193,54 @@ class TcpSocketClient extends TcpSocket {
     }
 
     public void connect(Context context, String address, final Integer port, ReadableMap options, Network network, ReadableMap tlsOptions) throws IOException, GeneralSecurityException {
+        connect(context, address, port, options, network, tlsOptions, new TcpConnectTimings(System.nanoTime()));
+    }
+
+    /**
+     * @param timings the phases of the connection so far, completed by this call
+     */
+    public void connect(Context context, String address, final Integer port, ReadableMap options, Network network, ReadableMap tlsOptions,
+                        TcpConnectTimings timings) throws IOException, GeneralSecurityException {
         if (socket != null) throw new IOException("Already connected");
-        if (tlsOptions != null) {
-            SSLSocketFactory ssf = getSSLSocketFactory(context, tlsOptions);
-            socket = ssf.createSocket();
-            ((SSLSocket) socket).setUseClientMode(true);
-        } else {
-            socket = new Socket();
+        socketOptions = TcpSocketOptions.fromReadableMap(options);
+        reconnectPolicy = TcpReconnectPolicy.fromReadableMap(options);
+        remoteHost = address;
+        remotePort = port;
+        connectOptions = options;
+        // Kept for the reconnections, along with its TLS session cache
+        if (tlsOptions != null) sslSocketFactory = getSSLSocketFactory(context, tlsOptions);
+        socket = createSocket();
+        setupPipeline();
+        connectSocket(socket, network, timings);
+        startListening();
+    }
+
+    private Socket createSocket() throws IOException {
+        if (sslSocketFactory != null) {
+            final Socket sslSocket = sslSocketFactory.createSocket();
+            ((SSLSocket) sslSocket).setUseClientMode(true);
+            return sslSocket;
         }
+        return new Socket();
+    }
+
+    /**
+     * Binds `socket` and connects it to the address given to {@link #connect}, with the TLS
+     * handshake if any. Finishes `timings` once connected.
+     */
+    private void connectSocket(final Socket socket, @Nullable Network network, TcpConnectTimings timings) throws IOException {
+        final ReadableMap options = connectOptions;
         // Get the addresses
         final String localAddress = options.hasKey("localAddress") ? options.getString("localAddress") : "0.0.0.0";
+        long phaseStart = System.nanoTime();
         final InetAddress localInetAddress = InetAddress.getByName(localAddress);
-        final InetAddress remoteInetAddress = InetAddress.getByName(address);
+        final InetAddress remoteInetAddress = InetAddress.getByName(remoteHost);
+        timings.end(TcpConnectTimings.DNS, phaseStart);
         if (network != null)
             network.bindSocket(socket);
+        boundNetwork = network;
+        // Buffer sizes, SO_LINGER and traffic class must be set before connecting
+        socketOptions.applyTo(socket);
         // setReuseAddress
         if (options.hasKey("reuseAddress")) {
             boolean reuseAddress = options.getBoolean("reuseAddress");
@@ -65,21 +252,247 @@ class TcpSocketClient extends TcpSocket {
         final int localPort = options.hasKey("localPort") ? options.getInt("localPort") : 0;
         // bind
         socket.bind(new InetSocketAddress(localInetAddress, localPort));
-        final int connectTimeout = options.hasKey("connectTimeout") ? options.getInt("connectTimeout") : 0; 
-        socket.connect(new InetSocketAddress(remoteInetAddress, port), connectTimeout);
-        if (socket instanceof SSLSocket) ((SSLSocket) socket).startHandshake();
-        startListening();
+        final int connectTimeout = options.hasKey("connectTimeout") ? options.getInt("connectTimeout") : 0;
+        phaseStart = System.nanoTime();
+        socket.connect(new InetSocketAddress(remoteInetAddress, remotePort), connectTimeout);
+        timings.end(TcpConnectTimings.CONNECT, phaseStart);
+        if (socket instanceof SSLSocket) {
+            final int handshakeTimeout = options.hasKey("handshakeTimeout") ? options.getInt("handshakeTimeout") : 0;
+            phaseStart = System.nanoTime();
+            handshake((SSLSocket) socket, handshakeTimeout);
+            timings.end(TcpConnectTimings.HANDSHAKE, phaseStart);
+        }
+        timings.finish();
+        connectTimings = timings;
+    }
+
+    /**
+     * @return the timings of the last connection, `null` before the socket connected
+     */
+    @Nullable
+    TcpConnectTimings getConnectTimings() {
+        return connectTimings;
+    }
+
+    void setNetworkSelector(@Nullable NetworkSelector networkSelector) {
+        this.networkSelector = networkSelector;
+    }
+
+    /**
+     * Called when the connection of `lostSocket` failed. With the `reconnect` option, closes it
+     * and schedules a new connection, during which the writes wait on the write thread.
+     *
+     * @return `false` if the socket does not reconnect and `e` must be reported
+     */
+    boolean connectionLost(Socket lostSocket, IOException e) {
+        final long delay;
+        synchronized (reconnectLock) {
+            if (reconnectPolicy == null || closed) return false;
+            // Already reconnecting or reconnected
+            if (disconnected || socket != lostSocket) return true;
+            disconnected = true;
+            reconnecting = true;
+            reconnectAttempt = 1;
+            delay = reconnectPolicy.getDelay(1);
+        }
+        closeQuietly(lostSocket);
+        receiverListener.onReconnecting(getId(), 1, delay, e);
+        timerWheel.schedule(reconnectTimer, delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Skips the backoff delay of a reconnecting socket, called once a network becomes available.
+     */
+    void reconnectNow() {
+        synchronized (reconnectLock) {
+            if (!reconnecting || reconnectingSocket != null) return;
+        }
+        timerWheel.cancel(reconnectTimer);
+        scheduleReconnect();
+    }
+
+    /**
+     * Closes the connection if it goes through `network`, which is gone, so that it reconnects
+     * at once instead of waiting for TCP to give up.
+     */
+    void networkLost(Network network) {
+        final Socket current = socket;
+        if (reconnectPolicy == null || current == null || !network.equals(boundNetwork)) return;
+        closeQuietly(current);
+    }
+
+    private void scheduleReconnect() {
+        try {
+            // The receiver task is over, its thread makes the attempts
+            listenExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    reconnect();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The socket has been destroyed
+        }
+    }
+
+    private void reconnect() {
+        // Counted from the end of the backoff delay
+        final TcpConnectTimings timings = new TcpConnectTimings(System.nanoTime());
+        Socket next = null;
+        try {
+            synchronized (reconnectLock) {
+                if (!reconnecting || closed || reconnectingSocket != null) return;
+                next = createSocket();
+                reconnectingSocket = next;
+            }
+            Network network = null;
+            if (networkSelector != null) {
+                final long networkStart = System.nanoTime();
+                network = networkSelector.select();
+                timings.end(TcpConnectTimings.NETWORK, networkStart);
+            }
+            connectSocket(next, network, timings);
+        } catch (IOException | InterruptedException e) {
+            closeQuietly(next);
+            reconnectFailed(e);
+            return;
+        }
+        final TcpPipeline lostPipeline = pipeline;
+        final TcpMultiplexer lostMultiplexer = multiplexer;
+        synchronized (reconnectLock) {
+            reconnectingSocket = null;
+            if (closed) {
+                closeQuietly(next);
+                return;
+            }
+            // The write thread is waiting, see awaitReconnect()
+            socket = next;
+            pipeline = createPipeline();
+            disconnected = false;
+            reconnecting = false;
+            reconnectLock.notifyAll();
+        }
+        // The responses to its requests were lost with the connection
+        if (lostMultiplexer != null) lostMultiplexer.close();
+        try {
+            writeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    lostPipeline.closeOutput();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Destroyed, the pipeline is closed by destroy()
+        }
+        receiverListener.onReconnect(getId(), this);
+        listen();
+    }
+
+    private void reconnectFailed(Exception e) {
+        final int attempt;
+        final long delay;
+        synchronized (reconnectLock) {
+            reconnectingSocket = null;
+            if (!reconnecting || closed) return;
+            attempt = ++reconnectAttempt;
+            if (!reconnectPolicy.allowsAttempt(attempt)) {
+                // Out of attempts, the waiting writes fail
+                reconnecting = false;
+                reconnectLock.notifyAll();
+                delay = -1;
+            } else {
+                delay = reconnectPolicy.getDelay(attempt);
+            }
+        }
+        if (delay < 0) {
+            receiverListener.onError(getId(), e);
+            return;
+        }
+        receiverListener.onReconnecting(getId(), attempt, delay, e);
+        timerWheel.schedule(reconnectTimer, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits while the socket reconnects. Called by the write thread only.
+     *
+     * @return `true` unless the connection was lost for good
+     */
+    private boolean awaitReconnect() {
+        synchronized (reconnectLock) {
+            try {
+                while (reconnecting) {
+                    reconnectLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return !disconnected && !closed;
+        }
+    }
+
+    /**
+     * Stops reconnecting for good.
+     *
+     * @return `true` if the connection had been lost
+     */
+    private boolean stopReconnecting() {
+        synchronized (reconnectLock) {
+            closed = true;
+            reconnecting = false;
+            closeQuietly(reconnectingSocket);
+            reconnectLock.notifyAll();
+        }
+        timerWheel.cancel(reconnectTimer);
+        return disconnected;
+    }
+
+    private static void closeQuietly(@Nullable Socket socket) {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
     }
 
     public void startTLS(Context context, ReadableMap tlsOptions) throws IOException, GeneralSecurityException {
         if (socket instanceof SSLSocket) return;
+        synchronized (reconnectLock) {
+            // The upgrade is negotiated by the app, a new connection could not redo it
+            reconnectPolicy = null;
+        }
         SSLSocketFactory ssf = getSSLSocketFactory(context, tlsOptions);
         SSLSocket sslSocket = (SSLSocket) ssf.createSocket(socket, socket.getInetAddress().getHostAddress(), socket.getPort(), true);
         sslSocket.setUseClientMode(true);
-        sslSocket.startHandshake();
+        handshake(sslSocket);
         socket = sslSocket;
     }
 
+    /**
+     * Runs the TLS handshake of `sslSocket`, each read of which waits at most `timeout`
+     * milliseconds, 0 for no limit. The socket then reads without timeout.
+     */
+    void handshake(SSLSocket sslSocket, int timeout) throws IOException {
+        sslSocket.setSoTimeout(timeout);
+        try {
+            handshake(sslSocket);
+        } catch (SocketTimeoutException e) {
+            throw new SocketTimeoutException("TLS handshake timed out after " + timeout + "ms");
+        }
+        sslSocket.setSoTimeout(0);
+    }
+
+    private void handshake(SSLSocket sslSocket) throws IOException {
+        final TcpTracer tracer = TcpTracer.get();
+        final long traceToken = tracer.begin(TcpTracer.HANDSHAKE, getId());
+        try {
+            sslSocket.startHandshake();
+        } finally {
+            tracer.end(TcpTracer.HANDSHAKE, getId(), traceToken);
+        }
+    }
+
     private boolean containsKey(ReadableArray array, String key) {
         for (int i = 0; i < array.size(); i++) {
             if (array.getString(i).equals(key)) {
@@ -141,9 +554,38 @@ class TcpSocketClient extends TcpSocket {
         return ssf;
     }
 
+    /**
+     * @return the multiplexer of the socket, `null` unless it was created with the `multiplex` option
+     */
+    @Nullable
+    TcpMultiplexer getMultiplexer() {
+        return multiplexer;
+    }
+
+    /**
+     * @return the compression codec of the socket, `null` unless it was created with the `compression` option
+     */
+    @Nullable
+    TcpCompressionCodec getCompressionCodec() {
+        return codec;
+    }
+
     public void startListening() {
+        // Read errors are reported from now on, until destroy()
+        closed = false;
+        listen();
+    }
+
+    private void listen() {
+        final TcpReceiverTask previousTask = receiverTask;
         receiverTask = new TcpReceiverTask(this, receiverListener);
-        listenExecutor.execute(receiverTask);
+        // A reconnected socket stays paused
+        if (previousTask != null && previousTask.isPaused()) receiverTask.pause();
+        try {
+            listenExecutor.execute(receiverTask);
+        } catch (RejectedExecutionException e) {
+            // Destroyed before it started listening, there is nothing to receive
+        }
     }
 
     /**
@@ -152,22 +594,336 @@ class TcpSocketClient extends TcpSocket {
      * @param data data to be sent
      */
     public void write(final int msgId, final byte[] data) {
-        writeExecutor.execute(new Runnable() {
-            @Override
-            public void run() {
-                if (socket == null) {
-                    receiverListener.onError(getId(), new IOException("Attempted to write to closed socket"));
-                    return;
+        write(msgId, data, TcpWriteQueue.PRIORITY_NORMAL);
+    }
+
+    /**
+     * Sends data from the socket before the queued writes of a lower priority. Writes of a higher
+     * priority are also sent between the chunks of a large write already being sent.
+     */
+    public void write(final int msgId, final byte[] data, final int priority) {
+        if (rejectRawWrite(msgId, priority, data)) return;
+        write(new byte[][]{data}, new MessageWriteCallback(msgId, priority), priority);
+    }
+
+    /**
+     * Sends several buffers from the socket as a single write, acknowledged by a single `written`
+     * event.
+     */
+    public void writev(final int msgId, final byte[][] buffers) {
+        if (rejectRawWrite(msgId, TcpWriteQueue.PRIORITY_NORMAL, buffers)) return;
+        write(buffers, new MessageWriteCallback(msgId, TcpWriteQueue.PRIORITY_NORMAL), TcpWriteQueue.PRIORITY_NORMAL);
+    }
+
+    /**
+     * Sends a frame encoded by the multiplexer, acknowledged by a `written` event with `msgId`.
+     */
+    void writeFrame(final int msgId, final byte[] frame) {
+        write(new byte[][]{frame}, new MessageWriteCallback(msgId, TcpWriteQueue.PRIORITY_NORMAL), TcpWriteQueue.PRIORITY_NORMAL);
+    }
+
+    /**
+     * Fails the write `msgId` if it would send unframed bytes on a multiplexed socket, which the
+     * peer would decode as a frame header. Empty writes carry no bytes and are let through.
+     */
+    private boolean rejectRawWrite(int msgId, int priority, byte[]... buffers) {
+        if (multiplexer == null) return false;
+        for (byte[] buffer : buffers) {
+            if (buffer.length > 0) {
+                acks.acknowledge(msgId, new IOException("Attempted to write raw data to a multiplexed socket, use request() or respond()"),
+                        priority == TcpWriteQueue.PRIORITY_NORMAL);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class MessageWriteCallback implements WriteCallback {
+        private final int msgId;
+        private final int priority;
+        private final TcpTracer tracer = TcpTracer.get();
+        private final long traceToken;
+
+        MessageWriteCallback(int msgId, int priority) {
+            this.msgId = msgId;
+            this.priority = priority;
+            traceToken = tracer.begin(TcpTracer.WRITE_TO_ACK, getId());
+        }
+
+        @Override
+        public void onWritten(@Nullable IOException e) {
+            // Only writes of the normal priority complete in the order they were made
+            acks.acknowledge(msgId, e, priority == TcpWriteQueue.PRIORITY_NORMAL);
+            tracer.end(TcpTracer.WRITE_TO_ACK, getId(), traceToken);
+        }
+    }
+
+    /**
+     * Sends data from the socket, reporting the outcome to `callback` instead of JS.
+     */
+    void write(final byte[] data, final WriteCallback callback) {
+        write(new byte[][]{data}, callback, TcpWriteQueue.PRIORITY_NORMAL);
+    }
+
+    private void write(final byte[][] buffers, final WriteCallback callback, final int priority) {
+        if (priority != TcpWriteQueue.PRIORITY_NORMAL) prioritized = true;
+        final TcpWriteQueue.Entry entry = new TcpWriteQueue.Entry(buffers, callback, priority);
+        queuedWrites.incrementAndGet();
+        outbound.add(entry);
+        try {
+            writeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Not necessarily `entry`, which may already have been sent
+                    final TcpWriteQueue.Entry next = outbound.poll();
+                    if (next != null) send(next);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            // The socket has been destroyed
+            if (!outbound.remove(entry)) return;
+            queuedWrites.decrementAndGet();
+            callback.onWritten(new IOException("Attempted to write to closed socket"));
+        }
+    }
+
+    /**
+     * Called by the write thread only.
+     */
+    private void send(TcpWriteQueue.Entry entry) {
+        try {
+            sendQueued(entry);
+        } finally {
+            if (queuedWrites.decrementAndGet() == 0) acks.flush();
+        }
+    }
+
+    private void sendQueued(TcpWriteQueue.Entry entry) {
+        final WriteCallback callback = entry.callback;
+        awaitReconnect();
+        while (true) {
+            final Socket writeSocket = socket;
+            if (writeSocket == null) {
+                callback.onWritten(new IOException("Attempted to write to closed socket"));
+                return;
+            }
+            try {
+                // Handlers may depend on the boundaries of the writes, only the raw bytes are split
+                if (prioritized && corkDepth == 0 && pipeline.isEmpty()) {
+                    writeChunked(entry);
+                } else {
+                    pipeline.write(entry.buffers);
+                }
+                break;
+            } catch (IOException e) {
+                // Sent again from the start over the new connection, the peer may get part of it twice
+                if (connectionLost(writeSocket, e) && awaitReconnect()) continue;
+                callback.onWritten(e);
+                return;
+            }
+        }
+        if (corkDepth > 0) {
+            // Acknowledged once the corked data is flushed
+            corkedCallbacks.add(callback);
+            return;
+        }
+        lastActivity = System.nanoTime();
+        callback.onWritten(null);
+    }
+
+    /**
+     * Writes `entry` to the socket in chunks, sending the writes of a higher priority queued
+     * meanwhile between them.
+     */
+    private void writeChunked(TcpWriteQueue.Entry entry) throws IOException {
+        final byte[] data = entry.buffers.length == 1 ? entry.buffers[0] : TcpPipeline.concat(entry.buffers);
+        int offset = 0;
+        while (true) {
+            final int length = Math.min(WRITE_CHUNK_SIZE, data.length - offset);
+            final Socket writeSocket = socket;
+            if (writeSocket == null) throw new IOException("Attempted to write to closed socket");
+            writeFully(writeSocket, ByteBuffer.wrap(data, offset, length));
+            offset += length;
+            if (offset >= data.length) return;
+            TcpWriteQueue.Entry urgent;
+            while ((urgent = outbound.pollAbove(entry.priority)) != null) {
+                send(urgent);
+            }
+        }
+    }
+
+    /**
+     * Holds the data written from now on in memory until the matching {@link #uncork}. Calls may
+     * be nested, the data is flushed by the last `uncork()`.
+     */
+    public void cork() {
+        try {
+            writeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    corkDepth++;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The socket has been destroyed
+        }
+    }
+
+    /**
+     * Flushes the corked data with a single write once every `cork()` has been matched.
+     *
+     * @param noDelay `true` to send the data with TCP_NODELAY, so the last partial segment is not
+     *                held back by Nagle's algorithm
+     */
+    public void uncork(final boolean noDelay) {
+        try {
+            writeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (corkDepth == 0 || --corkDepth > 0) return;
+                    flushCorked(noDelay);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The socket has been destroyed, the corked writes already failed
+        }
+    }
+
+    private void flushCorked(boolean noDelay) {
+        final byte[][] buffers = corkedBuffers.toArray(new byte[0][]);
+        final WriteCallback[] callbacks = corkedCallbacks.toArray(new WriteCallback[0]);
+        corkedBuffers.clear();
+        corkedCallbacks.clear();
+        IOException error = null;
+        while (true) {
+            final Socket writeSocket = socket;
+            try {
+                if (writeSocket == null) throw new IOException("Attempted to write to closed socket");
+                final boolean toggleNoDelay = noDelay && !writeSocket.getTcpNoDelay();
+                if (toggleNoDelay) writeSocket.setTcpNoDelay(true);
                 try {
-                    socket.getOutputStream().write(data);
-                    receiverListener.onWritten(getId(), msgId, null);
-                } catch (IOException e) {
-                    receiverListener.onWritten(getId(), msgId, e);
-                    receiverListener.onError(getId(), e);
+                    writeFully(writeSocket, buffers);
+                } finally {
+                    if (toggleNoDelay) writeSocket.setTcpNoDelay(false);
                 }
+                lastActivity = System.nanoTime();
+            } catch (IOException e) {
+                // The corked bytes already went through the handlers of the lost connection
+                if (writeSocket != null && pipeline.isEmpty() && connectionLost(writeSocket, e) && awaitReconnect()) {
+                    continue;
+                }
+                error = e;
             }
-        });
+            break;
+        }
+        for (WriteCallback callback : callbacks) {
+            callback.onWritten(error);
+        }
+        if (queuedWrites.get() == 0) acks.flush();
+    }
+
+    /**
+     * Writes the output of the pipeline to the socket, or holds it while the socket is corked.
+     * Called by the write thread only.
+     */
+    void writeToWire(byte[]... buffers) throws IOException {
+        if (corkDepth > 0) {
+            Collections.addAll(corkedBuffers, buffers);
+            return;
+        }
+        final Socket writeSocket = socket;
+        if (writeSocket == null) throw new IOException("Attempted to write to closed socket");
+        writeFully(writeSocket, buffers);
+    }
+
+    private void writeFully(Socket socket, byte[][] buffers) throws IOException {
+        final ByteBuffer[] byteBuffers = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            byteBuffers[i] = ByteBuffer.wrap(buffers[i]);
+        }
+        writeFully(socket, byteBuffers);
+    }
+
+    /**
+     * Plaintext sockets accepted by a server belong to a channel. The streams of such sockets
+     * serialize reads and writes on the channel, so a pending read would block writes: use the
+     * channel.
+     * Channel writes go through a reused direct buffer of {@link #WRITE_STAGING_SIZE} bytes, which
+     * gathers several small buffers into one write. Handing a heap buffer to the channel instead
+     * makes it copy the whole write into a temporary direct buffer, and cache the largest one for
+     * the thread.
+     * Several buffers are merged into one write on streams. The buffers must wrap heap arrays.
+     */
+    private void writeFully(Socket socket, ByteBuffer... buffers) throws IOException {
+        if (writeLimiter.isLimited() || TcpBandwidthLimiter.GLOBAL_WRITE.isLimited()) {
+            writeShaped(socket, buffers);
+            return;
+        }
+        writeUnshaped(socket, buffers);
+    }
+
+    /**
+     * Writes the buffers in chunks, waiting for the bandwidth limits before each of them.
+     */
+    private void writeShaped(Socket socket, ByteBuffer[] buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                final int length = Math.min(WRITE_CHUNK_SIZE, buffer.remaining());
+                try {
+                    TcpBandwidthLimiter.pace(writeLimiter, TcpBandwidthLimiter.GLOBAL_WRITE, length, closedCheck);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while throttled");
+                }
+                final ByteBuffer chunk = buffer.duplicate();
+                chunk.limit(chunk.position() + length);
+                writeUnshaped(socket, chunk.slice());
+                buffer.position(buffer.position() + length);
+            }
+        }
+    }
+
+    private void writeUnshaped(Socket socket, ByteBuffer... buffers) throws IOException {
+        final SocketChannel channel = socket.getChannel();
+        if (channel == null) {
+            if (buffers.length == 1) {
+                final ByteBuffer buffer = buffers[0];
+                socket.getOutputStream().write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                socket.getOutputStream().write(concat(buffers));
+            }
+            return;
+        }
+        if (writeStaging == null) writeStaging = ByteBuffer.allocateDirect(WRITE_STAGING_SIZE);
+        final ByteBuffer staging = writeStaging;
+        int index = 0;
+        while (index < buffers.length) {
+            staging.clear();
+            while (index < buffers.length && staging.hasRemaining()) {
+                final ByteBuffer buffer = buffers[index];
+                final int count = Math.min(buffer.remaining(), staging.remaining());
+                staging.put(buffer.array(), buffer.arrayOffset() + buffer.position(), count);
+                buffer.position(buffer.position() + count);
+                if (!buffer.hasRemaining()) index++;
+            }
+            staging.flip();
+            while (staging.hasRemaining()) {
+                channel.write(staging);
+            }
+        }
+    }
+
+    private static byte[] concat(ByteBuffer[] buffers) {
+        int length = 0;
+        for (ByteBuffer buffer : buffers) length += buffer.remaining();
+        final byte[] data = new byte[length];
+        int offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            final int count = buffer.remaining();
+            buffer.duplicate().get(data, offset, count);
+            offset += count;
+        }
+        return data;
     }
 
     public ReadableMap getPeerCertificate() {
@@ -182,9 +938,14 @@ class TcpSocketClient extends TcpSocket {
      * Shuts down the receiver task, closing the socket.
      */
     public void destroy() {
+        setIdleTimeout(0);
+        // Before closing the socket, so pending requests fail as closed rather than unwritten
+        if (multiplexer != null) multiplexer.close();
+        final boolean disconnected = stopReconnecting();
+        final Socket destroyedSocket = socket;
         try {
-            // close the socket
-            if (socket != null && !socket.isClosed()) {
+            // close the socket, already closed if the connection was lost
+            if (socket != null && (!socket.isClosed() || disconnected)) {
                 closed = true;
                 socket.close();
                 receiverListener.onClose(getId(), null);
@@ -193,6 +954,30 @@ class TcpSocketClient extends TcpSocket {
         } catch (IOException e) {
             receiverListener.onClose(getId(), e);
         }
+        final TcpPipeline destroyedPipeline = pipeline;
+        try {
+            // After the pending writes
+            writeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Fail the writes still corked
+                    if (corkDepth > 0) {
+                        corkDepth = 0;
+                        flushCorked(false);
+                    }
+                    destroyedPipeline.closeOutput();
+                    outbound.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Already destroyed
+        }
+        // Let the threads of the socket die, pending writes still run and fail
+        listenExecutor.shutdown();
+        writeExecutor.shutdown();
+        if (server != null) {
+            server.onClientDestroyed(this, destroyedSocket != null ? destroyedSocket.getInetAddress() : null);
+        }
     }
 
     /**
@@ -206,14 +991,98 @@ class TcpSocketClient extends TcpSocket {
     }
 
     /**
-     * @param enable `true` to enable keep-alive functionality
+     * @param enable       `true` to enable keep-alive functionality
+     * @param initialDelay milliseconds of idle time before the first keep-alive probe is sent
      */
     public void setKeepAlive(final boolean enable, final int initialDelay) throws IOException {
         if (socket == null) {
             throw new IOException("Socket is not connected.");
         }
-        // `initialDelay` is ignored
         socket.setKeepAlive(enable);
+        if (!enable) return;
+        final int interval = socketOptions != null ? socketOptions.keepAliveInterval : TcpSocketOptions.DEFAULT;
+        final int count = socketOptions != null ? socketOptions.keepAliveCount : TcpSocketOptions.DEFAULT;
+        if (initialDelay <= 0 && interval <= 0 && count <= 0) return;
+        // Probe timings are not part of the java.net API, so set them on the file descriptor
+        ParcelFileDescriptor pfd = null;
+        try {
+            pfd = ParcelFileDescriptor.fromSocket(socket);
+            FileDescriptor fd = pfd.getFileDescriptor();
+            if (initialDelay > 0)
+                Os.setsockoptInt(fd, OsConstants.IPPROTO_TCP, TCP_KEEPIDLE, toSeconds(initialDelay));
+            if (interval > 0)
+                Os.setsockoptInt(fd, OsConstants.IPPROTO_TCP, TCP_KEEPINTVL, toSeconds(interval));
+            if (count > 0)
+                Os.setsockoptInt(fd, OsConstants.IPPROTO_TCP, TCP_KEEPCNT, count);
+        } catch (ErrnoException | RuntimeException e) {
+            // Keep-alive stays enabled with the system probe timings
+            Log.w(TcpSocketModule.TAG, "Could not set keep-alive timings on socket " + getId(), e);
+        } finally {
+            if (pfd != null) pfd.close();
+        }
+    }
+
+    private static int toSeconds(int millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
+    /**
+     * Emits a `timeout` event after `timeout` milliseconds without data being read or written.
+     * The event is emitted once per idle period. A `timeout` of 0 disables the idle timeout.
+     */
+    public synchronized void setIdleTimeout(final int timeout) {
+        idleTimeout = timeout;
+        if (timeout <= 0) {
+            timerWheel.cancel(idleTimeoutTimer);
+            return;
+        }
+        lastActivity = System.nanoTime();
+        lastTimeoutActivity = 0;
+        timerWheel.schedule(idleTimeoutTimer, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void checkIdle() {
+        if (idleTimeout <= 0) return;
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        final long activity = lastActivity;
+        final long idle = System.nanoTime() - activity;
+        if (idle < timeoutNanos) {
+            timerWheel.schedule(idleTimeoutTimer, timeoutNanos - idle, TimeUnit.NANOSECONDS);
+            return;
+        }
+        // Only emit once until there is new activity on the socket
+        if (activity != lastTimeoutActivity) {
+            lastTimeoutActivity = activity;
+            receiverListener.onTimeout(getId());
+        }
+        timerWheel.schedule(idleTimeoutTimer, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Limits the bandwidth of the socket, `0` or less removes the limit.
+     */
+    public void setBandwidth(double readBytesPerSecond, double writeBytesPerSecond) {
+        readLimiter.setRate(readBytesPerSecond);
+        writeLimiter.setRate(writeBytesPerSecond);
+    }
+
+    long getReadThrottledNanos() {
+        return readLimiter.getThrottledNanos();
+    }
+
+    long getWriteThrottledNanos() {
+        return writeLimiter.getThrottledNanos();
+    }
+
+    /**
+     * @return the writes waiting for the write thread
+     */
+    TcpWriteQueue getWriteQueue() {
+        return outbound;
+    }
+
+    private void paceRead(int bytes) throws InterruptedException {
+        TcpBandwidthLimiter.pace(readLimiter, TcpBandwidthLimiter.GLOBAL_READ, bytes, closedCheck);
     }
 
     public void pause() {
@@ -249,7 +1118,7 @@ class TcpSocketClient extends TcpSocket {
          */
         @Override
         public void run() {
-            int socketId = clientSocket.getId();
+            final int socketId = clientSocket.getId();
             Socket socket = clientSocket.getSocket();
 
             // Guard against null socket - can happen if destroy() is called
@@ -258,23 +1127,52 @@ class TcpSocketClient extends TcpSocket {
                 return;
             }
 
-            byte[] buffer = new byte[16384];
+            TcpSocketOptions socketOptions = clientSocket.socketOptions;
+            final TcpReceiveSizer sizer = socketOptions != null ? socketOptions.createReceiveSizer()
+                    : new TcpReceiveSizer(TcpReceiveSizer.DEFAULT_MIN_SIZE, TcpReceiveSizer.DEFAULT_INITIAL_SIZE, TcpSocketOptions.DEFAULT_READ_BUFFER_SIZE);
+            byte[] buffer = new byte[sizer.nextSize()];
+            // Read through the channel if there is one, see writeFully()
+            SocketChannel channel = socket.getChannel();
+            final TcpPipeline pipeline = clientSocket.pipeline;
+            ByteBuffer channelBuffer = channel != null ? ByteBuffer.wrap(buffer) : null;
             try {
-                BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
+                // Unbuffered, the pipeline gets the bytes straight from the read
+                InputStream in = channel == null ? socket.getInputStream() : null;
                 while (!socket.isClosed()) {
-                    int bufferCount = in.read(buffer);
+                    final int readSize = sizer.nextSize();
+                    // Keep the buffer unless it is too small or much too large
+                    if (buffer.length < readSize || buffer.length / 4 >= readSize) {
+                        buffer = new byte[readSize];
+                        if (channel != null) channelBuffer = ByteBuffer.wrap(buffer);
+                    }
+                    int bufferCount;
+                    if (channel != null) {
+                        channelBuffer.clear();
+                        channelBuffer.limit(readSize);
+                        bufferCount = channel.read(channelBuffer);
+                    } else {
+                        bufferCount = in.read(buffer, 0, readSize);
+                    }
                     waitIfPaused();
                     if (bufferCount > 0) {
-                        receiverListener.onData(socketId, Arrays.copyOfRange(buffer, 0, bufferCount));
+                        sizer.record(bufferCount);
+                        clientSocket.lastActivity = System.nanoTime();
+                        pipeline.fireRead(buffer, 0, bufferCount);
+                        // Not reading is what slows the peer down
+                        clientSocket.paceRead(bufferCount);
                     } else if (bufferCount == -1) {
                         receiverListener.onEnd(socketId);
                         break;
                     }
                 }
             } catch (IOException | InterruptedException ioe) {
-                if (receiverListener != null && socket != null && !socket.isClosed() && !clientSocket.closed) {
+                if (ioe instanceof IOException && clientSocket.connectionLost(socket, (IOException) ioe)) {
+                    // Reconnecting, this task is over
+                } else if (receiverListener != null && socket != null && !socket.isClosed() && !clientSocket.closed) {
                     receiverListener.onError(socketId, ioe);
                 }
+            } finally {
+                pipeline.closeInput();
             }
         }
 
@@ -287,6 +1185,10 @@ class TcpSocketClient extends TcpSocket {
             notify();
         }
 
+        synchronized boolean isPaused() {
+            return paused;
+        }
+
         private synchronized void waitIfPaused() throws InterruptedException {
             while (paused) {
                 wait();
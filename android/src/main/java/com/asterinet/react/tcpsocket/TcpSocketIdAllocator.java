@@ -0,0 +1,85 @@
+package com.asterinet.react.tcpsocket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Allocates the ids of the client sockets accepted by the servers of the module.
+ * <p>
+ * Ids are taken from a range above the ids generated by the JS side, so they cannot collide with
+ * them nor with each other. Released ids are recycled, but the search for a free id starts where
+ * the previous one ended, so an id is only reused after the whole range has been cycled through.
+ * This keeps late events of a closed socket from reaching a newer socket with the same id.
+ */
+final class TcpSocketIdAllocator {
+    static final int DEFAULT_FIRST_ID = 1 << 30;
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final int firstId;
+    private final int capacity;
+    private final AtomicLongArray usedIds;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger allocatedCount = new AtomicInteger();
+
+    TcpSocketIdAllocator() {
+        this(DEFAULT_FIRST_ID, DEFAULT_CAPACITY);
+    }
+
+    TcpSocketIdAllocator(int firstId, int capacity) {
+        if (capacity < 64 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two of at least 64");
+        if ((long) firstId + capacity > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("id range overflows");
+        this.firstId = firstId;
+        this.capacity = capacity;
+        usedIds = new AtomicLongArray(capacity / 64);
+    }
+
+    /**
+     * @return a free id, or -1 if every id of the range is in use
+     */
+    int allocate() {
+        if (allocatedCount.get() >= capacity) return -1;
+        final int start = cursor.getAndIncrement();
+        for (int n = 0; n < capacity; n++) {
+            final int index = (start + n) & (capacity - 1);
+            final int word = index >>> 6;
+            final long bit = 1L << (index & 63);
+            long bits;
+            while (((bits = usedIds.get(word)) & bit) == 0) {
+                if (usedIds.compareAndSet(word, bits, bits | bit)) {
+                    // Continue after this id on the next allocation
+                    cursor.compareAndSet(start + 1, start + n + 1);
+                    allocatedCount.incrementAndGet();
+                    return firstId + index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return `true` if `id` belongs to this allocator's range
+     */
+    boolean owns(int id) {
+        return id >= firstId && id - firstId < capacity;
+    }
+
+    void release(int id) {
+        if (!owns(id)) return;
+        final int index = id - firstId;
+        final int word = index >>> 6;
+        final long bit = 1L << (index & 63);
+        long bits;
+        while (((bits = usedIds.get(word)) & bit) != 0) {
+            if (usedIds.compareAndSet(word, bits, bits & ~bit)) {
+                allocatedCount.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    int allocatedCount() {
+        return allocatedCount.get();
+    }
+}
@@ -15,10 +15,13 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Promise;
 
@@ -29,6 +32,7 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -38,19 +42,25 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class TcpSocketModule extends ReactContextBaseJavaModule {
     public static final String TAG = "TcpSockets";
     private static final int N_THREADS = 2;
     private final ReactApplicationContext mReactContext;
-    private final ConcurrentHashMap<Integer, TcpSocket> socketMap = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Integer, ReadableMap> pendingTLS = new ConcurrentHashMap<>();
+    private final TcpSocketRegistry socketRegistry = new TcpSocketRegistry();
+    private final TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+    private final ConcurrentIntMap<ReadableMap> pendingTLS = new ConcurrentIntMap<>();
     private final ConcurrentHashMap<String, Network> mNetworkMap = new ConcurrentHashMap<>();
     private final CurrentNetwork currentNetwork = new CurrentNetwork();
     private final ExecutorService executorService = Executors.newFixedThreadPool(N_THREADS);
+    // Shared by the network request, idle, reconnect and multiplexer request timeouts of all the sockets
+    private final TcpTimerWheel timerWheel = new TcpTimerWheel();
+    private final TcpDatagramLoop datagramLoop = new TcpDatagramLoop();
     private TcpEventListener tcpEvtListener;
+    // Registered by the first socket that reconnects
+    @Nullable
+    private ConnectivityManager.NetworkCallback reconnectCallback;
 
     public TcpSocketModule(ReactApplicationContext reactContext) {
         super(reactContext);
@@ -63,6 +73,39 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         tcpEvtListener = new TcpEventListener(mReactContext);
     }
 
+    @Override
+    public void onCatalystInstanceDestroy() {
+        super.onCatalystInstanceDestroy();
+        synchronized (this) {
+            if (reconnectCallback != null) {
+                final ConnectivityManager cm = (ConnectivityManager) mReactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+                if (cm != null) cm.unregisterNetworkCallback(reconnectCallback);
+                reconnectCallback = null;
+            }
+        }
+        // No new calls from JS, then close the sockets left open before the threads serving them
+        executorService.shutdown();
+        for (TcpSocketServer server : socketRegistry.servers()) {
+            server.close();
+            socketRegistry.removeServer(server);
+        }
+        for (TcpSocketClient client : socketRegistry.clients()) {
+            client.destroy();
+            socketRegistry.removeClient(client);
+        }
+        for (TcpDatagramSocket datagram : socketRegistry.datagrams()) {
+            socketRegistry.removeDatagram(datagram);
+            try {
+                datagram.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not close datagram socket " + datagram.getId(), e);
+            }
+        }
+        datagramLoop.stop();
+        timerWheel.stop();
+        if (tcpEvtListener != null) tcpEvtListener.getDispatcher().stop();
+    }
+
     @Override
     public @NonNull
     String getName() {
@@ -81,27 +124,55 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
     @SuppressWarnings("unused")
     @ReactMethod
     public void connect(@NonNull final Integer cId, @NonNull final String host, @NonNull final Integer port, @NonNull final ReadableMap options) {
+        final TcpConnectTimings timings = new TcpConnectTimings(System.nanoTime());
         executorService.execute(new Runnable() {
             @Override
             public void run() {
-                if (socketMap.get(cId) != null) {
+                timings.end(TcpConnectTimings.QUEUED, timings.getStartNanos());
+                if (socketRegistry.contains(cId)) {
                     tcpEvtListener.onError(cId, new Exception("connect() called twice with the same id."));
                     return;
                 }
+                final TcpTracer tracer = TcpTracer.get();
+                final long traceToken = tracer.begin(TcpTracer.CONNECT, cId);
                 try {
                     // Get the network interface
                     final String localAddress = options.hasKey("localAddress") ? options.getString("localAddress") : null;
                     final String iface = options.hasKey("interface") ? options.getString("interface") : null;
                     // Get ioT device host to retreive correct network in android concurrent connections
                     final String iotDeviceHost = options.hasKey("host") ? options.getString("host") : null;
-                    selectNetwork(iface, localAddress, iotDeviceHost);
-                    TcpSocketClient client = new TcpSocketClient(tcpEvtListener, cId, null);
-                    socketMap.put(cId, client);
-                    ReadableMap tlsOptions = pendingTLS.get(cId);
-                    client.connect(mReactContext, host, port, options, currentNetwork.getNetwork(), tlsOptions);
+                    final long networkStart = System.nanoTime();
+                    final Network network;
+                    // Under the same lock as the reconnect selector, so the network read is the one selected here
+                    synchronized (currentNetwork) {
+                        selectNetwork(iface, localAddress, iotDeviceHost);
+                        network = currentNetwork.getNetwork();
+                    }
+                    if (iface != null) timings.end(TcpConnectTimings.NETWORK, networkStart);
+                    TcpSocketClient client = new TcpSocketClient(tcpEvtListener, timerWheel, cId, null);
+                    if (options.hasKey("reconnect") && !options.isNull("reconnect")) {
+                        watchNetworks();
+                        if (iface != null) {
+                            // The network may be gone by then, select it again
+                            client.setNetworkSelector(new TcpSocketClient.NetworkSelector() {
+                                @Override
+                                public Network select() throws IOException, InterruptedException {
+                                    synchronized (currentNetwork) {
+                                        selectNetwork(iface, localAddress, iotDeviceHost);
+                                        return currentNetwork.getNetwork();
+                                    }
+                                }
+                            });
+                        }
+                    }
+                    socketRegistry.addClient(client);
+                    ReadableMap tlsOptions = pendingTLS.remove(cId);
+                    client.connect(mReactContext, host, port, options, network, tlsOptions, timings);
                     tcpEvtListener.onConnect(cId, client);
                 } catch (Exception e) {
                     tcpEvtListener.onError(cId, e);
+                } finally {
+                    tracer.end(TcpTracer.CONNECT, cId, traceToken);
                 }
             }
         });
@@ -111,7 +182,7 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
     @SuppressWarnings("unused")
     @ReactMethod
     public void startTLS(final int cId, @NonNull final ReadableMap tlsOptions) {
-        TcpSocketClient socketClient = (TcpSocketClient) socketMap.get(cId);
+        TcpSocketClient socketClient = socketRegistry.getClient(cId);
         // Not yet connected
         if (socketClient == null) {
             pendingTLS.put(cId, tlsOptions);
@@ -128,11 +199,91 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
     @SuppressWarnings("unused")
     @ReactMethod
     public void write(final int cId, @NonNull final String base64String, final int msgId) {
-        TcpSocketClient socketClient = getTcpClient(cId);
+        TcpSocketClient socketClient = socketRegistry.getClient(cId);
+        if (socketClient == null) {
+            tcpEvtListener.onWritten(cId, msgId, new IOException("Attempted to write to closed socket"));
+            return;
+        }
         byte[] data = Base64.decode(base64String, Base64.NO_WRAP);
         socketClient.write(msgId, data);
     }
 
+    /**
+     * Same as {@link #write}, ahead of the queued writes of a lower priority.
+     *
+     * @param priority `high`, `normal` or `low`
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void writeWithPriority(final int cId, @NonNull final String base64String, final int msgId, @Nullable final String priority) {
+        TcpSocketClient socketClient = socketRegistry.getClient(cId);
+        if (socketClient == null) {
+            tcpEvtListener.onWritten(cId, msgId, new IOException("Attempted to write to closed socket"));
+            return;
+        }
+        byte[] data = Base64.decode(base64String, Base64.NO_WRAP);
+        socketClient.write(msgId, data, TcpWriteQueue.parsePriority(priority));
+    }
+
+    /**
+     * Writes several base64 chunks as a single operation, acknowledged by a single `written` event.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void writev(final int cId, @NonNull final ReadableArray base64Strings, final int msgId) {
+        TcpSocketClient socketClient = socketRegistry.getClient(cId);
+        if (socketClient == null) {
+            tcpEvtListener.onWritten(cId, msgId, new IOException("Attempted to write to closed socket"));
+            return;
+        }
+        final byte[][] buffers = new byte[base64Strings.size()][];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = Base64.decode(base64Strings.getString(i), Base64.NO_WRAP);
+        }
+        socketClient.writev(msgId, buffers);
+    }
+
+    /**
+     * Sends a request through the multiplexer of the socket and resolves with the base64 response.
+     *
+     * @param timeout milliseconds to wait for the response, 0 to wait until the socket closes
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void request(final int cId, @NonNull final String base64String, final int timeout, final Promise promise) {
+        final TcpSocketClient socketClient = socketRegistry.getClient(cId);
+        final TcpMultiplexer multiplexer = socketClient != null ? socketClient.getMultiplexer() : null;
+        if (multiplexer == null) {
+            promise.reject("ENOTMUX", "Socket " + cId + " is not connected with the multiplex option");
+            return;
+        }
+        byte[] data = Base64.decode(base64String, Base64.NO_WRAP);
+        multiplexer.request(data, timeout, new TcpMultiplexer.ResponseCallback() {
+            @Override
+            public void onResponse(byte[] payload) {
+                promise.resolve(Base64.encodeToString(payload, Base64.NO_WRAP));
+            }
+
+            @Override
+            public void onFailure(String code, String message) {
+                promise.reject(code, message);
+            }
+        });
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void respond(final int cId, final int requestId, @NonNull final String base64String, final boolean error, final int msgId) {
+        final TcpSocketClient socketClient = socketRegistry.getClient(cId);
+        final TcpMultiplexer multiplexer = socketClient != null ? socketClient.getMultiplexer() : null;
+        if (multiplexer == null) {
+            tcpEvtListener.onWritten(cId, msgId, new IOException("Attempted to respond on a socket without multiplexing"));
+            return;
+        }
+        byte[] data = Base64.decode(base64String, Base64.NO_WRAP);
+        multiplexer.respond(requestId, data, error, msgId);
+    }
+
     @SuppressLint("StaticFieldLeak")
     @SuppressWarnings("unused")
     @ReactMethod
@@ -140,8 +291,12 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         executorService.execute(new Runnable() {
             @Override
             public void run() {
-                TcpSocketClient socketClient = getTcpClient(cId);
+                TcpSocketClient socketClient = socketRegistry.getClient(cId);
+                // Already ended
+                if (socketClient == null) return;
+                // Accepted clients are removed by their server, which releases their id
                 socketClient.destroy();
+                socketRegistry.removeClient(socketClient);
             }
         });
     }
@@ -158,9 +313,11 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         executorService.execute(new Runnable() {
             @Override
             public void run() {
-                TcpSocketServer socketServer = getTcpServer(cId);
+                TcpSocketServer socketServer = socketRegistry.getServer(cId);
+                // Already closed
+                if (socketServer == null) return;
                 socketServer.close();
-                socketMap.remove(cId);
+                socketRegistry.removeServer(socketServer);
             }
         });
     }
@@ -173,8 +330,8 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
             @Override
             public void run() {
                 try {
-                    TcpSocketServer server = new TcpSocketServer(mReactContext, socketMap, tcpEvtListener, cId, options);
-                    socketMap.put(cId, server);
+                    TcpSocketServer server = new TcpSocketServer(mReactContext, socketRegistry, clientIds, tcpEvtListener, timerWheel, cId, options);
+                    socketRegistry.addServer(server);
                     tcpEvtListener.onListen(cId, server);
                 } catch (Exception uhe) {
                     tcpEvtListener.onError(cId, uhe);
@@ -183,10 +340,84 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         });
     }
 
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void bindDatagram(final Integer cId, final ReadableMap options) {
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (socketRegistry.contains(cId)) {
+                    tcpEvtListener.onError(cId, new Exception("bind() called twice with the same id."));
+                    return;
+                }
+                try {
+                    TcpDatagramSocket socket = new TcpDatagramSocket(tcpEvtListener, datagramLoop, cId);
+                    socket.bind(options);
+                    socketRegistry.addDatagram(socket);
+                    tcpEvtListener.onBound(cId, socket);
+                } catch (Exception e) {
+                    tcpEvtListener.onError(cId, e);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void sendDatagrams(final int cId, @NonNull final ReadableArray datagrams, final int msgId) {
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                TcpDatagramSocket socket = socketRegistry.getDatagram(cId);
+                if (socket == null) {
+                    tcpEvtListener.onWritten(cId, msgId, new IOException("Attempted to send from closed socket"));
+                    return;
+                }
+                try {
+                    socket.send(datagrams, msgId);
+                } catch (Exception e) {
+                    tcpEvtListener.onWritten(cId, msgId, e);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void closeDatagram(final Integer cId) {
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                TcpDatagramSocket socket = socketRegistry.getDatagram(cId);
+                // Already closed
+                if (socket == null) return;
+                socketRegistry.removeDatagram(socket);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    tcpEvtListener.onClose(cId, e);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setDatagramBroadcast(@NonNull final Integer cId, final boolean broadcast) {
+        final TcpDatagramSocket socket = socketRegistry.getDatagram(cId);
+        if (socket == null) return;
+        try {
+            socket.setBroadcast(broadcast);
+        } catch (IOException e) {
+            tcpEvtListener.onError(cId, e);
+        }
+    }
+
     @SuppressWarnings("unused")
     @ReactMethod
     public void setNoDelay(@NonNull final Integer cId, final boolean noDelay) {
-        final TcpSocketClient client = getTcpClient(cId);
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
         try {
             client.setNoDelay(noDelay);
         } catch (IOException e) {
@@ -194,10 +425,27 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void cork(@NonNull final Integer cId) {
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
+        client.cork();
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void uncork(@NonNull final Integer cId, final boolean noDelay) {
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
+        client.uncork(noDelay);
+    }
+
     @SuppressWarnings("unused")
     @ReactMethod
     public void setKeepAlive(@NonNull final Integer cId, final boolean enable, final int initialDelay) {
-        final TcpSocketClient client = getTcpClient(cId);
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
         try {
             client.setKeepAlive(enable, initialDelay);
         } catch (IOException e) {
@@ -205,17 +453,42 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setTimeout(@NonNull final Integer cId, final int timeout) {
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
+        client.setIdleTimeout(timeout);
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setBandwidth(final int cId, final double readBytesPerSecond, final double writeBytesPerSecond) {
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
+        client.setBandwidth(readBytesPerSecond, writeBytesPerSecond);
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setGlobalBandwidth(final double readBytesPerSecond, final double writeBytesPerSecond) {
+        TcpBandwidthLimiter.GLOBAL_READ.setRate(readBytesPerSecond);
+        TcpBandwidthLimiter.GLOBAL_WRITE.setRate(writeBytesPerSecond);
+    }
+
     @SuppressWarnings("unused")
     @ReactMethod
     public void pause(final int cId) {
-        TcpSocketClient client = getTcpClient(cId);
+        TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
         client.pause();
     }
 
     @SuppressWarnings("unused")
     @ReactMethod
     public void resume(final int cId) {
-        TcpSocketClient client = getTcpClient(cId);
+        TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) return;
         client.resume();
     }
 
@@ -408,13 +681,17 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         }
 
         // Timeout if there the network is unreachable
-        ScheduledThreadPoolExecutor exec = new ScheduledThreadPoolExecutor(1);
-        exec.schedule(new Runnable() {
+        TcpTimerWheel.Timeout networkTimeout = new TcpTimerWheel.Timeout(new Runnable() {
             public void run() {
                 awaitingNetwork.countDown(); // Stop waiting
             }
-        }, 5, TimeUnit.SECONDS);
-        awaitingNetwork.await();
+        });
+        timerWheel.schedule(networkTimeout, 5, TimeUnit.SECONDS);
+        try {
+            awaitingNetwork.await();
+        } finally {
+            timerWheel.cancel(networkTimeout);
+        }
     }
 
     /**
@@ -450,26 +727,42 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
             mNetworkMap.put(iface + ipAddress, currentNetwork.getNetwork());
     }
 
-    private TcpSocketClient getTcpClient(final int id) {
-        TcpSocket socket = socketMap.get(id);
-        if (socket == null) {
-            throw new IllegalArgumentException("No socket with id " + id);
-        }
-        if (!(socket instanceof TcpSocketClient)) {
-            throw new IllegalArgumentException("Socket with id " + id + " is not a client");
-        }
-        return (TcpSocketClient) socket;
+    /**
+     * Lets the reconnecting sockets react to network changes: a new network skips the backoff
+     * delay, a lost one is forgotten and the connections bound to it are dropped at once.
+     */
+    private synchronized void watchNetworks() {
+        if (reconnectCallback != null) return;
+        final ConnectivityManager cm = (ConnectivityManager) mReactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return;
+        reconnectCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                for (TcpSocketClient client : socketRegistry.clients()) {
+                    client.reconnectNow();
+                }
+            }
+
+            @Override
+            public void onLost(Network network) {
+                mNetworkMap.values().removeAll(Collections.singleton(network));
+                for (TcpSocketClient client : socketRegistry.clients()) {
+                    client.networkLost(network);
+                }
+            }
+        };
+        final NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        cm.registerNetworkCallback(request, reconnectCallback);
     }
 
-    private TcpSocketServer getTcpServer(final int id) {
-        TcpSocket socket = socketMap.get(id);
-        if (socket == null) {
-            throw new IllegalArgumentException("No server socket with id " + id);
-        }
-        if (!(socket instanceof TcpSocketServer)) {
-            throw new IllegalArgumentException("Server socket with id " + id + " is not a server");
+    private TcpSocketClient getTcpClient(final int id) {
+        TcpSocketClient client = socketRegistry.getClient(id);
+        if (client == null) {
+            throw new IllegalArgumentException("No client socket with id " + id);
         }
-        return (TcpSocketServer) socket;
+        return client;
     }
 
     @SuppressWarnings("unused")
@@ -504,9 +797,199 @@ public class TcpSocketModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getServerStats(final int cId, Promise promise) {
+        final TcpSocketServer server = socketRegistry.getServer(cId);
+        if (server == null) {
+            promise.reject(new IllegalArgumentException("No server socket with id " + cId));
+            return;
+        }
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("connections", server.getConnectionCount());
+        stats.putDouble("accepted", server.getAcceptedCount());
+        stats.putDouble("rejectedMaxConnections", server.getRejectedMaxConnectionsCount());
+        stats.putDouble("rejectedPerIp", server.getRejectedPerIpCount());
+        stats.putDouble("throttledAccepts", server.getThrottledAcceptCount());
+        promise.resolve(stats);
+    }
+
+    /**
+     * Writes the same base64 data to the clients of a server, decoded once. Resolves with the
+     * number of clients the data was written to and failed on.
+     *
+     * @param filter optional `include` and `exclude` arrays of client ids
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void broadcast(final int serverId, @NonNull final String base64String, @Nullable final ReadableMap filter, final Promise promise) {
+        final TcpSocketServer server = socketRegistry.getServer(serverId);
+        if (server == null) {
+            promise.reject(new IllegalArgumentException("No server socket with id " + serverId));
+            return;
+        }
+        final byte[] data = Base64.decode(base64String, Base64.NO_WRAP);
+        try {
+            server.broadcast(data, getIds(filter, "include"), getIds(filter, "exclude"), new TcpSocketServer.BroadcastCallback() {
+                @Override
+                public void onComplete(int written, int failed) {
+                    WritableMap result = Arguments.createMap();
+                    result.putInt("written", written);
+                    result.putInt("failed", failed);
+                    promise.resolve(result);
+                }
+            });
+        } catch (IllegalStateException e) {
+            promise.reject(e);
+        }
+    }
+
+    @Nullable
+    private static int[] getIds(@Nullable ReadableMap filter, String key) {
+        if (filter == null || !filter.hasKey(key) || filter.isNull(key)) return null;
+        final ReadableArray array = filter.getArray(key);
+        final int[] ids = new int[array.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = array.getInt(i);
+        }
+        return ids;
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getCompressionStats(final int cId, Promise promise) {
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        final TcpCompressionCodec codec = client != null ? client.getCompressionCodec() : null;
+        if (codec == null) {
+            promise.reject(new IllegalArgumentException("No compressed socket with id " + cId));
+            return;
+        }
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("uncompressedBytesWritten", codec.getUncompressedBytesWritten());
+        stats.putDouble("compressedBytesWritten", codec.getCompressedBytesWritten());
+        stats.putDouble("compressedBytesRead", codec.getCompressedBytesRead());
+        stats.putDouble("uncompressedBytesRead", codec.getUncompressedBytesRead());
+        stats.putDouble("compressCpuTime", codec.getCompressNanos() / 1e6);
+        stats.putDouble("decompressCpuTime", codec.getDecompressNanos() / 1e6);
+        promise.resolve(stats);
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getEventQueueStats(Promise promise) {
+        final TcpEventDispatcher dispatcher = tcpEvtListener.getDispatcher();
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("depth", dispatcher.getDepth());
+        stats.putInt("maxDepth", dispatcher.getMaxDepth());
+        stats.putDouble("dispatched", dispatcher.getDispatchedCount());
+        stats.putDouble("averageLatency", dispatcher.getAverageLatencyNanos() / 1e6);
+        stats.putDouble("maxLatency", dispatcher.getMaxLatencyNanos() / 1e6);
+        promise.resolve(stats);
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getBandwidthStats(final int cId, Promise promise) {
+        final TcpSocketClient client = socketRegistry.getClient(cId);
+        if (client == null) {
+            promise.reject(new IllegalArgumentException("No socket with id " + cId));
+            return;
+        }
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("readThrottledTime", client.getReadThrottledNanos() / 1e6);
+        stats.putDouble("writeThrottledTime", client.getWriteThrottledNanos() / 1e6);
+        promise.resolve(stats);
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getGlobalBandwidthStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("readThrottledTime", TcpBandwidthLimiter.GLOBAL_READ.getThrottledNanos() / 1e6);
+        stats.putDouble("writeThrottledTime", TcpBandwidthLimiter.GLOBAL_WRITE.getThrottledNanos() / 1e6);
+        promise.resolve(stats);
+    }
+
+    /**
+     * Resolves with the histograms of the connection phases of every client socket, see
+     * {@link TcpConnectTimings}.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getConnectTimingStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        for (int phase = 0; phase < TcpConnectTimings.NAMES.length; phase++) {
+            final TcpLatencyHistogram histogram = TcpConnectTimings.getHistogram(phase);
+            final long count = histogram.getCount();
+            WritableMap phaseStats = Arguments.createMap();
+            phaseStats.putDouble("count", count);
+            phaseStats.putDouble("average", count > 0 ? histogram.getTotalNanos() / 1e6 / count : 0);
+            phaseStats.putDouble("p50", histogram.getQuantile(0.5));
+            phaseStats.putDouble("p90", histogram.getQuantile(0.9));
+            phaseStats.putDouble("p99", histogram.getQuantile(0.99));
+            phaseStats.putDouble("max", histogram.getMaxNanos() / 1e6);
+            WritableArray buckets = Arguments.createArray();
+            for (int i = 0; i < TcpLatencyHistogram.BUCKETS; i++) {
+                buckets.pushDouble(histogram.getCount(i));
+            }
+            phaseStats.putArray("buckets", buckets);
+            stats.putMap(TcpConnectTimings.NAMES[phase], phaseStats);
+        }
+        promise.resolve(stats);
+    }
+
+    /**
+     * Replaces the tracer of every socket of the process.
+     *
+     * @param options `mode`: `"off"`, `"systrace"` for `android.os.Trace` sections or `"buffer"`
+     *                to keep the last `capacity` spans for {@link #dumpTrace}
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setTracing(@NonNull final ReadableMap options) {
+        final String mode = options.hasKey("mode") ? options.getString("mode") : "off";
+        if ("systrace".equals(mode)) {
+            TcpTracer.set(new TcpSystraceTracer());
+        } else if ("buffer".equals(mode)) {
+            final int capacity = options.hasKey("capacity") ? options.getInt("capacity") : TcpTraceBuffer.DEFAULT_CAPACITY;
+            TcpTracer.set(new TcpTraceBuffer(capacity));
+        } else {
+            TcpTracer.set(TcpTracer.NONE);
+        }
+    }
+
+    /**
+     * Resolves with the spans recorded since the last call in `"buffer"` mode, and the number of
+     * spans overwritten before being dumped.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void dumpTrace(Promise promise) {
+        final TcpTracer tracer = TcpTracer.get();
+        WritableArray spans = Arguments.createArray();
+        WritableMap result = Arguments.createMap();
+        if (tracer instanceof TcpTraceBuffer) {
+            final TcpTraceBuffer buffer = (TcpTraceBuffer) tracer;
+            for (TcpTraceBuffer.Span span : buffer.drain()) {
+                WritableMap spanParams = Arguments.createMap();
+                spanParams.putString("name", TcpTracer.NAMES[span.span]);
+                spanParams.putInt("id", span.id);
+                spanParams.putDouble("start", span.startNanos / 1e6);
+                spanParams.putDouble("duration", span.durationNanos / 1e6);
+                spans.pushMap(spanParams);
+            }
+            result.putDouble("dropped", buffer.getDroppedCount());
+        } else {
+            result.putDouble("dropped", 0);
+        }
+        result.putArray("spans", spans);
+        promise.resolve(result);
+    }
+
     private static class CurrentNetwork {
+        // Written by the network callbacks, read by the connecting threads
         @Nullable
-        Network network = null;
+        volatile Network network = null;
 
         private CurrentNetwork() {
         }
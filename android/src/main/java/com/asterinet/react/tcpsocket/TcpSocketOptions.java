@@ -0,0 +1,128 @@
+package com.asterinet.react.tcpsocket;
+
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Per-connection socket tuning shared by client sockets and the sockets accepted by a server.
+ * A value of {@link #DEFAULT} leaves the corresponding OS setting untouched.
+ */
+final class TcpSocketOptions {
+    static final int DEFAULT = -1;
+    static final int DEFAULT_READ_BUFFER_SIZE = 16384;
+
+    int receiveBufferSize = DEFAULT;
+    int sendBufferSize = DEFAULT;
+    int linger = DEFAULT;
+    int trafficClass = DEFAULT;
+    int readBufferSize = DEFAULT_READ_BUFFER_SIZE;
+    int minReadBufferSize = TcpReceiveSizer.DEFAULT_MIN_SIZE;
+    int keepAliveInterval = DEFAULT;
+    int keepAliveCount = DEFAULT;
+    boolean multiplex;
+    int maxFrameSize = TcpMultiplexer.DEFAULT_MAX_FRAME_SIZE;
+    int compressionMode = DEFAULT;
+    int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    @Nullable
+    byte[] compressionDictionary;
+    final List<TcpHandler.Factory> handlerFactories = new ArrayList<>();
+    int writeAcks = TcpWriteAcknowledger.MODE_MESSAGE;
+    // Bandwidth limits of the socket, unlimited if DEFAULT
+    int readBytesPerSecond = DEFAULT;
+    int writeBytesPerSecond = DEFAULT;
+    // Bytes of queued writes held in memory before the next ones are spilled to disk, never if DEFAULT
+    int spillThreshold = DEFAULT;
+
+    static TcpSocketOptions fromReadableMap(ReadableMap options) {
+        TcpSocketOptions socketOptions = new TcpSocketOptions();
+        socketOptions.receiveBufferSize = getInt(options, "receiveBufferSize", DEFAULT);
+        socketOptions.sendBufferSize = getInt(options, "sendBufferSize", DEFAULT);
+        socketOptions.linger = getInt(options, "linger", DEFAULT);
+        socketOptions.trafficClass = getInt(options, "trafficClass", DEFAULT);
+        socketOptions.readBufferSize = getInt(options, "readBufferSize", DEFAULT_READ_BUFFER_SIZE);
+        socketOptions.minReadBufferSize = getInt(options, "minReadBufferSize", TcpReceiveSizer.DEFAULT_MIN_SIZE);
+        socketOptions.keepAliveInterval = getInt(options, "keepAliveInterval", DEFAULT);
+        socketOptions.keepAliveCount = getInt(options, "keepAliveCount", DEFAULT);
+        socketOptions.multiplex = options.hasKey("multiplex") && options.getBoolean("multiplex");
+        if (options.hasKey("writeAcks") && !options.isNull("writeAcks")) {
+            socketOptions.writeAcks = TcpWriteAcknowledger.parseMode(options.getString("writeAcks"));
+        }
+        socketOptions.readBytesPerSecond = getInt(options, "readBytesPerSecond", DEFAULT);
+        socketOptions.writeBytesPerSecond = getInt(options, "writeBytesPerSecond", DEFAULT);
+        socketOptions.spillThreshold = getInt(options, "spillThreshold", DEFAULT);
+        socketOptions.maxFrameSize = getInt(options, "maxFrameSize", TcpMultiplexer.DEFAULT_MAX_FRAME_SIZE);
+        if (options.hasKey("compression") && !options.isNull("compression")) {
+            socketOptions.compressionMode = "frame".equals(options.getString("compression"))
+                    ? TcpCompressionCodec.MODE_FRAME : TcpCompressionCodec.MODE_STREAM;
+        }
+        socketOptions.compressionLevel = getInt(options, "compressionLevel", Deflater.DEFAULT_COMPRESSION);
+        if (options.hasKey("compressionDictionary") && !options.isNull("compressionDictionary")) {
+            socketOptions.compressionDictionary = Base64.decode(options.getString("compressionDictionary"), Base64.NO_WRAP);
+        }
+        final ReadableArray handlers = options.hasKey("handlers") && !options.isNull("handlers") ? options.getArray("handlers") : null;
+        for (int i = 0; handlers != null && i < handlers.size(); i++) {
+            final String name = handlers.getString(i);
+            final TcpHandler.Factory factory = TcpPipeline.getFactory(name);
+            if (factory == null) throw new IllegalArgumentException("Unknown socket handler: " + name);
+            socketOptions.handlerFactories.add(factory);
+        }
+        return socketOptions;
+    }
+
+    private static int getInt(ReadableMap options, String key, int fallback) {
+        if (!options.hasKey(key) || options.isNull(key)) return fallback;
+        int value = options.getInt(key);
+        return value >= 0 ? value : fallback;
+    }
+
+    /**
+     * @return the codec configured by the options, `null` if compression is disabled
+     */
+    @Nullable
+    TcpCompressionCodec createCompressionCodec() {
+        if (compressionMode == DEFAULT) return null;
+        return new TcpCompressionCodec(compressionMode, compressionLevel, compressionDictionary, maxFrameSize, getReadBufferSize());
+    }
+
+    int getReadBufferSize() {
+        return readBufferSize > 0 ? readBufferSize : DEFAULT_READ_BUFFER_SIZE;
+    }
+
+    /**
+     * @return the read sizing of a socket, between `minReadBufferSize` and `readBufferSize` bytes
+     */
+    TcpReceiveSizer createReceiveSizer() {
+        final int minSize = minReadBufferSize > 0 ? minReadBufferSize : TcpReceiveSizer.DEFAULT_MIN_SIZE;
+        return new TcpReceiveSizer(minSize, TcpReceiveSizer.DEFAULT_INITIAL_SIZE, getReadBufferSize());
+    }
+
+    /**
+     * Applies the options to a client socket. `SO_RCVBUF` only affects the advertised TCP window if
+     * it is set before the socket is connected, so this should be called before `connect()`.
+     */
+    void applyTo(Socket socket) throws SocketException {
+        if (receiveBufferSize > 0) socket.setReceiveBufferSize(receiveBufferSize);
+        if (sendBufferSize > 0) socket.setSendBufferSize(sendBufferSize);
+        if (linger >= 0) socket.setSoLinger(true, linger);
+        if (trafficClass >= 0) socket.setTrafficClass(trafficClass);
+    }
+
+    /**
+     * Applies the options to a listening socket. Accepted sockets inherit `SO_RCVBUF` from the
+     * listening socket, so this must be called before `bind()`.
+     */
+    void applyTo(ServerSocket serverSocket) throws SocketException {
+        if (receiveBufferSize > 0) serverSocket.setReceiveBufferSize(receiveBufferSize);
+    }
+}
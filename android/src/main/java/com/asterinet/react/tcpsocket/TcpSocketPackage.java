@@ -13,6 +13,17 @@ import androidx.annotation.NonNull;
 
 @SuppressWarnings("unused")
 public class TcpSocketPackage implements ReactPackage {
+    /**
+     * Registers a native {@link TcpHandler} that sockets enable by `name` in their `handlers`
+     * option. The factory is called once per socket and must not throw.
+     *
+     * @return this package, so it can be added to the package list of the app in place
+     */
+    public TcpSocketPackage addHandler(@NonNull String name, @NonNull TcpHandler.Factory factory) {
+        TcpPipeline.registerFactory(name, factory);
+        return this;
+    }
+
     @Override
     public @NonNull List<NativeModule> createNativeModules(@NonNull ReactApplicationContext reactContext) {
         //noinspection ArraysAsListWithZeroOrOneArgument
@@ -0,0 +1,103 @@
+package com.asterinet.react.tcpsocket;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Sockets of the module indexed by their id, with one typed table per kind of socket so lookups
+ * need neither boxing nor type checks.
+ */
+final class TcpSocketRegistry {
+    private final ConcurrentIntMap<TcpSocketClient> clients = new ConcurrentIntMap<>();
+    private final ConcurrentIntMap<TcpSocketServer> servers = new ConcurrentIntMap<>();
+    private final ConcurrentIntMap<TcpDatagramSocket> datagrams = new ConcurrentIntMap<>();
+
+    @Nullable
+    TcpSocketClient getClient(int id) {
+        return clients.get(id);
+    }
+
+    @Nullable
+    TcpSocketServer getServer(int id) {
+        return servers.get(id);
+    }
+
+    @Nullable
+    TcpDatagramSocket getDatagram(int id) {
+        return datagrams.get(id);
+    }
+
+    boolean contains(int id) {
+        return clients.get(id) != null || servers.get(id) != null || datagrams.get(id) != null;
+    }
+
+    /**
+     * @return `false` if another client is already registered with the same id
+     */
+    boolean addClient(TcpSocketClient client) {
+        return clients.putIfAbsent(client.getId(), client);
+    }
+
+    /**
+     * @return `false` if another server is already registered with the same id
+     */
+    boolean addServer(TcpSocketServer server) {
+        return servers.putIfAbsent(server.getId(), server);
+    }
+
+    /**
+     * @return `false` if another datagram socket is already registered with the same id
+     */
+    boolean addDatagram(TcpDatagramSocket datagram) {
+        return datagrams.putIfAbsent(datagram.getId(), datagram);
+    }
+
+    /**
+     * @return `false` if `client` was not registered, or already removed
+     */
+    boolean removeClient(TcpSocketClient client) {
+        return clients.remove(client.getId(), client);
+    }
+
+    void removeServer(TcpSocketServer server) {
+        servers.remove(server.getId(), server);
+    }
+
+    void removeDatagram(TcpDatagramSocket datagram) {
+        datagrams.remove(datagram.getId(), datagram);
+    }
+
+    /**
+     * @return a snapshot of the clients
+     */
+    List<TcpSocketClient> clients() {
+        return clients.values();
+    }
+
+    /**
+     * @return a snapshot of the servers
+     */
+    List<TcpSocketServer> servers() {
+        return servers.values();
+    }
+
+    /**
+     * @return a snapshot of the datagram sockets
+     */
+    List<TcpDatagramSocket> datagrams() {
+        return datagrams.values();
+    }
+
+    int clientCount() {
+        return clients.size();
+    }
+
+    int serverCount() {
+        return servers.size();
+    }
+
+    int datagramCount() {
+        return datagrams.size();
+    }
+}
@@ -1,108 +1,541 @@
 package com.asterinet.react.tcpsocket;
 
 import android.content.Context;
+import android.util.Log;
 
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSocket;
 
+/**
+ * A server listening on one or more addresses, whose connections share the id of the server.
+ * <p>
+ * The plaintext listeners are served by a single accept loop on a {@link Selector}. TLS listeners
+ * are classic {@link SSLServerSocket}s with an accept thread each: a TLS socket layered over a
+ * channel socket would read and write through its streams, which serialize reads and writes. The
+ * TLS handshake of an accepted socket runs on a thread of the server, before its connection is
+ * announced. At most {@link #MAX_PENDING_HANDSHAKES} handshakes run at once, the next connections
+ * wait in the listen backlog.
+ */
 public final class TcpSocketServer extends TcpSocket {
+    private static final int BACKLOG = 50;
+    static final int MAX_PENDING_HANDSHAKES = 64;
+    private static final int DEFAULT_HANDSHAKE_TIMEOUT = 10000;
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
     private final TcpEventListener mReceiverListener;
     private final ExecutorService listenExecutor;
-    private final ConcurrentHashMap<Integer, TcpSocket> socketClients;
-    private final boolean isTLS;
-    private ServerSocket serverSocket;
-    private int clientSocketIds;
+    private final TcpTimerWheel timerWheel;
+    private final TcpSocketRegistry socketRegistry;
+    private final TcpSocketIdAllocator clientIds;
+    private final TcpSocketOptions socketOptions;
+    // Of the accepted TLS sockets, in milliseconds, 0 for none
+    private final int handshakeTimeout;
+    private final Semaphore handshakeSlots = new Semaphore(MAX_PENDING_HANDSHAKES);
+    private final Selector selector;
+    private final List<Listener> listeners = new ArrayList<>();
+    private final ConcurrentIntMap<TcpSocketClient> clients = new ConcurrentIntMap<>();
+    // Admission control, 0 disables the corresponding limit
+    private final int maxConnections;
+    private final int maxConnectionsPerIp;
+    private final TcpTokenBucket acceptBucket;
+    // Guarded by this
+    private final HashMap<InetAddress, Integer> connectionsPerIp = new HashMap<>();
+    private int connectionCount;
+    private long acceptedCount;
+    private long rejectedMaxConnectionsCount;
+    private long rejectedPerIpCount;
+    private long throttledAcceptCount;
+
+    /**
+     * An address the server listens on.
+     */
+    static final class Listener {
+        final int index;
+        // Accepted by the selector loop, `null` for TLS listeners
+        @Nullable
+        final ServerSocketChannel channel;
+        private final ServerSocket serverSocket;
+
+        private Listener(int index, @Nullable ServerSocketChannel channel, ServerSocket serverSocket) {
+            this.index = index;
+            this.channel = channel;
+            this.serverSocket = serverSocket;
+        }
+
+        ServerSocket getServerSocket() {
+            return serverSocket;
+        }
 
-    public TcpSocketServer(final Context context, final ConcurrentHashMap<Integer, TcpSocket> socketClients, final TcpEventListener receiverListener, final Integer id,
+        boolean isTLS() {
+            return serverSocket instanceof SSLServerSocket;
+        }
+    }
+
+    public TcpSocketServer(final Context context, final TcpSocketRegistry socketRegistry, final TcpSocketIdAllocator clientIds,
+                           final TcpEventListener receiverListener, final TcpTimerWheel timerWheel, final Integer id,
                            final ReadableMap options) throws IOException, GeneralSecurityException {
+        this(socketRegistry, clientIds, receiverListener, timerWheel, id, options, createSSLContext(context, options));
+    }
+
+    /**
+     * @param sslContext context of the TLS listeners, `null` if the server has none
+     */
+    TcpSocketServer(final TcpSocketRegistry socketRegistry, final TcpSocketIdAllocator clientIds,
+                    final TcpEventListener receiverListener, final TcpTimerWheel timerWheel, final Integer id,
+                    final ReadableMap options, @Nullable SSLContext sslContext) throws IOException {
         super(id);
-        listenExecutor = Executors.newSingleThreadExecutor();
-        // Get data from options
-        int port = options.getInt("port");
-        String address = options.getString("host");
-        this.socketClients = socketClients;
-        clientSocketIds = (1 + getId()) * 1000;
-        // Get the addresses
-        InetAddress localInetAddress = InetAddress.getByName(address);
-        // Create the socket
-        // Check if TLS
-        ReadableMap tlsOptions = options.getMap("tls");
-        if (tlsOptions != null) {
-            String keystoreResourceUri = tlsOptions.getString("keystore");
-            assert keystoreResourceUri != null;
-
-            SSLServerSocketFactory ssf = SSLCertificateHelper.createServerSocketFactory(context, keystoreResourceUri);
-            serverSocket = ssf.createServerSocket(port, 50, localInetAddress);
-            isTLS = true;
-            // ((SSLServerSocket) serverSocket).setNeedClientAuth(true);
+        // Runs the accept loops and the handshakes of the accepted TLS sockets
+        listenExecutor = Executors.newCachedThreadPool();
+        this.timerWheel = timerWheel;
+        this.socketRegistry = socketRegistry;
+        this.clientIds = clientIds;
+        socketOptions = TcpSocketOptions.fromReadableMap(options);
+        maxConnections = options.hasKey("maxConnections") ? Math.max(0, options.getInt("maxConnections")) : 0;
+        maxConnectionsPerIp = options.hasKey("maxConnectionsPerIp") ? Math.max(0, options.getInt("maxConnectionsPerIp")) : 0;
+        final double acceptRate = options.hasKey("acceptRate") ? options.getDouble("acceptRate") : 0;
+        if (acceptRate > 0) {
+            final double acceptBurst = options.hasKey("acceptBurst") ? options.getDouble("acceptBurst") : acceptRate;
+            acceptBucket = new TcpTokenBucket(acceptRate, acceptBurst);
         } else {
-            serverSocket = new ServerSocket(port, 50, localInetAddress);
-            isTLS = false;
+            acceptBucket = null;
         }
-
-        // setReuseAddress
+        handshakeTimeout = options.hasKey("handshakeTimeout") ? Math.max(0, options.getInt("handshakeTimeout")) : DEFAULT_HANDSHAKE_TIMEOUT;
+        final SSLServerSocketFactory sslServerSocketFactory = sslContext != null ? sslContext.getServerSocketFactory() : null;
+        // Default to true
+        final boolean reuseAddress = !options.hasKey("reuseAddress") || options.getBoolean("reuseAddress");
+        selector = Selector.open();
         try {
-            boolean reuseAddress = options.getBoolean("reuseAddress");
-            serverSocket.setReuseAddress(reuseAddress);
-        } catch (Exception e) {
-            // Default to true
-            serverSocket.setReuseAddress(true);
+            addListener(options.getString("host"), options.getInt("port"), sslServerSocketFactory, reuseAddress);
+            // Additional listeners use TLS like the main one unless they set `tls` to false
+            ReadableArray extraListeners = options.hasKey("listeners") ? options.getArray("listeners") : null;
+            for (int i = 0; extraListeners != null && i < extraListeners.size(); i++) {
+                ReadableMap listenerOptions = extraListeners.getMap(i);
+                boolean tls = listenerOptions.hasKey("tls") ? listenerOptions.getBoolean("tls") : sslServerSocketFactory != null;
+                if (tls && sslServerSocketFactory == null)
+                    throw new IllegalArgumentException("TLS listener " + (i + 1) + " requires the TLS options of the server");
+                String host = listenerOptions.hasKey("host") ? listenerOptions.getString("host") : "0.0.0.0";
+                addListener(host, listenerOptions.getInt("port"), tls ? sslServerSocketFactory : null, reuseAddress);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeListeners();
+            throw e;
         }
         mReceiverListener = receiverListener;
         listen();
     }
 
+    @Nullable
+    private static SSLContext createSSLContext(Context context, ReadableMap options) throws IOException, GeneralSecurityException {
+        if (!options.hasKey("tls") || options.isNull("tls")) return null;
+        ReadableMap tlsOptions = options.getMap("tls");
+        String keystoreResourceUri = tlsOptions.getString("keystore");
+        assert keystoreResourceUri != null;
+        return SSLCertificateHelper.createServerSSLContext(context, keystoreResourceUri);
+    }
+
+    private void addListener(String host, int port, @Nullable SSLServerSocketFactory sslServerSocketFactory, boolean reuseAddress) throws IOException {
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(host), port);
+        if (sslServerSocketFactory != null) {
+            final ServerSocket serverSocket = sslServerSocketFactory.createServerSocket();
+            try {
+                serverSocket.setReuseAddress(reuseAddress);
+                socketOptions.applyTo(serverSocket);
+                serverSocket.bind(address, BACKLOG);
+            } catch (IOException e) {
+                serverSocket.close();
+                throw e;
+            }
+            listeners.add(new Listener(listeners.size(), null, serverSocket));
+            return;
+        }
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            ServerSocket serverSocket = channel.socket();
+            serverSocket.setReuseAddress(reuseAddress);
+            // The receive buffer is inherited by accepted sockets and must be set before binding
+            socketOptions.applyTo(serverSocket);
+            serverSocket.bind(address, BACKLOG);
+            channel.configureBlocking(false);
+            Listener listener = new Listener(listeners.size(), channel, serverSocket);
+            channel.register(selector, SelectionKey.OP_ACCEPT, listener);
+            listeners.add(listener);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the socket of the main listener
+     */
     public ServerSocket getServerSocket() {
-        return serverSocket;
+        return listeners.get(0).getServerSocket();
     }
 
-    private void addClient(Socket socket) {
-        int clientId = getClientId();
-        TcpSocketClient socketClient = new TcpSocketClient(mReceiverListener, clientId, socket);
-        socketClients.put(clientId, socketClient);
-        if (isTLS) {
-            mReceiverListener.onSecureConnection(getId(), clientId, socket);
+    List<Listener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    private void addClient(Listener listener, Socket socket) {
+        final TcpTracer tracer = TcpTracer.get();
+        // The client id is not known yet
+        final long traceToken = tracer.begin(TcpTracer.ACCEPT, getId());
+        try {
+            setupClient(listener, socket);
+        } finally {
+            tracer.end(TcpTracer.ACCEPT, getId(), traceToken);
+        }
+    }
+
+    private void setupClient(Listener listener, Socket socket) {
+        final InetAddress remoteAddress = socket.getInetAddress();
+        if (!admit(remoteAddress)) {
+            reject(socket);
+            return;
+        }
+        final SocketChannel channel = socket.getChannel();
+        try {
+            // Clients read and write with blocking calls on their own threads
+            if (channel != null) channel.configureBlocking(true);
+        } catch (IOException e) {
+            Log.w(TcpSocketModule.TAG, "Could not accept connection to server " + getId(), e);
+            release(remoteAddress);
+            closeQuietly(socket);
+            return;
+        }
+        try {
+            socketOptions.applyTo(socket);
+        } catch (SocketException e) {
+            // The connection is still usable with the OS defaults
+            Log.w(TcpSocketModule.TAG, "Could not apply socket options to client of server " + getId(), e);
+        }
+        final int clientId = clientIds.allocate();
+        if (clientId < 0) {
+            Log.w(TcpSocketModule.TAG, "Too many client sockets, rejecting connection to server " + getId());
+            release(remoteAddress);
+            reject(socket);
+            return;
+        }
+        TcpSocketClient socketClient = new TcpSocketClient(mReceiverListener, timerWheel, clientId, socket, socketOptions, this);
+        if (socket instanceof SSLSocket) {
+            try {
+                socketClient.handshake((SSLSocket) socket, handshakeTimeout);
+            } catch (IOException e) {
+                Log.w(TcpSocketModule.TAG, "TLS handshake failed on connection to server " + getId(), e);
+                clientIds.release(clientId);
+                release(remoteAddress);
+                closeQuietly(socket);
+                return;
+            }
+        }
+        if (!socketRegistry.addClient(socketClient)) {
+            // Ids of the allocator are never registered by anyone else, this is a bug
+            Log.e(TcpSocketModule.TAG, "Client socket id " + clientId + " is already in use");
+            release(remoteAddress);
+            closeQuietly(socket);
+            return;
+        }
+        clients.put(clientId, socketClient);
+        if (listener.isTLS()) {
+            mReceiverListener.onSecureConnection(getId(), clientId, socket, listener.index);
         } else {
-            mReceiverListener.onConnection(getId(), clientId, socket);
+            mReceiverListener.onConnection(getId(), clientId, socket, listener.index);
         }
         socketClient.startListening();
     }
 
+    interface BroadcastCallback {
+        /**
+         * Called once the data has been written to, or failed on, every recipient.
+         */
+        void onComplete(int written, int failed);
+    }
+
     /**
-     * Next ID for a client socket
+     * Writes the same data to the open clients of the server. Every client writes on its own write
+     * thread, so a slow client only delays its own completion. `data` is shared by the recipients
+     * and must not be modified.
      *
-     * @return The next ID for a client socket
+     * @param include ids of the only clients to write to, `null` for every client
+     * @param exclude ids of the clients to skip, `null` to skip none
+     * @return the number of recipients
+     * @throws IllegalStateException if the clients are multiplexed, their peers only accept frames
+     */
+    int broadcast(byte[] data, @Nullable int[] include, @Nullable int[] exclude, final BroadcastCallback callback) {
+        if (socketOptions.multiplex) {
+            throw new IllegalStateException("Cannot broadcast raw data to multiplexed sockets");
+        }
+        // A set, so that a client included twice is written to once
+        final Set<TcpSocketClient> recipients;
+        if (include != null) {
+            recipients = new LinkedHashSet<>();
+            for (int clientId : include) {
+                final TcpSocketClient client = clients.get(clientId);
+                if (client != null) recipients.add(client);
+            }
+        } else {
+            recipients = new LinkedHashSet<>(clients.values());
+        }
+        if (exclude != null) {
+            for (int clientId : exclude) {
+                recipients.remove(clients.get(clientId));
+            }
+        }
+        if (recipients.isEmpty()) {
+            callback.onComplete(0, 0);
+            return 0;
+        }
+        final AtomicInteger remaining = new AtomicInteger(recipients.size());
+        final AtomicInteger failed = new AtomicInteger();
+        final TcpSocketClient.WriteCallback writeCallback = new TcpSocketClient.WriteCallback() {
+            @Override
+            public void onWritten(@Nullable IOException e) {
+                if (e != null) failed.incrementAndGet();
+                if (remaining.decrementAndGet() > 0) return;
+                final int failures = failed.get();
+                callback.onComplete(recipients.size() - failures, failures);
+            }
+        };
+        for (TcpSocketClient client : recipients) {
+            client.write(data, writeCallback);
+        }
+        return recipients.size();
+    }
+
+    /**
+     * Called by the accepted clients when they are destroyed, so their slot and id can be reused.
+     * Accepted clients leave the registry here only, so their id is released once however many
+     * times they are destroyed.
+     */
+    void onClientDestroyed(TcpSocketClient client, @Nullable InetAddress remoteAddress) {
+        if (clients.remove(client.getId(), client)) release(remoteAddress);
+        if (socketRegistry.removeClient(client)) clientIds.release(client.getId());
+    }
+
+    private synchronized boolean admit(@Nullable InetAddress remoteAddress) {
+        if (maxConnections > 0 && connectionCount >= maxConnections) {
+            rejectedMaxConnectionsCount++;
+            return false;
+        }
+        final Integer ipCount = remoteAddress != null ? connectionsPerIp.get(remoteAddress) : null;
+        if (maxConnectionsPerIp > 0 && ipCount != null && ipCount >= maxConnectionsPerIp) {
+            rejectedPerIpCount++;
+            return false;
+        }
+        connectionCount++;
+        acceptedCount++;
+        if (remoteAddress != null) connectionsPerIp.put(remoteAddress, ipCount != null ? ipCount + 1 : 1);
+        return true;
+    }
+
+    private synchronized void release(@Nullable InetAddress remoteAddress) {
+        connectionCount--;
+        if (remoteAddress == null) return;
+        final Integer ipCount = connectionsPerIp.get(remoteAddress);
+        if (ipCount == null) return;
+        if (ipCount <= 1) {
+            connectionsPerIp.remove(remoteAddress);
+        } else {
+            connectionsPerIp.put(remoteAddress, ipCount - 1);
+        }
+    }
+
+    /**
+     * Blocks the accept loop until the accept rate allows another connection. Pending connections
+     * wait in the kernel backlog meanwhile, which costs neither threads nor events.
+     */
+    private void throttleAccept() throws InterruptedException {
+        if (acceptBucket == null) return;
+        final long delay = acceptBucket.reserve(1);
+        if (delay <= 0) return;
+        synchronized (this) {
+            throttledAcceptCount++;
+        }
+        TimeUnit.NANOSECONDS.sleep(delay);
+    }
+
+    synchronized int getConnectionCount() {
+        return connectionCount;
+    }
+
+    synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    synchronized long getRejectedMaxConnectionsCount() {
+        return rejectedMaxConnectionsCount;
+    }
+
+    synchronized long getRejectedPerIpCount() {
+        return rejectedPerIpCount;
+    }
+
+    synchronized long getThrottledAcceptCount() {
+        return throttledAcceptCount;
+    }
+
+    /**
+     * Resets the connection instead of going through the FIN handshake, so a rejected connection
+     * does not linger in TIME_WAIT.
      */
-    private int getClientId() {
-        return clientSocketIds++;
+    private static void reject(Socket socket) {
+        try {
+            socket.setSoLinger(true, 0);
+        } catch (SocketException ignored) {
+        }
+        closeQuietly(socket);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
     }
 
     private void listen() {
         TcpListenTask tcpListenTask = new TcpListenTask(this, mReceiverListener);
         listenExecutor.execute(tcpListenTask);
+        for (final Listener listener : listeners) {
+            if (!listener.isTLS()) continue;
+            listenExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    acceptTLS(listener);
+                }
+            });
+        }
     }
 
-    public void close() {
+    /**
+     * Accept loop of a TLS listener. The handshakes run on other threads, so a slow peer does not
+     * hold up the next connections.
+     */
+    private void acceptTLS(final Listener listener) {
+        final ServerSocket serverSocket = listener.getServerSocket();
         try {
-            // close the socket
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
-                mReceiverListener.onClose(getId(), null);
-                serverSocket = null;
+            while (!serverSocket.isClosed()) {
+                throttleAccept();
+                if (!acquireHandshakeSlot(serverSocket)) return;
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    handshakeSlots.release();
+                    if (!serverSocket.isClosed()) onAcceptFailed(e);
+                    continue;
+                }
+                try {
+                    listenExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                addClient(listener, socket);
+                            } finally {
+                                handshakeSlots.release();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The server has been closed
+                    handshakeSlots.release();
+                    closeQuietly(socket);
+                }
             }
+        } catch (InterruptedException e) {
+            // Stopped while throttled
+        }
+    }
+
+    /**
+     * Called when a listener that is still open fails to accept a connection, typically because
+     * the process ran out of file descriptors. The failure only concerns that connection, so the
+     * accept loop keeps going after a pause instead of spinning on the connection still pending.
+     */
+    private void onAcceptFailed(IOException e) throws InterruptedException {
+        Log.w(TcpSocketModule.TAG, "Could not accept connection to server " + getId(), e);
+        TimeUnit.MILLISECONDS.sleep(ACCEPT_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Waits until fewer than {@link #MAX_PENDING_HANDSHAKES} handshakes are running.
+     *
+     * @return `false` if the listener was closed meanwhile
+     */
+    private boolean acquireHandshakeSlot(ServerSocket serverSocket) throws InterruptedException {
+        while (!handshakeSlots.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+            if (serverSocket.isClosed()) return false;
+        }
+        return true;
+    }
+
+    public void close() {
+        if (!selector.isOpen()) return;
+        IOException error = closeListeners();
+        // Accepted clients stay open, only the accept loop stops
+        listenExecutor.shutdown();
+        mReceiverListener.onClose(getId(), error);
+    }
+
+    /**
+     * @return the first error closing the listeners, if any
+     */
+    @Nullable
+    private IOException closeListeners() {
+        IOException error = null;
+        // Closing the selector first releases the channels right away
+        try {
+            selector.close();
         } catch (IOException e) {
-            mReceiverListener.onClose(getId(), e);
+            error = e;
+        }
+        for (Listener listener : listeners) {
+            try {
+                if (listener.channel != null) {
+                    listener.channel.close();
+                } else {
+                    // Also unblocks the accept thread of the listener
+                    listener.getServerSocket().close();
+                }
+            } catch (IOException e) {
+                if (error == null) error = e;
+            }
         }
+        return error;
     }
 
     private static class TcpListenTask implements Runnable {
@@ -116,16 +549,36 @@ public final class TcpSocketServer extends TcpSocket {
 
         @Override
         public void run() {
-            ServerSocket serverSocket = server.getServerSocket();
+            final Selector selector = server.selector;
             try {
-                while (!serverSocket.isClosed()) {
-                    Socket socket = serverSocket.accept();
-                    server.addClient(socket);
+                while (selector.isOpen()) {
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid() || !key.isAcceptable()) continue;
+                        Listener listener = (Listener) key.attachment();
+                        server.throttleAccept();
+                        final SocketChannel channel;
+                        try {
+                            channel = listener.channel.accept();
+                        } catch (IOException e) {
+                            // The other listeners keep accepting
+                            if (listener.channel.isOpen()) server.onAcceptFailed(e);
+                            continue;
+                        }
+                        if (channel != null) server.addClient(listener, channel.socket());
+                    }
                 }
             } catch (IOException e) {
-                if (!serverSocket.isClosed()) {
+                if (selector.isOpen()) {
                     receiverListener.onError(server.getId(), e);
                 }
+            } catch (ClosedSelectorException | CancelledKeyException e) {
+                // The server has been closed
+            } catch (InterruptedException e) {
+                // Stopped while throttled
             }
         }
     }
@@ -0,0 +1,131 @@
+package com.asterinet.react.tcpsocket;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only storage of the queued writes of a socket that do not fit in memory.
+ * <p>
+ * Records are appended to memory-mapped segment files of {@link #SEGMENT_SIZE} bytes, or of the
+ * size of a larger record, and copied back to the heap when the write thread takes them. Full
+ * segments are only referenced by their records and are unmapped by the garbage collector once
+ * every record has been taken, the segment being appended to is rewound once drained. The files are
+ * deleted as soon as they are mapped, so nothing is left behind if the app dies.
+ */
+final class TcpSpillFile {
+    static final int SEGMENT_SIZE = 4 << 20;
+
+    static final class Record {
+        private final Segment segment;
+        private final int offset;
+        final int length;
+
+        private Record(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+        final MappedByteBuffer buffer;
+        // Records appended and not taken yet
+        int pending;
+
+        Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private final String prefix;
+    // Guarded by this
+    private Segment current;
+    private long spilledBytes;
+    private boolean closed;
+
+    /**
+     * @param prefix prefix of the segment file names, in the temporary directory of the app
+     */
+    TcpSpillFile(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Appends the concatenation of `buffers`.
+     */
+    synchronized Record append(byte[][] buffers) throws IOException {
+        if (closed) throw new IOException("Spill file is closed");
+        int length = 0;
+        for (byte[] buffer : buffers) length += buffer.length;
+        if (current == null || current.buffer.remaining() < length) {
+            current = newSegment(Math.max(SEGMENT_SIZE, length));
+        }
+        final Record record = new Record(current, current.buffer.position(), length);
+        for (byte[] buffer : buffers) current.buffer.put(buffer);
+        current.pending++;
+        spilledBytes += length;
+        return record;
+    }
+
+    private Segment newSegment(int size) throws IOException {
+        final File file = File.createTempFile(prefix, ".spill");
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                // The mapping outlives the channel
+                return new Segment(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } finally {
+                raf.close();
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * Copies `record` back to the heap and releases it.
+     */
+    synchronized byte[] take(Record record) {
+        final byte[] data = new byte[record.length];
+        final ByteBuffer view = record.segment.buffer.duplicate();
+        view.position(record.offset);
+        view.get(data);
+        release(record);
+        return data;
+    }
+
+    /**
+     * Releases `record` without reading it.
+     */
+    synchronized void discard(Record record) {
+        release(record);
+    }
+
+    private void release(Record record) {
+        if (closed) return;
+        spilledBytes -= record.length;
+        // The current segment is reused from the start once it is drained
+        if (--record.segment.pending == 0 && record.segment == current) current.buffer.clear();
+    }
+
+    /**
+     * @return the bytes appended and not taken yet
+     */
+    synchronized long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Drops the segments, the records not taken yet are lost.
+     */
+    synchronized void close() {
+        closed = true;
+        current = null;
+        spilledBytes = 0;
+    }
+}
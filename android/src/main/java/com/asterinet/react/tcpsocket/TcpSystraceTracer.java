@@ -0,0 +1,40 @@
+package com.asterinet.react.tcpsocket;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the spans as `android.os.Trace` sections, shown by systrace and Perfetto. The
+ * asynchronous spans need async sections, which are only available from Android 10 and are
+ * dropped below.
+ */
+final class TcpSystraceTracer extends TcpTracer {
+    // Tells apart the async sections of the same name, 0 for a dropped span
+    private final AtomicInteger cookies = new AtomicInteger();
+
+    @Override
+    long begin(int span, int id) {
+        if (!isAsync(span)) {
+            Trace.beginSection(NAMES[span]);
+            return 0;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return 0;
+        int cookie;
+        do {
+            cookie = cookies.incrementAndGet();
+        } while (cookie == 0);
+        Trace.beginAsyncSection(NAMES[span], cookie);
+        return cookie;
+    }
+
+    @Override
+    void end(int span, int id, long token) {
+        if (!isAsync(span)) {
+            Trace.endSection();
+        } else if (token != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(NAMES[span], (int) token);
+        }
+    }
+}
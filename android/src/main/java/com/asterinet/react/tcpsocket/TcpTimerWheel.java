@@ -0,0 +1,209 @@
+package com.asterinet.react.tcpsocket;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel shared by every socket of the module.
+ * <p>
+ * Timeouts are intrusive list nodes owned by the caller, so arming, re-arming and cancelling a
+ * {@link Timeout} is O(1) and does not allocate. A single daemon thread advances the wheel one
+ * tick at a time and sleeps while no timeout is armed. Expired tasks run on that thread and must
+ * not block.
+ */
+final class TcpTimerWheel {
+    private static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final int IDLE = 0;
+    private static final int ARMED = 1;
+    private static final int FIRING = 2;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Timeout[] buckets;
+    private final long startTime = System.nanoTime();
+    private long currentTick;
+    private int armedCount;
+    private Thread worker;
+    private boolean stopped;
+
+    TcpTimerWheel() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    TcpTimerWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) throw new IllegalArgumentException("tickDuration must be positive");
+        if (wheelSize <= 0 || (wheelSize & (wheelSize - 1)) != 0)
+            throw new IllegalArgumentException("wheelSize must be a power of two");
+        tickNanos = unit.toNanos(tickDuration);
+        mask = wheelSize - 1;
+        buckets = new Timeout[wheelSize];
+    }
+
+    /**
+     * A reusable timeout. The same instance can be armed again once it has expired or been cancelled,
+     * and re-arming an armed timeout moves its deadline.
+     */
+    static final class Timeout {
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private Timeout nextExpired;
+        private long deadlineTick;
+        private int state = IDLE;
+
+        Timeout(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * Arms `timeout` to run its task after `delay`.
+     */
+    synchronized void schedule(Timeout timeout, long delay, TimeUnit unit) {
+        if (stopped) throw new IllegalStateException("Timer wheel is stopped");
+        if (timeout.state == ARMED) unlink(timeout);
+        long elapsedTicks = (System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0)) + tickNanos - 1) / tickNanos;
+        timeout.deadlineTick = Math.max(elapsedTicks, currentTick + 1);
+        timeout.state = ARMED;
+        link(timeout);
+        if (armedCount == 1) {
+            startOrWakeWorker();
+        }
+    }
+
+    /**
+     * @return `true` if `timeout` was armed and will not run
+     */
+    synchronized boolean cancel(Timeout timeout) {
+        if (timeout.state == ARMED) {
+            unlink(timeout);
+            timeout.state = IDLE;
+            return true;
+        }
+        if (timeout.state == FIRING) {
+            // Collected for expiry but not run yet
+            timeout.state = IDLE;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized boolean isArmed(Timeout timeout) {
+        return timeout.state == ARMED;
+    }
+
+    synchronized int size() {
+        return armedCount;
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        notifyAll();
+    }
+
+    private void link(Timeout timeout) {
+        int index = (int) (timeout.deadlineTick & mask);
+        Timeout head = buckets[index];
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) head.prev = timeout;
+        buckets[index] = timeout;
+        armedCount++;
+    }
+
+    private void unlink(Timeout timeout) {
+        int index = (int) (timeout.deadlineTick & mask);
+        if (timeout.prev != null) timeout.prev.next = timeout.next;
+        else buckets[index] = timeout.next;
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        armedCount--;
+    }
+
+    private void startOrWakeWorker() {
+        if (worker == null) {
+            worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            }, "TcpSocketTimer");
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            notifyAll();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            Timeout expired;
+            synchronized (this) {
+                try {
+                    boolean idle = false;
+                    while (!stopped && armedCount == 0) {
+                        idle = true;
+                        wait();
+                    }
+                    if (stopped) return;
+                    if (idle) {
+                        // Every bucket is empty while idle, so skip the ticks that went by
+                        long nowTick = (System.nanoTime() - startTime) / tickNanos;
+                        if (nowTick > currentTick + 1) currentTick = nowTick - 1;
+                    }
+                    // Otherwise a worker running late collects every tick it missed, one per pass
+                    long sleepNanos;
+                    while (!stopped && (sleepNanos = startTime + (currentTick + 1) * tickNanos - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, sleepNanos);
+                    }
+                    if (stopped) return;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                currentTick++;
+                expired = collectExpired();
+            }
+            runExpired(expired);
+        }
+    }
+
+    private Timeout collectExpired() {
+        int index = (int) (currentTick & mask);
+        Timeout expired = null;
+        Timeout timeout = buckets[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            // Timeouts more than one revolution away stay in the bucket
+            if (timeout.deadlineTick <= currentTick) {
+                unlink(timeout);
+                timeout.state = FIRING;
+                timeout.nextExpired = expired;
+                expired = timeout;
+            }
+            timeout = next;
+        }
+        return expired;
+    }
+
+    private void runExpired(Timeout expired) {
+        while (expired != null) {
+            Timeout timeout = expired;
+            expired = timeout.nextExpired;
+            timeout.nextExpired = null;
+            synchronized (this) {
+                // Cancelled or re-armed after being collected
+                if (timeout.state != FIRING) continue;
+                timeout.state = IDLE;
+            }
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                Log.e(TcpSocketModule.TAG, "Timer task failed", e);
+            }
+        }
+    }
+}
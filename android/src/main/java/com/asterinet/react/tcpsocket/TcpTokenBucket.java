@@ -0,0 +1,47 @@
+package com.asterinet.react.tcpsocket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket refilled at a constant rate up to a burst size.
+ * <p>
+ * {@link #reserve(long)} always takes the tokens and may leave the bucket in debt, returning how
+ * long the caller has to wait before acting. This lets callers acquire more tokens than the burst
+ * size and keeps the long term rate exact without any background refill task.
+ */
+final class TcpTokenBucket {
+    private final double tokensPerNano;
+    private final double burst;
+    // Guarded by this
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param ratePerSecond tokens added per second
+     * @param burst         maximum number of tokens the bucket holds
+     */
+    TcpTokenBucket(double ratePerSecond, double burst) {
+        if (ratePerSecond <= 0) throw new IllegalArgumentException("ratePerSecond must be positive");
+        tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        tokens = this.burst;
+        lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes `count` tokens.
+     *
+     * @return nanoseconds to wait before the tokens would have been available, 0 if they already were
+     */
+    synchronized long reserve(long count) {
+        refill();
+        tokens -= count;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,83 @@
+package com.asterinet.react.tcpsocket;
+
+/**
+ * Keeps the last spans in memory, to be drained and analysed offline. The buffer is allocated
+ * upfront and recording a span allocates nothing, the oldest spans are overwritten once it is
+ * full.
+ */
+final class TcpTraceBuffer extends TcpTracer {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    static final class Span {
+        final int span;
+        final int id;
+        // System.nanoTime() at the start of the span
+        final long startNanos;
+        final long durationNanos;
+
+        Span(int span, int id, long startNanos, long durationNanos) {
+            this.span = span;
+            this.id = id;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    private final int[] spans;
+    private final int[] ids;
+    private final long[] starts;
+    private final long[] durations;
+    // Guarded by this
+    private long recorded;
+    private long drained;
+    private long dropped;
+
+    TcpTraceBuffer(int capacity) {
+        final int size = Math.max(1, capacity);
+        spans = new int[size];
+        ids = new int[size];
+        starts = new long[size];
+        durations = new long[size];
+    }
+
+    @Override
+    long begin(int span, int id) {
+        return System.nanoTime();
+    }
+
+    @Override
+    void end(int span, int id, long token) {
+        final long duration = System.nanoTime() - token;
+        synchronized (this) {
+            // Overwrites the oldest span not drained yet
+            if (recorded - drained == spans.length) {
+                drained++;
+                dropped++;
+            }
+            final int index = (int) (recorded++ % spans.length);
+            spans[index] = span;
+            ids[index] = id;
+            starts[index] = token;
+            durations[index] = duration;
+        }
+    }
+
+    /**
+     * Removes the spans recorded since the last call, by end time.
+     */
+    synchronized Span[] drain() {
+        final Span[] result = new Span[(int) (recorded - drained)];
+        for (int i = 0; i < result.length; i++) {
+            final int index = (int) (drained++ % spans.length);
+            result[i] = new Span(spans[index], ids[index], starts[index], durations[index]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of spans overwritten before being drained
+     */
+    synchronized long getDroppedCount() {
+        return dropped;
+    }
+}
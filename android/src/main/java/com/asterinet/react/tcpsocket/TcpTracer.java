@@ -0,0 +1,62 @@
+package com.asterinet.react.tcpsocket;
+
+/**
+ * Receives the spans of the socket lifecycle and hot paths, for profiling.
+ * <p>
+ * A span is opened with {@link #begin}, which returns a token, and closed with {@link #end} given
+ * the same token, from the same thread for the synchronous spans and from any thread for the
+ * others, see {@link #isAsync}. Callers keep the tracer that began a span to end it, so that
+ * replacing the tracer does not unbalance it. The default tracer, {@link #NONE}, does nothing and
+ * the call sites allocate nothing for it.
+ */
+abstract class TcpTracer {
+    // Connection of a client socket, from the connect() call to the connect event
+    static final int CONNECT = 0;
+    // TLS handshake of a client or accepted socket
+    static final int HANDSHAKE = 1;
+    // Setup of an accepted socket, up to its connection event
+    static final int ACCEPT = 2;
+    // From the read of data to its data event
+    static final int READ_TO_EMIT = 3;
+    // From a write() call of JS to its acknowledgement
+    static final int WRITE_TO_ACK = 4;
+    // Names of the spans in the traces, by span
+    static final String[] NAMES = {"tcp connect", "tcp handshake", "tcp accept", "tcp read-to-emit", "tcp write-to-ack"};
+
+    static final TcpTracer NONE = new TcpTracer() {
+        @Override
+        long begin(int span, int id) {
+            return 0;
+        }
+
+        @Override
+        void end(int span, int id, long token) {
+        }
+    };
+
+    private static volatile TcpTracer current = NONE;
+
+    static TcpTracer get() {
+        return current;
+    }
+
+    static void set(TcpTracer tracer) {
+        current = tracer;
+    }
+
+    /**
+     * @return `true` if `span` may end on another thread than the one it began on
+     */
+    static boolean isAsync(int span) {
+        return span >= READ_TO_EMIT;
+    }
+
+    /**
+     * Opens `span` of the socket `id`.
+     *
+     * @return the token to end the span with
+     */
+    abstract long begin(int span, int id);
+
+    abstract void end(int span, int id, long token);
+}
@@ -0,0 +1,83 @@
+package com.asterinet.react.tcpsocket;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Reports the outcome of the writes of a socket to JS as `written` events, following the
+ * `writeAcks` option of the socket.
+ * <p>
+ * With {@link #MODE_MESSAGE} every write is acknowledged on its own. With {@link #MODE_CUMULATIVE}
+ * successful writes are held and a single event acknowledges every `msgId` up to the last one,
+ * once the socket has no more queued writes or {@link #MAX_HELD_ACKS} writes are held. With
+ * {@link #MODE_NONE} successful writes are not acknowledged at all. A failed write is always
+ * reported at once, after the acknowledgement of the writes before it.
+ * <p>
+ * Only the writes that complete in the order they were made are acknowledged cumulatively, the
+ * writes sent ahead of or behind them because of their priority are acknowledged on their own.
+ */
+final class TcpWriteAcknowledger {
+    static final int MODE_MESSAGE = 0;
+    static final int MODE_CUMULATIVE = 1;
+    static final int MODE_NONE = 2;
+    // Bounds the delay of the acknowledgements while writes keep coming
+    static final int MAX_HELD_ACKS = 64;
+
+    private final TcpEventListener receiverListener;
+    private final int id;
+    private final int mode;
+    private int heldMsgId;
+    private int heldCount;
+
+    TcpWriteAcknowledger(TcpEventListener receiverListener, int id, int mode) {
+        this.receiverListener = receiverListener;
+        this.id = id;
+        this.mode = mode;
+    }
+
+    static int parseMode(@Nullable String mode) {
+        if ("cumulative".equals(mode)) return MODE_CUMULATIVE;
+        if ("none".equals(mode)) return MODE_NONE;
+        return MODE_MESSAGE;
+    }
+
+    /**
+     * Called once the write `msgId` has been written or failed with `e`.
+     *
+     * @param inOrder `false` if the write may complete before writes made earlier
+     */
+    synchronized void acknowledge(int msgId, @Nullable IOException e, boolean inOrder) {
+        if (e != null) {
+            flush();
+            // Fire-and-forget writes fail through the error event only
+            if (mode != MODE_NONE) receiverListener.onWritten(id, msgId, e);
+            receiverListener.onError(id, e);
+            return;
+        }
+        switch (mode) {
+            case MODE_MESSAGE:
+                receiverListener.onWritten(id, msgId, null);
+                break;
+            case MODE_CUMULATIVE:
+                if (!inOrder) {
+                    receiverListener.onWritten(id, msgId, null);
+                    break;
+                }
+                heldMsgId = msgId;
+                if (++heldCount >= MAX_HELD_ACKS) flush();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Emits the held acknowledgements. Called once the socket has no more queued writes.
+     */
+    synchronized void flush() {
+        if (heldCount == 0) return;
+        heldCount = 0;
+        receiverListener.onWritten(id, heldMsgId, null);
+    }
+}
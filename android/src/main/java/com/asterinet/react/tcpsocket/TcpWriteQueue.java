@@ -0,0 +1,243 @@
+package com.asterinet.react.tcpsocket;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outbound writes of a socket waiting for its write thread, one FIFO per priority.
+ * Writes of a higher priority are sent first, writes of the same priority in order.
+ * <p>
+ * Once a spill threshold is set, the data of the newest writes is moved to a {@link TcpSpillFile}
+ * while more than that many bytes are held in memory. The writes keep their place in the queue and
+ * their data is read back when they are taken. Spilling runs on a background thread shared by the
+ * sockets, so {@link #add} never waits on the disk and the memory held may briefly exceed the
+ * threshold. It cannot run on the write thread, which is blocked on the socket when spilling is
+ * needed.
+ */
+final class TcpWriteQueue {
+    static final int PRIORITY_HIGH = 0;
+    static final int PRIORITY_NORMAL = 1;
+    static final int PRIORITY_LOW = 2;
+
+    static final class Entry {
+        // `null` while spilled
+        byte[][] buffers;
+        final TcpSocketClient.WriteCallback callback;
+        final int priority;
+        @Nullable
+        TcpSpillFile.Record spilled;
+        // Taken or removed from the queue, guarded by the queue
+        boolean dequeued;
+
+        Entry(byte[][] buffers, TcpSocketClient.WriteCallback callback, int priority) {
+            this.buffers = buffers;
+            this.callback = callback;
+            this.priority = priority;
+        }
+    }
+
+    private static final ThreadPoolExecutor SPILLER = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "TcpSocketSpill");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Guarded by this
+    private final ArrayDeque<Entry> high = new ArrayDeque<>();
+    private final ArrayDeque<Entry> normal = new ArrayDeque<>();
+    private final ArrayDeque<Entry> low = new ArrayDeque<>();
+    @Nullable
+    private TcpSpillFile spillFile;
+    private int spillThreshold;
+    private long memoryBytes;
+    private boolean spillScheduled;
+    private boolean closed;
+    private final Runnable spillTask = new Runnable() {
+        @Override
+        public void run() {
+            spill();
+        }
+    };
+
+    static int parsePriority(@Nullable String priority) {
+        if ("high".equals(priority)) return PRIORITY_HIGH;
+        if ("low".equals(priority)) return PRIORITY_LOW;
+        return PRIORITY_NORMAL;
+    }
+
+    private ArrayDeque<Entry> queue(int priority) {
+        switch (priority) {
+            case PRIORITY_HIGH:
+                return high;
+            case PRIORITY_LOW:
+                return low;
+            default:
+                return normal;
+        }
+    }
+
+    /**
+     * Spills the data of the writes queued while `threshold` bytes are held in memory.
+     */
+    synchronized void setSpillThreshold(int threshold, String spillPrefix) {
+        spillThreshold = threshold;
+        if (spillFile == null) spillFile = new TcpSpillFile(spillPrefix);
+    }
+
+    synchronized void add(Entry entry) {
+        memoryBytes += length(entry.buffers);
+        queue(entry.priority).add(entry);
+        if (spillFile != null && memoryBytes > spillThreshold && !spillScheduled && !closed) {
+            spillScheduled = true;
+            SPILLER.execute(spillTask);
+        }
+    }
+
+    /**
+     * Moves the data of the newest writes, of the lowest priority first, to the spill file until
+     * the threshold is met. The file is written outside of the lock of the queue.
+     */
+    private void spill() {
+        while (true) {
+            final ArrayList<Entry> entries = new ArrayList<>();
+            final TcpSpillFile file;
+            synchronized (this) {
+                file = spillFile;
+                long excess = closed ? 0 : memoryBytes - spillThreshold;
+                for (int priority = PRIORITY_LOW; priority >= PRIORITY_HIGH && excess > 0; priority--) {
+                    final Iterator<Entry> iterator = queue(priority).descendingIterator();
+                    while (excess > 0 && iterator.hasNext()) {
+                        final Entry entry = iterator.next();
+                        if (entry.spilled != null) continue;
+                        entries.add(entry);
+                        excess -= length(entry.buffers);
+                    }
+                }
+                if (entries.isEmpty()) {
+                    spillScheduled = false;
+                    return;
+                }
+            }
+            for (Entry entry : entries) {
+                final TcpSpillFile.Record record;
+                try {
+                    record = file.append(entry.buffers);
+                } catch (IOException e) {
+                    synchronized (this) {
+                        spillScheduled = false;
+                        if (closed) return;
+                    }
+                    // Out of disk space, keep the data in memory
+                    Log.w(TcpSocketModule.TAG, "Could not spill a queued write", e);
+                    return;
+                }
+                synchronized (this) {
+                    if (entry.dequeued) {
+                        // Sent or failed meanwhile
+                        file.discard(record);
+                    } else {
+                        memoryBytes -= length(entry.buffers);
+                        entry.spilled = record;
+                        entry.buffers = null;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int length(byte[][] buffers) {
+        int length = 0;
+        for (byte[] buffer : buffers) length += buffer.length;
+        return length;
+    }
+
+    /**
+     * @return `false` if `entry` was already taken
+     */
+    synchronized boolean remove(Entry entry) {
+        if (!queue(entry.priority).remove(entry)) return false;
+        entry.dequeued = true;
+        if (entry.spilled != null) {
+            spillFile.discard(entry.spilled);
+        } else {
+            memoryBytes -= length(entry.buffers);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the oldest write of the highest priority.
+     */
+    @Nullable
+    Entry poll() {
+        return pollAbove(PRIORITY_LOW + 1);
+    }
+
+    /**
+     * Takes the oldest write of the highest priority, if it is higher than `priority`. The data of
+     * a spilled write is read back outside of the lock of the queue.
+     */
+    @Nullable
+    Entry pollAbove(int priority) {
+        final Entry entry = take(priority);
+        if (entry != null && entry.spilled != null) {
+            entry.buffers = new byte[][]{spillFile.take(entry.spilled)};
+            entry.spilled = null;
+        }
+        return entry;
+    }
+
+    @Nullable
+    private synchronized Entry take(int priority) {
+        final Entry entry;
+        if (priority > PRIORITY_HIGH && !high.isEmpty()) {
+            entry = high.poll();
+        } else if (priority > PRIORITY_NORMAL && !normal.isEmpty()) {
+            entry = normal.poll();
+        } else if (priority > PRIORITY_LOW) {
+            entry = low.poll();
+        } else {
+            entry = null;
+        }
+        if (entry == null) return null;
+        entry.dequeued = true;
+        if (entry.spilled == null) memoryBytes -= length(entry.buffers);
+        return entry;
+    }
+
+    /**
+     * @return the bytes of the queued writes held in memory
+     */
+    synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return the bytes of the queued writes held in the spill file
+     */
+    synchronized long getSpilledBytes() {
+        return spillFile != null ? spillFile.getSpilledBytes() : 0;
+    }
+
+    /**
+     * Drops the spill file. Called once the socket is destroyed and its pending writes failed.
+     */
+    synchronized void close() {
+        closed = true;
+        if (spillFile != null) spillFile.close();
+    }
+}
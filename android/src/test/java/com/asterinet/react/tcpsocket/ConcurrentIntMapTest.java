@@ -0,0 +1,114 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentIntMapTest {
+    @Test
+    public void putGetRemove() {
+        ConcurrentIntMap<String> map = new ConcurrentIntMap<>();
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-7, "negative"));
+        assertNull(map.put(42, "answer"));
+        assertEquals("zero", map.get(0));
+        assertEquals("negative", map.get(-7));
+        assertEquals("answer", map.put(42, "other"));
+        assertEquals("other", map.get(42));
+        assertEquals(3, map.size());
+
+        assertEquals("zero", map.remove(0));
+        assertNull(map.get(0));
+        assertNull(map.remove(0));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void conditionalOperations() {
+        ConcurrentIntMap<String> map = new ConcurrentIntMap<>();
+        assertTrue(map.putIfAbsent(1, "a"));
+        assertFalse(map.putIfAbsent(1, "b"));
+        assertEquals("a", map.get(1));
+        assertFalse(map.remove(1, "b"));
+        assertTrue(map.remove(1, "a"));
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void removeAllReturnsEveryValue() {
+        ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        for (int i = 0; i < 100; i++) map.put(i, i);
+        map.remove(50);
+        List<Integer> values = map.removeAll();
+        assertEquals(99, values.size());
+        assertFalse(values.contains(50));
+        assertEquals(0, map.size());
+        assertNull(map.get(1));
+        assertNull(map.put(1, 1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void valuesDoesNotEmptyTheMap() {
+        ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        for (int i = 0; i < 40; i++) map.put(i, i);
+        map.remove(7);
+        List<Integer> values = map.values();
+        assertEquals(39, values.size());
+        assertFalse(values.contains(7));
+        assertEquals(39, map.size());
+    }
+
+    @Test
+    public void growsAndReusesRemovedSlots() {
+        ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10000; i++) {
+                map.put(round * 10000 + i, i);
+            }
+            for (int i = 0; i < 10000; i++) {
+                assertEquals(Integer.valueOf(i), map.get(round * 10000 + i));
+                map.remove(round * 10000 + i);
+            }
+            assertEquals(0, map.size());
+        }
+    }
+
+    @Test
+    public void readersSeeStableEntriesWhileWritersChurn() throws InterruptedException {
+        final ConcurrentIntMap<Object> map = new ConcurrentIntMap<>();
+        final Object stable = new Object();
+        map.put(-1, stable);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    if (map.get(-1) != stable) {
+                        failure.set(new AssertionError("Stable entry not found"));
+                        return;
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200000; i++) {
+            map.put(i, stable);
+            if (i >= 100) map.remove(i - 100);
+        }
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+        assertSame(stable, map.get(-1));
+        assertEquals(101, map.size());
+    }
+}
@@ -0,0 +1,113 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event listener that records the events of the native sockets instead of sending them to JS.
+ */
+class RecordingEventListener extends TcpEventListener {
+    final BlockingQueue<Integer> connections = new LinkedBlockingQueue<>();
+    final Map<Integer, Integer> connectionListeners = new ConcurrentHashMap<>();
+    final AtomicInteger closes = new AtomicInteger();
+    final AtomicInteger errors = new AtomicInteger();
+    final AtomicInteger ends = new AtomicInteger();
+    final AtomicInteger dataEvents = new AtomicInteger();
+    final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+    final AtomicInteger writtenEvents = new AtomicInteger();
+    final AtomicInteger timeouts = new AtomicInteger();
+    final BlockingQueue<List<TcpDatagramSocket.Datagram>> datagramBatches = new LinkedBlockingQueue<>();
+    final BlockingQueue<Integer> writtenMessages = new LinkedBlockingQueue<>();
+    final BlockingQueue<byte[]> requests = new LinkedBlockingQueue<>();
+    final BlockingQueue<Integer> requestIds = new LinkedBlockingQueue<>();
+    final BlockingQueue<Integer> reconnectAttempts = new LinkedBlockingQueue<>();
+    final BlockingQueue<Integer> reconnects = new LinkedBlockingQueue<>();
+
+    RecordingEventListener() {
+        super((DeviceEventManagerModule.RCTDeviceEventEmitter) null);
+    }
+
+    @Override
+    public void onConnection(int serverId, int clientId, Socket socket, int listenerIndex) {
+        connectionListeners.put(clientId, listenerIndex);
+        connections.add(clientId);
+    }
+
+    @Override
+    public void onSecureConnection(int serverId, int clientId, Socket socket, int listenerIndex) {
+        connectionListeners.put(clientId, listenerIndex);
+        connections.add(clientId);
+    }
+
+    @Override
+    public void onConnect(int id, TcpSocketClient client) {
+    }
+
+    @Override
+    public void onReconnecting(int id, int attempt, long delay, Exception e) {
+        reconnectAttempts.add(attempt);
+    }
+
+    @Override
+    public void onReconnect(int id, TcpSocketClient client) {
+        reconnects.add(id);
+    }
+
+    @Override
+    public void onListen(int id, TcpSocketServer server) {
+    }
+
+    @Override
+    public void onBound(int id, TcpDatagramSocket datagramSocket) {
+    }
+
+    @Override
+    public void onDatagrams(int id, List<TcpDatagramSocket.Datagram> datagrams) {
+        datagramBatches.add(datagrams);
+    }
+
+    @Override
+    public void onData(int id, byte[] data) {
+        dataEvents.incrementAndGet();
+        received.add(data);
+    }
+
+    @Override
+    public void onRequest(int id, int requestId, byte[] data) {
+        requestIds.add(requestId);
+        requests.add(data);
+    }
+
+    @Override
+    public void onEnd(int id) {
+        ends.incrementAndGet();
+    }
+
+    @Override
+    public void onTimeout(int id) {
+        timeouts.incrementAndGet();
+    }
+
+    @Override
+    public void onWritten(int id, int msgId, Exception e) {
+        writtenEvents.incrementAndGet();
+        if (e == null) writtenMessages.add(msgId);
+    }
+
+    @Override
+    public void onClose(int id, Exception e) {
+        closes.incrementAndGet();
+    }
+
+    @Override
+    public void onError(int id, Exception e) {
+        errors.incrementAndGet();
+    }
+}
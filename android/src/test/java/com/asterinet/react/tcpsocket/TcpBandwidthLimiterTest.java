@@ -0,0 +1,79 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TcpBandwidthLimiterTest {
+    private static final TcpBandwidthLimiter.ClosedCheck OPEN = new TcpBandwidthLimiter.ClosedCheck() {
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        TcpBandwidthLimiter.GLOBAL_READ.setRate(0);
+        TcpBandwidthLimiter.GLOBAL_WRITE.setRate(0);
+    }
+
+    @Test
+    public void doesNotWaitWithoutLimits() throws InterruptedException {
+        TcpBandwidthLimiter limiter = new TcpBandwidthLimiter();
+        assertFalse(limiter.isLimited());
+        long start = System.nanoTime();
+        TcpBandwidthLimiter.pace(limiter, TcpBandwidthLimiter.GLOBAL_READ, 1 << 20, OPEN);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, limiter.getThrottledNanos());
+    }
+
+    @Test
+    public void waitsForTheBytesOverTheBurst() throws InterruptedException {
+        TcpBandwidthLimiter limiter = new TcpBandwidthLimiter();
+        // 250 bytes of burst
+        limiter.setRate(1000);
+        long start = System.nanoTime();
+        TcpBandwidthLimiter.pace(limiter, TcpBandwidthLimiter.GLOBAL_READ, 350, OPEN);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertTrue(limiter.getThrottledNanos() >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(0, TcpBandwidthLimiter.GLOBAL_READ.getThrottledNanos());
+    }
+
+    @Test
+    public void sharesTheGlobalLimitBetweenSockets() throws InterruptedException {
+        TcpBandwidthLimiter.GLOBAL_WRITE.setRate(1000);
+        long throttledBefore = TcpBandwidthLimiter.GLOBAL_WRITE.getThrottledNanos();
+        TcpBandwidthLimiter first = new TcpBandwidthLimiter();
+        TcpBandwidthLimiter second = new TcpBandwidthLimiter();
+        TcpBandwidthLimiter.pace(first, TcpBandwidthLimiter.GLOBAL_WRITE, 250, OPEN);
+        long start = System.nanoTime();
+        // The first socket used the whole burst
+        TcpBandwidthLimiter.pace(second, TcpBandwidthLimiter.GLOBAL_WRITE, 100, OPEN);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertTrue(TcpBandwidthLimiter.GLOBAL_WRITE.getThrottledNanos() - throttledBefore >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(0, second.getThrottledNanos());
+    }
+
+    @Test
+    public void stopsWaitingOnceClosed() throws InterruptedException {
+        TcpBandwidthLimiter limiter = new TcpBandwidthLimiter();
+        limiter.setRate(100);
+        final long closeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        long start = System.nanoTime();
+        // Ten seconds worth of bytes
+        TcpBandwidthLimiter.pace(limiter, TcpBandwidthLimiter.GLOBAL_READ, 1025, new TcpBandwidthLimiter.ClosedCheck() {
+            @Override
+            public boolean isClosed() {
+                return System.nanoTime() >= closeAt;
+            }
+        });
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+}
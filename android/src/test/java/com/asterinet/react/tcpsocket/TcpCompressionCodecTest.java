@@ -0,0 +1,132 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TcpCompressionCodecTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] DICTIONARY = "{\"type\":\"update\",\"symbol\":\"price\":".getBytes(UTF_8);
+
+    private static final class CollectingSink implements TcpCompressionCodec.Sink {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final List<byte[]> chunks = new ArrayList<>();
+
+        @Override
+        public void onData(byte[] data, int offset, int length) {
+            stream.write(data, offset, length);
+            chunks.add(Arrays.copyOfRange(data, offset, offset + length));
+        }
+    }
+
+    private static TcpCompressionCodec codec(int mode, byte[] dictionary) {
+        return new TcpCompressionCodec(mode, Deflater.DEFAULT_COMPRESSION, dictionary, 1024 * 1024, 8192);
+    }
+
+    private static byte[] message(int i) {
+        return ("{\"type\":\"update\",\"symbol\":\"ABC" + i + "\",\"price\":" + (100 + i) + "}").getBytes(UTF_8);
+    }
+
+    @Test
+    public void streamModeDecodesEveryFlushedWrite() throws IOException {
+        TcpCompressionCodec sender = codec(TcpCompressionCodec.MODE_STREAM, DICTIONARY);
+        TcpCompressionCodec receiver = codec(TcpCompressionCodec.MODE_STREAM, DICTIONARY);
+        CollectingSink sink = new CollectingSink();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 50; i++) {
+            byte[] data = message(i);
+            expected.write(data);
+            byte[] encoded = sender.encode(data);
+            // Every write must be decodable on its own, one byte at a time
+            for (int j = 0; j < encoded.length; j++) {
+                receiver.decode(encoded, j, 1, sink);
+            }
+            assertEquals(expected.size(), sink.stream.size());
+        }
+        assertArrayEquals(expected.toByteArray(), sink.stream.toByteArray());
+        assertEquals(expected.size(), sender.getUncompressedBytesWritten());
+        assertEquals(sender.getCompressedBytesWritten(), receiver.getCompressedBytesRead());
+        assertEquals(expected.size(), receiver.getUncompressedBytesRead());
+        sender.endEncoder();
+        receiver.endDecoder();
+    }
+
+    @Test
+    public void frameModeKeepsMessageBoundaries() throws IOException {
+        TcpCompressionCodec sender = codec(TcpCompressionCodec.MODE_FRAME, DICTIONARY);
+        TcpCompressionCodec receiver = codec(TcpCompressionCodec.MODE_FRAME, DICTIONARY);
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        byte[] large = new byte[200000];
+        Arrays.fill(large, (byte) 'x');
+        wire.write(sender.encode(message(1)));
+        wire.write(sender.encode(large));
+        wire.write(sender.encode(new byte[0]));
+        wire.write(sender.encode(message(2)));
+        byte[] bytes = wire.toByteArray();
+        CollectingSink sink = new CollectingSink();
+        // Split the frames at arbitrary points
+        for (int offset = 0; offset < bytes.length; offset += 7) {
+            receiver.decode(bytes, offset, Math.min(7, bytes.length - offset), sink);
+        }
+        assertEquals(4, sink.chunks.size());
+        assertArrayEquals(message(1), sink.chunks.get(0));
+        assertArrayEquals(large, sink.chunks.get(1));
+        assertEquals(0, sink.chunks.get(2).length);
+        assertArrayEquals(message(2), sink.chunks.get(3));
+        assertTrue(sender.getUncompressedBytesWritten() > 20 * sender.getCompressedBytesWritten());
+    }
+
+    @Test
+    public void dictionaryImprovesSmallFrames() {
+        TcpCompressionCodec plain = codec(TcpCompressionCodec.MODE_FRAME, null);
+        TcpCompressionCodec primed = codec(TcpCompressionCodec.MODE_FRAME, DICTIONARY);
+        for (int i = 0; i < 20; i++) {
+            plain.encode(message(i));
+            primed.encode(message(i));
+        }
+        assertTrue(primed.getCompressedBytesWritten() < plain.getCompressedBytesWritten());
+    }
+
+    @Test
+    public void rejectsFramesWithoutTheDictionary() {
+        TcpCompressionCodec sender = codec(TcpCompressionCodec.MODE_FRAME, DICTIONARY);
+        TcpCompressionCodec receiver = codec(TcpCompressionCodec.MODE_FRAME, null);
+        byte[] encoded = sender.encode(message(1));
+        try {
+            receiver.decode(encoded, 0, encoded.length, new CollectingSink());
+            fail("Decoded a frame without its dictionary");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("dictionary"));
+        }
+    }
+
+    @Test
+    public void acceptsFramesOfExactlyMaxFrameSize() throws IOException {
+        TcpCompressionCodec sender = new TcpCompressionCodec(TcpCompressionCodec.MODE_FRAME, Deflater.DEFAULT_COMPRESSION, null, 4096, 8192);
+        TcpCompressionCodec receiver = new TcpCompressionCodec(TcpCompressionCodec.MODE_FRAME, Deflater.DEFAULT_COMPRESSION, null, 4096, 8192);
+        byte[] full = new byte[4096];
+        Arrays.fill(full, (byte) 'x');
+        byte[] encoded = sender.encode(full);
+        CollectingSink sink = new CollectingSink();
+        receiver.decode(encoded, 0, encoded.length, sink);
+        assertArrayEquals(full, sink.chunks.get(0));
+        byte[] over = sender.encode(new byte[4097]);
+        try {
+            receiver.decode(over, 0, over.length, sink);
+            fail("Decoded a frame over maxFrameSize");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("maxFrameSize"));
+        }
+    }
+}
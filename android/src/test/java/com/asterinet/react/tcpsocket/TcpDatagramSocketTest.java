@@ -0,0 +1,136 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpDatagramSocketTest {
+    private RecordingEventListener listener;
+    private TcpDatagramLoop loop;
+
+    @Before
+    public void setUp() {
+        listener = new RecordingEventListener();
+        loop = new TcpDatagramLoop();
+    }
+
+    @After
+    public void tearDown() {
+        loop.stop();
+    }
+
+    @Test
+    public void sendsAndReceivesBatchesOverLoopback() throws Exception {
+        TcpDatagramSocket sender = bind(1);
+        TcpDatagramSocket receiver = bind(2);
+        InetSocketAddress receiverAddress = new InetSocketAddress(InetAddress.getByName("127.0.0.1"),
+                receiver.getSocket().getLocalPort());
+        final int count = 200;
+        List<TcpDatagramSocket.Datagram> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(new TcpDatagramSocket.Datagram(new byte[]{(byte) i, (byte) (i >> 8)}, receiverAddress));
+        }
+        sender.send(batch, 7);
+        assertEquals(Integer.valueOf(7), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        // Every datagram of the batch is reported by a single `written` event
+        assertEquals(1, listener.writtenEvents.get());
+
+        Set<Integer> received = new HashSet<>();
+        int events = 0;
+        while (received.size() < count) {
+            List<TcpDatagramSocket.Datagram> datagrams = listener.datagramBatches.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Only received " + received.size() + " datagrams", datagrams);
+            assertTrue(datagrams.size() <= TcpDatagramSocket.MAX_RECEIVE_BATCH);
+            for (TcpDatagramSocket.Datagram datagram : datagrams) {
+                assertEquals(2, datagram.data.length);
+                assertEquals(sender.getSocket().getLocalPort(), datagram.address.getPort());
+                received.add((datagram.data[0] & 0xff) | (datagram.data[1] & 0xff) << 8);
+            }
+            events++;
+        }
+        assertTrue("Expected batched receive events, got " + events, events < count);
+        assertEquals(0, listener.errors.get());
+    }
+
+    @Test
+    public void sendsEmptyDatagrams() throws Exception {
+        TcpDatagramSocket sender = bind(1);
+        TcpDatagramSocket receiver = bind(2);
+        InetSocketAddress receiverAddress = new InetSocketAddress(InetAddress.getByName("127.0.0.1"),
+                receiver.getSocket().getLocalPort());
+        List<TcpDatagramSocket.Datagram> batch = new ArrayList<>();
+        batch.add(new TcpDatagramSocket.Datagram(new byte[0], receiverAddress));
+        batch.add(new TcpDatagramSocket.Datagram(new byte[]{1}, receiverAddress));
+        sender.send(batch, 3);
+        assertEquals(Integer.valueOf(3), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        int received = 0;
+        boolean emptyReceived = false;
+        while (received < 2) {
+            List<TcpDatagramSocket.Datagram> datagrams = listener.datagramBatches.poll(5, TimeUnit.SECONDS);
+            assertNotNull(datagrams);
+            for (TcpDatagramSocket.Datagram datagram : datagrams) {
+                if (datagram.data.length == 0) emptyReceived = true;
+                received++;
+            }
+        }
+        assertTrue(emptyReceived);
+    }
+
+    @Test
+    public void failsSendsAfterClose() throws Exception {
+        TcpDatagramSocket socket = bind(1);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getByName("127.0.0.1"),
+                socket.getSocket().getLocalPort());
+        socket.close();
+        List<TcpDatagramSocket.Datagram> batch = new ArrayList<>();
+        batch.add(new TcpDatagramSocket.Datagram(new byte[]{1}, address));
+        socket.send(batch, 1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.writtenEvents.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, listener.writtenEvents.get());
+        assertTrue(listener.writtenMessages.isEmpty());
+        assertEquals(1, listener.closes.get());
+    }
+
+    @Test
+    public void closesQueuedSocketsBeforeStopping() throws Exception {
+        TcpDatagramSocket socket = bind(1);
+        // As on module teardown, the loop is stopped right after the close is queued
+        socket.close();
+        loop.stop();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.closes.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, listener.closes.get());
+        assertFalse(socket.getChannel().isOpen());
+    }
+
+    private TcpDatagramSocket bind(int id) throws Exception {
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putString("address", "127.0.0.1");
+        options.putInt("port", 0);
+        // Large enough to hold the whole test batch
+        options.putInt("receiveBufferSize", 1 << 20);
+        TcpDatagramSocket socket = new TcpDatagramSocket(listener, loop, id);
+        socket.bind(options);
+        return socket;
+    }
+}
@@ -0,0 +1,132 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TcpEventDispatcherTest {
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 5000;
+
+    private TcpEventDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) dispatcher.stop();
+    }
+
+    private static TcpEventDispatcher.Event event(String name) {
+        return new TcpEventDispatcher.Event(name) {
+            @Override
+            WritableMap toParams() {
+                return null;
+            }
+        };
+    }
+
+    // The stats are updated once emit() returns
+    private void awaitDispatched(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (dispatcher.getDispatchedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, dispatcher.getDispatchedCount());
+    }
+
+    @Test
+    public void emitsTheEventsOfEachProducerInOrder() throws InterruptedException {
+        final List<List<Integer>> emitted = new ArrayList<>();
+        for (int i = 0; i < PRODUCERS; i++) emitted.add(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(PRODUCERS * EVENTS_PER_PRODUCER);
+        final List<String> threads = new ArrayList<>();
+        dispatcher = new TcpEventDispatcher(new DeviceEventManagerModule.RCTDeviceEventEmitter() {
+            @Override
+            public void emit(String name, Object data) {
+                // Only called by the dispatcher thread
+                String[] parts = name.split(":");
+                emitted.get(Integer.parseInt(parts[0])).add(Integer.parseInt(parts[1]));
+                if (threads.isEmpty()) threads.add(Thread.currentThread().getName());
+                done.countDown();
+            }
+        });
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                        dispatcher.enqueue(event(producer + ":" + i));
+                        // Let the dispatcher catch up and park now and then
+                        if (i % 1000 == 0) Thread.yield();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> events : emitted) {
+            assertEquals(EVENTS_PER_PRODUCER, events.size());
+            for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                assertEquals(i, (int) events.get(i));
+            }
+        }
+        assertEquals("TcpSocketEvents", threads.get(0));
+        awaitDispatched(PRODUCERS * EVENTS_PER_PRODUCER);
+        assertEquals(0, dispatcher.getDepth());
+    }
+
+    @Test
+    public void tracksQueueDepthAndLatency() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(10);
+        dispatcher = new TcpEventDispatcher(new DeviceEventManagerModule.RCTDeviceEventEmitter() {
+            @Override
+            public void emit(String name, Object data) {
+                try {
+                    // Hold the dispatcher on the first event so that the others queue up
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            dispatcher.enqueue(event("data"));
+        }
+        Thread.sleep(50);
+        assertTrue(dispatcher.getDepth() >= 9);
+        assertTrue(dispatcher.getMaxDepth() >= 9);
+        release.countDown();
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        awaitDispatched(10);
+        assertTrue(dispatcher.getMaxLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(dispatcher.getAverageLatencyNanos() <= dispatcher.getMaxLatencyNanos());
+    }
+
+    @Test
+    public void keepsEmittingAfterAFailedEmit() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        dispatcher = new TcpEventDispatcher(new DeviceEventManagerModule.RCTDeviceEventEmitter() {
+            @Override
+            public void emit(String name, Object data) {
+                if (name.equals("error")) throw new IllegalStateException("No JS context");
+                done.countDown();
+            }
+        });
+        dispatcher.enqueue(event("error"));
+        Thread.sleep(20);
+        dispatcher.enqueue(event("data"));
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        awaitDispatched(2);
+    }
+}
@@ -0,0 +1,48 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TcpLatencyHistogramTest {
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void bucketsByPowersOfTwoMilliseconds() {
+        assertEquals(0, TcpLatencyHistogram.bucketOf(millis(0)));
+        assertEquals(0, TcpLatencyHistogram.bucketOf(TimeUnit.MICROSECONDS.toNanos(999)));
+        assertEquals(1, TcpLatencyHistogram.bucketOf(millis(1)));
+        assertEquals(2, TcpLatencyHistogram.bucketOf(millis(3)));
+        assertEquals(11, TcpLatencyHistogram.bucketOf(millis(1024)));
+        assertEquals(TcpLatencyHistogram.BUCKETS - 1, TcpLatencyHistogram.bucketOf(TimeUnit.HOURS.toNanos(1)));
+        assertEquals(Double.POSITIVE_INFINITY, TcpLatencyHistogram.upperBoundOf(TcpLatencyHistogram.BUCKETS - 1), 0);
+    }
+
+    @Test
+    public void countsTheDurations() {
+        TcpLatencyHistogram histogram = new TcpLatencyHistogram();
+        histogram.record(millis(5));
+        histogram.record(millis(6));
+        histogram.record(millis(100));
+        assertEquals(3, histogram.getCount());
+        assertEquals(2, histogram.getCount(TcpLatencyHistogram.bucketOf(millis(5))));
+        assertEquals(millis(111), histogram.getTotalNanos());
+        assertEquals(millis(100), histogram.getMaxNanos());
+    }
+
+    @Test
+    public void estimatesQuantilesByTheBucketBounds() {
+        TcpLatencyHistogram histogram = new TcpLatencyHistogram();
+        assertEquals(0, histogram.getQuantile(0.5), 0);
+        for (int i = 0; i < 9; i++) histogram.record(millis(5));
+        histogram.record(millis(100));
+        assertEquals(8, histogram.getQuantile(0.5), 0);
+        assertEquals(8, histogram.getQuantile(0.9), 0);
+        // Capped by the largest duration
+        assertEquals(100, histogram.getQuantile(0.99), 0);
+    }
+}
@@ -0,0 +1,382 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives client sockets against a loopback {@link TcpSocketServer} for a while and reports the
+ * throughput, the latency, the threads and the heap, to catch leaks and scaling cliffs.
+ * <p>
+ * Every client keeps one message in flight: in {@link Mode#ECHO} the accepted sockets write the
+ * data back and the latency is the round trip, in {@link Mode#SINK} they drop it and the latency
+ * is the time until the write is acknowledged. The events go to a recording listener instead of
+ * JS, like in the other socket tests.
+ * <p>
+ * The tests run it briefly with the defaults, longer and larger runs take their configuration from
+ * the `tcpsocket.load.*` system properties, see {@link Config#fromSystemProperties}.
+ */
+final class TcpLoadHarness {
+    private static final int SERVER_ID = 1;
+    // Reservoir of latency samples, bounds the memory of the harness itself on long runs
+    private static final int MAX_LATENCY_SAMPLES = 1 << 16;
+
+    enum Mode {ECHO, SINK}
+
+    /**
+     * Distribution of the message sizes: comma separated entries of a fixed `size` or a uniform
+     * `min-max` range, each picked with the weight given by an optional `xN` suffix. For instance
+     * `64x9,16384` sends 64 bytes nine times out of ten and 16 KiB otherwise.
+     */
+    static final class MessageSizes {
+        private final int[] mins;
+        private final int[] maxs;
+        private final int[] cumulativeWeights;
+
+        private MessageSizes(int[] mins, int[] maxs, int[] cumulativeWeights) {
+            this.mins = mins;
+            this.maxs = maxs;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        static MessageSizes parse(String spec) {
+            final String[] entries = spec.split(",");
+            final int[] mins = new int[entries.length];
+            final int[] maxs = new int[entries.length];
+            final int[] weights = new int[entries.length];
+            int total = 0;
+            for (int i = 0; i < entries.length; i++) {
+                String entry = entries[i].trim();
+                int weight = 1;
+                final int times = entry.indexOf('x');
+                if (times >= 0) {
+                    weight = Integer.parseInt(entry.substring(times + 1));
+                    entry = entry.substring(0, times);
+                }
+                final int dash = entry.indexOf('-');
+                mins[i] = Integer.parseInt(dash >= 0 ? entry.substring(0, dash) : entry);
+                maxs[i] = dash >= 0 ? Integer.parseInt(entry.substring(dash + 1)) : mins[i];
+                if (mins[i] < 1 || maxs[i] < mins[i] || weight < 1) {
+                    throw new IllegalArgumentException("Invalid message sizes: " + spec);
+                }
+                total += weight;
+                weights[i] = total;
+            }
+            return new MessageSizes(mins, maxs, weights);
+        }
+
+        int next(Random random) {
+            final int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int i = 0;
+            while (cumulativeWeights[i] <= pick) i++;
+            return mins[i] + random.nextInt(maxs[i] - mins[i] + 1);
+        }
+
+        int max() {
+            int max = 0;
+            for (int size : maxs) max = Math.max(max, size);
+            return max;
+        }
+    }
+
+    static final class Config {
+        Mode mode = Mode.ECHO;
+        int sockets = 100;
+        long durationMillis = 3000;
+        // Not measured, lets the threads and the JIT settle
+        long warmupMillis = 500;
+        MessageSizes sizes = MessageSizes.parse("64x9,16384");
+
+        /**
+         * Overrides the defaults with `tcpsocket.load.sockets`, `tcpsocket.load.durationSeconds`,
+         * `tcpsocket.load.warmupSeconds` and `tcpsocket.load.sizes`.
+         */
+        static Config fromSystemProperties(Mode mode) {
+            Config config = new Config();
+            config.mode = mode;
+            config.sockets = Integer.getInteger("tcpsocket.load.sockets", config.sockets);
+            final String duration = System.getProperty("tcpsocket.load.durationSeconds");
+            if (duration != null) config.durationMillis = (long) (Double.parseDouble(duration) * 1000);
+            final String warmup = System.getProperty("tcpsocket.load.warmupSeconds");
+            if (warmup != null) config.warmupMillis = (long) (Double.parseDouble(warmup) * 1000);
+            final String sizes = System.getProperty("tcpsocket.load.sizes");
+            if (sizes != null) config.sizes = MessageSizes.parse(sizes);
+            return config;
+        }
+    }
+
+    static final class Report {
+        int sockets;
+        long messages;
+        long bytes;
+        double seconds;
+        // Sockets that completed no message during the measurement
+        int stalledSockets;
+        int errors;
+        double p50Millis;
+        double p99Millis;
+        double maxMillis;
+        int threadsBefore;
+        int peakThreads;
+        int threadsAfter;
+        long heapBefore;
+        long heapAfterWarmup;
+        long heapAtEnd;
+        long heapAfterClose;
+
+        double getMegabytesPerSecond() {
+            return bytes / seconds / (1024 * 1024);
+        }
+
+        double getMessagesPerSecond() {
+            return messages / seconds;
+        }
+
+        /**
+         * @return the heap retained over the measurement, after a full collection
+         */
+        long getHeapGrowth() {
+            return heapAtEnd - heapAfterWarmup;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d sockets, %.1fs: %d messages (%.0f/s), %.1f MB/s, latency p50 %.3fms p99 %.3fms max %.3fms, "
+                            + "%d stalled, %d errors, threads %d/%d/%d (before/peak/after), heap %.1f/%.1f/%.1f/%.1f MB (before/warm/end/closed)",
+                    sockets, seconds, messages, getMessagesPerSecond(), getMegabytesPerSecond(), p50Millis, p99Millis, maxMillis,
+                    stalledSockets, errors, threadsBefore, peakThreads, threadsAfter,
+                    heapBefore / 1e6, heapAfterWarmup / 1e6, heapAtEnd / 1e6, heapAfterClose / 1e6);
+        }
+    }
+
+    private final Config config;
+    private final TcpSocketRegistry socketRegistry = new TcpSocketRegistry();
+    private final TcpTimerWheel timerWheel = new TcpTimerWheel();
+    private final LoadEventListener listener = new LoadEventListener();
+    // Load clients by id, the accepted sockets are in the registry
+    private final Map<Integer, LoadClient> clients = new ConcurrentHashMap<>();
+    private final LatencySamples latencies = new LatencySamples();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final byte[] payload;
+    // Opened once every client sent its first message
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile boolean measuring;
+    private volatile boolean stopping;
+
+    private TcpLoadHarness(Config config) {
+        this.config = config;
+        payload = new byte[config.sizes.max()];
+        new Random(42).nextBytes(payload);
+    }
+
+    static Report run(Config config) throws Exception {
+        return new TcpLoadHarness(config).run();
+    }
+
+    private Report run() throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final Report report = new Report();
+        report.sockets = config.sockets;
+        report.heapBefore = usedHeapAfterGc(memory);
+        report.threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putInt("port", 0);
+        options.putString("host", "127.0.0.1");
+        options.putBoolean("reuseAddress", true);
+        final TcpSocketServer server = new TcpSocketServer(null, socketRegistry, new TcpSocketIdAllocator(), listener,
+                timerWheel, SERVER_ID, options);
+        final int port = server.getServerSocket().getLocalPort();
+        try {
+            for (int id = 1; id <= config.sockets; id++) {
+                LoadClient client = new LoadClient(new TcpSocketClient(listener, timerWheel, id, null));
+                clients.put(id, client);
+                client.socket.connect(null, "127.0.0.1", port, new JavaOnlyMap(), null, null);
+            }
+            for (LoadClient client : clients.values()) client.send();
+            started.countDown();
+
+            Thread.sleep(config.warmupMillis);
+            report.heapAfterWarmup = usedHeapAfterGc(memory);
+            final long start = System.nanoTime();
+            measuring = true;
+            Thread.sleep(config.durationMillis);
+            measuring = false;
+            report.seconds = (System.nanoTime() - start) / 1e9;
+            stopping = true;
+            report.heapAtEnd = usedHeapAfterGc(memory);
+        } finally {
+            stopping = true;
+            started.countDown();
+            for (LoadClient client : clients.values()) client.socket.destroy();
+            server.close();
+            for (TcpSocketClient accepted : socketRegistry.clients()) {
+                accepted.destroy();
+                socketRegistry.removeClient(accepted);
+            }
+            timerWheel.stop();
+        }
+
+        report.messages = messages.get();
+        report.bytes = bytes.get();
+        report.errors = listener.errors.get();
+        for (LoadClient client : clients.values()) {
+            if (client.measuredMessages == 0) report.stalledSockets++;
+        }
+        report.p50Millis = latencies.getQuantile(0.5) / 1e6;
+        report.p99Millis = latencies.getQuantile(0.99) / 1e6;
+        report.maxMillis = latencies.getQuantile(1) / 1e6;
+        report.peakThreads = threads.getPeakThreadCount();
+        report.threadsAfter = awaitThreadCount(threads, report.threadsBefore, TimeUnit.SECONDS.toMillis(10));
+        report.heapAfterClose = usedHeapAfterGc(memory);
+        return report;
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        // Twice, the first collection may only queue finalizers
+        System.gc();
+        Thread.sleep(50);
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Waits for the socket threads to exit.
+     *
+     * @return the thread count once at most `expected`, or at the deadline
+     */
+    private static int awaitThreadCount(ThreadMXBean threads, int expected, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int count;
+        while ((count = threads.getThreadCount()) > expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        return count;
+    }
+
+    private final class LoadClient {
+        final TcpSocketClient socket;
+        // Written by the thread that sent the message, read by the one completing it
+        private volatile int expected;
+        private volatile long sentAt;
+        private int received;
+        private int msgId;
+        volatile long measuredMessages;
+
+        LoadClient(TcpSocketClient socket) {
+            this.socket = socket;
+        }
+
+        void send() {
+            if (stopping) return;
+            final int size = config.sizes.next(ThreadLocalRandom.current());
+            expected = size;
+            received = 0;
+            sentAt = System.nanoTime();
+            // Written data must not be modified, each message gets its own copy
+            socket.write(++msgId, Arrays.copyOf(payload, size));
+        }
+
+        void onEcho(int length) {
+            received += length;
+            if (received >= expected) complete();
+        }
+
+        void complete() {
+            final long latency = System.nanoTime() - sentAt;
+            if (measuring) {
+                latencies.add(latency);
+                messages.incrementAndGet();
+                bytes.addAndGet(expected);
+                measuredMessages++;
+            }
+            try {
+                // Busy sockets would slow down the first sends of the others, quadratically on few cores
+                started.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            send();
+        }
+    }
+
+    private final class LoadEventListener extends RecordingEventListener {
+        @Override
+        public void onData(int id, byte[] data) {
+            final LoadClient client = clients.get(id);
+            if (client != null) {
+                client.onEcho(data.length);
+                return;
+            }
+            if (config.mode == Mode.ECHO && !stopping) {
+                final TcpSocketClient accepted = socketRegistry.getClient(id);
+                if (accepted != null) accepted.write(0, data);
+            }
+        }
+
+        @Override
+        public void onWritten(int id, int msgId, Exception e) {
+            final LoadClient client = clients.get(id);
+            if (client == null || e != null) return;
+            if (config.mode == Mode.SINK) client.complete();
+        }
+
+        @Override
+        public void onConnection(int serverId, int clientId, Socket socket, int listenerIndex) {
+            // Not recorded, the harness finds the accepted sockets in the registry
+        }
+
+        @Override
+        public void onError(int id, Exception e) {
+            // Destroyed sockets may fail their last writes
+            if (!stopping) super.onError(id, e);
+        }
+    }
+
+    /**
+     * Uniform sample of the latencies, see Vitter's algorithm R.
+     */
+    private static final class LatencySamples {
+        private final long[] samples = new long[MAX_LATENCY_SAMPLES];
+        private long count;
+
+        synchronized void add(long nanos) {
+            if (count < samples.length) {
+                samples[(int) count] = nanos;
+            } else {
+                final long slot = ThreadLocalRandom.current().nextLong(count + 1);
+                if (slot < samples.length) samples[(int) slot] = nanos;
+            }
+            count++;
+        }
+
+        /**
+         * @return the nanoseconds at `quantile` of the samples, `0` without samples
+         */
+        synchronized long getQuantile(double quantile) {
+            final int size = (int) Math.min(count, samples.length);
+            if (size == 0) return 0;
+            final long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            final int rank = Math.max(1, (int) Math.ceil(quantile * size));
+            return sorted[Math.min(size, rank) - 1];
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TcpLoadHarnessTest {
+    // Threads of other tests may still be exiting
+    private static final int THREAD_SLACK = 8;
+    private static final long MAX_HEAP_GROWTH = 64L << 20;
+
+    @Test
+    public void parsesMessageSizeDistributions() {
+        Random random = new Random(1);
+        TcpLoadHarness.MessageSizes fixed = TcpLoadHarness.MessageSizes.parse("100");
+        assertEquals(100, fixed.next(random));
+        TcpLoadHarness.MessageSizes mix = TcpLoadHarness.MessageSizes.parse("10x3, 1000-2000");
+        assertEquals(2000, mix.max());
+        int small = 0;
+        for (int i = 0; i < 4000; i++) {
+            int size = mix.next(random);
+            assertTrue(size == 10 || size >= 1000 && size <= 2000);
+            if (size == 10) small++;
+        }
+        assertTrue("Picked 10 bytes " + small + " times", small > 2800 && small < 3200);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyRanges() {
+        TcpLoadHarness.MessageSizes.parse("2000-1000");
+    }
+
+    @Test
+    public void echoesUnderLoad() throws Exception {
+        assertHealthy(TcpLoadHarness.run(TcpLoadHarness.Config.fromSystemProperties(TcpLoadHarness.Mode.ECHO)));
+    }
+
+    @Test
+    public void sinksUnderLoad() throws Exception {
+        assertHealthy(TcpLoadHarness.run(TcpLoadHarness.Config.fromSystemProperties(TcpLoadHarness.Mode.SINK)));
+    }
+
+    private static void assertHealthy(TcpLoadHarness.Report report) {
+        final String message = "Load: " + report;
+        assertEquals(message, 0, report.errors);
+        assertEquals(message, 0, report.stalledSockets);
+        assertTrue(message, report.messages > 0);
+        assertTrue(message, report.p50Millis <= report.p99Millis);
+        assertTrue("Threads left: " + report.threadsAfter + ", " + message, report.threadsAfter <= report.threadsBefore + THREAD_SLACK);
+        assertTrue("Heap grew by " + report.getHeapGrowth() + ", " + message, report.getHeapGrowth() < MAX_HEAP_GROWTH);
+    }
+}
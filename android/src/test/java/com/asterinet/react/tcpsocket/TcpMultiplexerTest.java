@@ -0,0 +1,186 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpMultiplexerTest {
+    private RecordingEventListener listener;
+    private TcpTimerWheel timerWheel;
+    private ServerSocket peerServer;
+    private Socket peer;
+    private TcpSocketClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        listener = new RecordingEventListener();
+        timerWheel = new TcpTimerWheel();
+        peerServer = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putBoolean("multiplex", true);
+        client = new TcpSocketClient(listener, timerWheel, 1, null);
+        client.connect(null, "127.0.0.1", peerServer.getLocalPort(), options, null, null);
+        peer = peerServer.accept();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.destroy();
+        peer.close();
+        peerServer.close();
+        timerWheel.stop();
+    }
+
+    @Test
+    public void resolvesConcurrentRequestsOutOfOrder() throws Exception {
+        final int count = 100;
+        final Map<Integer, byte[]> responses = new ConcurrentHashMap<>();
+        final CountDownLatch done = new CountDownLatch(count);
+        TcpMultiplexer multiplexer = client.getMultiplexer();
+        assertNotNull(multiplexer);
+        for (int i = 0; i < count; i++) {
+            final int request = i;
+            multiplexer.request(ByteBuffer.allocate(4).putInt(i).array(), 0, new TcpMultiplexer.ResponseCallback() {
+                @Override
+                public void onResponse(byte[] payload) {
+                    responses.put(request, payload);
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(String code, String message) {
+                    throw new AssertionError(code + ": " + message);
+                }
+            });
+        }
+        DataInputStream in = new DataInputStream(peer.getInputStream());
+        int[] correlationIds = new int[count];
+        byte[][] payloads = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            assertEquals(4, in.readInt());
+            assertEquals(TcpMultiplexer.TYPE_REQUEST, in.readByte());
+            correlationIds[i] = in.readInt();
+            payloads[i] = new byte[4];
+            in.readFully(payloads[i]);
+        }
+        // Answer the last request first, echoing the payload back
+        OutputStream out = peer.getOutputStream();
+        for (int i = count - 1; i >= 0; i--) {
+            out.write(TcpMultiplexer.encode(TcpMultiplexer.TYPE_RESPONSE, correlationIds[i], payloads[i]));
+        }
+        out.flush();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, ByteBuffer.wrap(responses.get(i)).getInt());
+        }
+        assertEquals(0, multiplexer.pendingCount());
+        assertEquals(0, listener.dataEvents.get());
+    }
+
+    @Test
+    public void timesOutAndDropsLateResponses() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        final String[] failure = new String[1];
+        TcpMultiplexer multiplexer = client.getMultiplexer();
+        multiplexer.request(new byte[]{1}, 100, new TcpMultiplexer.ResponseCallback() {
+            @Override
+            public void onResponse(byte[] payload) {
+                throw new AssertionError("Late response delivered");
+            }
+
+            @Override
+            public void onFailure(String code, String message) {
+                failure[0] = code;
+                failed.countDown();
+            }
+        });
+        DataInputStream in = new DataInputStream(peer.getInputStream());
+        in.readInt();
+        in.readByte();
+        int correlationId = in.readInt();
+        in.readByte();
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertEquals("ETIMEDOUT", failure[0]);
+        peer.getOutputStream().write(TcpMultiplexer.encode(TcpMultiplexer.TYPE_RESPONSE, correlationId, new byte[]{2}));
+        Thread.sleep(100);
+        assertEquals(0, multiplexer.pendingCount());
+        assertEquals(0, listener.errors.get());
+    }
+
+    @Test
+    public void deliversPeerRequestsAndFailsPendingOnClose() throws Exception {
+        byte[] frame = TcpMultiplexer.encode(TcpMultiplexer.TYPE_REQUEST, 77, new byte[]{4, 5, 6});
+        OutputStream out = peer.getOutputStream();
+        // Split the header across two reads
+        out.write(frame, 0, 3);
+        out.flush();
+        Thread.sleep(50);
+        out.write(frame, 3, frame.length - 3);
+        out.flush();
+        assertArrayEquals(new byte[]{4, 5, 6}, listener.requests.poll(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(77), listener.requestIds.poll());
+
+        TcpMultiplexer multiplexer = client.getMultiplexer();
+        multiplexer.respond(77, new byte[]{7}, false, 3);
+        assertEquals(Integer.valueOf(3), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        DataInputStream in = new DataInputStream(peer.getInputStream());
+        assertEquals(1, in.readInt());
+        assertEquals(TcpMultiplexer.TYPE_RESPONSE, in.readByte());
+        assertEquals(77, in.readInt());
+        assertEquals(7, in.readByte());
+
+        final CountDownLatch failed = new CountDownLatch(1);
+        final String[] failure = new String[1];
+        multiplexer.request(new byte[0], 0, new TcpMultiplexer.ResponseCallback() {
+            @Override
+            public void onResponse(byte[] payload) {
+            }
+
+            @Override
+            public void onFailure(String code, String message) {
+                failure[0] = code;
+                failed.countDown();
+            }
+        });
+        client.destroy();
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertEquals("ECLOSED", failure[0]);
+    }
+
+    @Test
+    public void rejectsRawWrites() throws Exception {
+        client.write(1, new byte[]{1, 2, 3});
+        client.writev(2, new byte[][]{new byte[0], new byte[]{4}});
+        assertEquals(2, listener.writtenEvents.get());
+        assertTrue(listener.writtenMessages.isEmpty());
+        assertEquals(2, listener.errors.get());
+
+        // Only the frame reaches the peer, its decoder stays in sync
+        client.getMultiplexer().respond(5, new byte[]{9}, false, 3);
+        assertEquals(Integer.valueOf(3), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        DataInputStream in = new DataInputStream(peer.getInputStream());
+        assertEquals(1, in.readInt());
+        assertEquals(TcpMultiplexer.TYPE_RESPONSE, in.readByte());
+        assertEquals(5, in.readInt());
+        assertEquals(9, in.readByte());
+    }
+}
@@ -0,0 +1,157 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TcpPipelineTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private RecordingEventListener listener;
+    private TcpTimerWheel timerWheel;
+    private ServerSocket peerServer;
+    private Socket peer;
+    private TcpSocketClient client;
+    private final BlockingQueue<String> lifecycle = new LinkedBlockingQueue<>();
+
+    /**
+     * Upper-cases inbound data and prefixes every outbound write with its handler name.
+     */
+    private final class TestHandler extends TcpHandler {
+        private final String name;
+
+        TestHandler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onRead(Context ctx, byte[] data, int offset, int length) throws IOException {
+            final String text = new String(data, offset, length, UTF_8);
+            if (text.contains("fail")) throw new IllegalStateException("Bad input");
+            final byte[] upper = text.toUpperCase().getBytes(UTF_8);
+            ctx.fireRead(upper, 0, upper.length);
+        }
+
+        @Override
+        public void onWrite(Context ctx, byte[] data) throws IOException {
+            ctx.write((name + new String(data, UTF_8)).getBytes(UTF_8));
+        }
+
+        @Override
+        public void onInputClosed(Context ctx) {
+            lifecycle.add(name + " input " + ctx.getSocketId());
+        }
+
+        @Override
+        public void onOutputClosed(Context ctx) {
+            lifecycle.add(name + " output " + ctx.getSocketId());
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        new TcpSocketPackage()
+                .addHandler("a", new TcpHandler.Factory() {
+                    @Override
+                    public TcpHandler create(int socketId) {
+                        return new TestHandler("a");
+                    }
+                })
+                .addHandler("b", new TcpHandler.Factory() {
+                    @Override
+                    public TcpHandler create(int socketId) {
+                        return new TestHandler("b");
+                    }
+                });
+        listener = new RecordingEventListener();
+        timerWheel = new TcpTimerWheel();
+        peerServer = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        JavaOnlyArray handlers = new JavaOnlyArray();
+        handlers.pushString("a");
+        handlers.pushString("b");
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putArray("handlers", handlers);
+        client = new TcpSocketClient(listener, timerWheel, 1, null);
+        client.connect(null, "127.0.0.1", peerServer.getLocalPort(), options, null, null);
+        peer = peerServer.accept();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.destroy();
+        peer.close();
+        peerServer.close();
+        timerWheel.stop();
+    }
+
+    @Test
+    public void passesDataThroughTheHandlersInOrder() throws Exception {
+        peer.getOutputStream().write("hello".getBytes(UTF_8));
+        assertArrayEquals("HELLO".getBytes(UTF_8), listener.received.poll(5, TimeUnit.SECONDS));
+
+        client.write(7, "x".getBytes(UTF_8));
+        assertEquals(Integer.valueOf(7), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        // The last handler writes first, the first one is the closest to the wire
+        byte[] written = new byte[3];
+        new DataInputStream(peer.getInputStream()).readFully(written);
+        assertArrayEquals("abx".getBytes(UTF_8), written);
+
+        client.destroy();
+        // The receiver and write threads close their side independently
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String event = lifecycle.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            events.add(event);
+        }
+        assertTrue(events.containsAll(Arrays.asList("a input 1", "b input 1")));
+        assertTrue(events.indexOf("b output 1") < events.indexOf("a output 1"));
+    }
+
+    @Test
+    public void reportsHandlerFailuresAsErrors() throws Exception {
+        peer.getOutputStream().write("fail".getBytes(UTF_8));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.errors.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, listener.errors.get());
+        assertEquals(0, listener.dataEvents.get());
+    }
+
+    @Test
+    public void rejectsUnknownHandlers() {
+        JavaOnlyArray handlers = new JavaOnlyArray();
+        handlers.pushString("missing");
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putArray("handlers", handlers);
+        try {
+            TcpSocketOptions.fromReadableMap(options);
+            fail("Accepted an unknown handler");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("missing"));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TcpReceiveSizerTest {
+    @Test
+    public void growsOnFullReadsUpToTheMaximum() {
+        TcpReceiveSizer sizer = new TcpReceiveSizer(64, 2048, 65536);
+        assertEquals(2048, sizer.nextSize());
+        sizer.record(2048);
+        assertEquals(32768, sizer.nextSize());
+        sizer.record(32768);
+        assertEquals(65536, sizer.nextSize());
+        sizer.record(65536);
+        assertEquals(65536, sizer.nextSize());
+    }
+
+    @Test
+    public void shrinksAfterTwoSparseReadsDownToTheMinimum() {
+        TcpReceiveSizer sizer = new TcpReceiveSizer(64, 2048, 65536);
+        sizer.record(10);
+        assertEquals(2048, sizer.nextSize());
+        sizer.record(10);
+        assertEquals(1024, sizer.nextSize());
+        // A read between the previous and the current size keeps the size
+        sizer.record(600);
+        sizer.record(600);
+        assertEquals(1024, sizer.nextSize());
+        for (int i = 0; i < 100; i++) {
+            sizer.record(1);
+        }
+        assertEquals(64, sizer.nextSize());
+    }
+
+    @Test
+    public void keepsSizesOutsideTheTableAsBounds() {
+        TcpReceiveSizer fixed = new TcpReceiveSizer(1000, 2048, 1000);
+        fixed.record(1000);
+        assertEquals(1000, fixed.nextSize());
+        fixed.record(1);
+        fixed.record(1);
+        assertEquals(1000, fixed.nextSize());
+
+        TcpReceiveSizer bounded = new TcpReceiveSizer(100, 50, 5000);
+        assertEquals(112, bounded.nextSize());
+        for (int i = 0; i < 20; i++) {
+            bounded.record(bounded.nextSize());
+        }
+        assertEquals(5000, bounded.nextSize());
+    }
+}
@@ -0,0 +1,55 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpReconnectPolicyTest {
+    @Test
+    public void doublesTheDelayUpToTheMaximum() {
+        TcpReconnectPolicy policy = new TcpReconnectPolicy(100, 1000, 0, 0);
+        assertEquals(100, policy.getDelay(1));
+        assertEquals(200, policy.getDelay(2));
+        assertEquals(800, policy.getDelay(4));
+        assertEquals(1000, policy.getDelay(5));
+        assertEquals(1000, policy.getDelay(1000));
+    }
+
+    @Test
+    public void shortensTheDelayByTheJitter() {
+        TcpReconnectPolicy policy = new TcpReconnectPolicy(1000, 1000, 0, 0.5);
+        assertEquals(1000, policy.getDelay(1, 0));
+        assertEquals(500, policy.getDelay(1, 1));
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.getDelay(1);
+            assertTrue(delay >= 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void limitsTheAttempts() {
+        TcpReconnectPolicy policy = new TcpReconnectPolicy(100, 1000, 3, 0);
+        assertTrue(policy.allowsAttempt(3));
+        assertFalse(policy.allowsAttempt(4));
+        assertTrue(new TcpReconnectPolicy(100, 1000, 0, 0).allowsAttempt(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void parsesTheReconnectOption() {
+        assertNull(TcpReconnectPolicy.fromReadableMap(new JavaOnlyMap()));
+        JavaOnlyMap reconnect = new JavaOnlyMap();
+        reconnect.putInt("maxDelay", 5000);
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putMap("reconnect", reconnect);
+        TcpReconnectPolicy policy = TcpReconnectPolicy.fromReadableMap(options);
+        assertEquals(TcpReconnectPolicy.DEFAULT_INITIAL_DELAY, policy.initialDelay);
+        assertEquals(5000, policy.maxDelay);
+        assertEquals(TcpReconnectPolicy.DEFAULT_MAX_ATTEMPTS, policy.maxAttempts);
+        assertEquals(TcpReconnectPolicy.DEFAULT_JITTER, policy.jitter, 0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpSocketIdAllocatorTest {
+    @Test
+    public void allocatesIdsInItsRange() {
+        TcpSocketIdAllocator allocator = new TcpSocketIdAllocator(5000, 64);
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 64; i++) {
+            int id = allocator.allocate();
+            assertTrue(allocator.owns(id));
+            assertTrue(ids.add(id));
+        }
+        assertEquals(-1, allocator.allocate());
+        assertEquals(64, allocator.allocatedCount());
+        assertFalse(allocator.owns(4999));
+        assertFalse(allocator.owns(5064));
+
+        allocator.release(5010);
+        assertEquals(5010, allocator.allocate());
+    }
+
+    @Test
+    public void delaysReuseOfReleasedIds() {
+        TcpSocketIdAllocator allocator = new TcpSocketIdAllocator(0, 1024);
+        int first = allocator.allocate();
+        allocator.release(first);
+        // Every other id is handed out before the released one comes back
+        for (int i = 1; i < 1024; i++) {
+            int id = allocator.allocate();
+            assertNotEquals(first, id);
+            allocator.release(id);
+        }
+        assertEquals(first, allocator.allocate());
+    }
+
+    @Test
+    public void ignoresForeignAndDoubleReleases() {
+        TcpSocketIdAllocator allocator = new TcpSocketIdAllocator(1000, 64);
+        int id = allocator.allocate();
+        allocator.release(7);
+        allocator.release(id);
+        allocator.release(id);
+        assertEquals(0, allocator.allocatedCount());
+    }
+
+    @Test
+    public void concurrentChurnNeverHandsOutALiveId() throws InterruptedException {
+        final TcpSocketIdAllocator allocator = new TcpSocketIdAllocator(TcpSocketIdAllocator.DEFAULT_FIRST_ID, 4096);
+        final Set<Integer> live = ConcurrentHashMap.newKeySet();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int[] held = new int[256];
+                    for (int round = 0; round < 200; round++) {
+                        for (int i = 0; i < held.length; i++) {
+                            held[i] = allocator.allocate();
+                            if (held[i] < 0 || !live.add(held[i])) {
+                                failure.set(new AssertionError("Duplicated or missing id " + held[i]));
+                                return;
+                            }
+                        }
+                        for (int id : held) {
+                            live.remove(id);
+                            allocator.release(id);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertNull(failure.get());
+        assertEquals(0, allocator.allocatedCount());
+    }
+}
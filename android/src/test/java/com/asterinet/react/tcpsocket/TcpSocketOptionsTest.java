@@ -0,0 +1,121 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TcpSocketOptionsTest {
+    private static final int TRANSFER_SIZE = 64 * 1024 * 1024;
+
+    @Test
+    public void appliesOptionsToClientSocket() throws IOException {
+        TcpSocketOptions options = new TcpSocketOptions();
+        options.receiveBufferSize = 128 * 1024;
+        options.sendBufferSize = 64 * 1024;
+        options.linger = 3;
+        options.trafficClass = 0x10;
+        options.readBufferSize = 4096;
+        try (Socket socket = new Socket()) {
+            options.applyTo(socket);
+            // The kernel may round the buffer sizes up (Linux doubles them)
+            assertTrue(socket.getReceiveBufferSize() >= 128 * 1024);
+            assertTrue(socket.getSendBufferSize() >= 64 * 1024);
+            assertEquals(3, socket.getSoLinger());
+        }
+        assertEquals(4096, options.getReadBufferSize());
+    }
+
+    @Test
+    public void leavesDefaultsUntouched() throws IOException {
+        TcpSocketOptions options = new TcpSocketOptions();
+        try (Socket socket = new Socket()) {
+            int receiveBufferSize = socket.getReceiveBufferSize();
+            options.applyTo(socket);
+            assertEquals(receiveBufferSize, socket.getReceiveBufferSize());
+            assertEquals(-1, socket.getSoLinger());
+        }
+        assertEquals(TcpSocketOptions.DEFAULT_READ_BUFFER_SIZE, options.getReadBufferSize());
+    }
+
+    @Test
+    public void appliesReceiveBufferSizeToServerSocket() throws IOException {
+        TcpSocketOptions options = new TcpSocketOptions();
+        options.receiveBufferSize = 256 * 1024;
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            options.applyTo(serverSocket);
+            // Set before binding so that accepted sockets inherit it
+            assertTrue(serverSocket.getReceiveBufferSize() >= 256 * 1024);
+        }
+    }
+
+    /**
+     * Compares the loopback throughput of an accepted socket with small and large buffers. It
+     * depends on the machine, so it only runs with `-Dtcpsocket.load.throughput=true` and reports
+     * the ratio instead of asserting on it.
+     */
+    @Test
+    public void comparesLoopbackThroughputOfBufferSizes() throws Exception {
+        assumeTrue(Boolean.getBoolean("tcpsocket.load.throughput"));
+        double small = measureThroughput(4096, 1024);
+        double large = measureThroughput(1024 * 1024, 65536);
+        System.out.printf("Loopback throughput: small buffers %.1f MB/s, large buffers %.1f MB/s, ratio %.2f%n",
+                small, large, large / small);
+    }
+
+    /**
+     * @return MB/s received by an accepted socket from a plain socket
+     */
+    private static double measureThroughput(int socketBufferSize, int readBufferSize) throws Exception {
+        final AtomicLong receivedBytes = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1);
+        RecordingEventListener listener = new RecordingEventListener() {
+            @Override
+            public void onData(int id, byte[] data) {
+                if (receivedBytes.addAndGet(data.length) >= TRANSFER_SIZE) done.countDown();
+            }
+        };
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putInt("port", 0);
+        options.putString("host", "127.0.0.1");
+        options.putInt("receiveBufferSize", socketBufferSize);
+        options.putInt("sendBufferSize", socketBufferSize);
+        options.putInt("readBufferSize", readBufferSize);
+        TcpTimerWheel timerWheel = new TcpTimerWheel();
+        TcpSocketRegistry socketRegistry = new TcpSocketRegistry();
+        TcpSocketServer server = new TcpSocketServer(null, socketRegistry, new TcpSocketIdAllocator(), listener, timerWheel, 1, options);
+        try (Socket socket = new Socket()) {
+            socket.setSendBufferSize(socketBufferSize);
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getServerSocket().getLocalPort()));
+            OutputStream out = socket.getOutputStream();
+            byte[] chunk = new byte[readBufferSize];
+            long start = System.nanoTime();
+            for (int sent = 0; sent < TRANSFER_SIZE; sent += chunk.length) {
+                out.write(chunk, 0, Math.min(chunk.length, TRANSFER_SIZE - sent));
+            }
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+            long elapsed = System.nanoTime() - start;
+            assertEquals(TRANSFER_SIZE, receivedBytes.get());
+            return (TRANSFER_SIZE / (1024.0 * 1024.0)) / (elapsed / 1e9);
+        } finally {
+            for (TcpSocketClient client : socketRegistry.clients()) {
+                client.destroy();
+            }
+            server.close();
+            timerWheel.stop();
+        }
+    }
+}
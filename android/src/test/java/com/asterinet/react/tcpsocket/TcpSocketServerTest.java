@@ -0,0 +1,799 @@
+package com.asterinet.react.tcpsocket;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TcpSocketServerTest {
+    private static final int SERVER_ID = 1;
+
+    private TcpSocketRegistry socketRegistry;
+    private RecordingEventListener listener;
+    private TcpTimerWheel timerWheel;
+    private TcpSocketServer server;
+
+    @Before
+    public void setUp() {
+        socketRegistry = new TcpSocketRegistry();
+        listener = new RecordingEventListener();
+        timerWheel = new TcpTimerWheel();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) server.close();
+        timerWheel.stop();
+    }
+
+    @Test
+    public void acceptsThousandsOfConnectionsWithRecycledIds() throws Exception {
+        // A small id range forces the allocator to wrap around several times
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator(TcpSocketIdAllocator.DEFAULT_FIRST_ID, 1024);
+        server = listen(clientIds);
+        final int connections = 5000;
+        final int concurrent = 16;
+        Set<Integer> live = new HashSet<>();
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < connections; i += concurrent) {
+            for (int j = 0; j < concurrent; j++) {
+                sockets.add(connectToServer());
+            }
+            List<Integer> accepted = new ArrayList<>();
+            for (int j = 0; j < concurrent; j++) {
+                Integer clientId = listener.connections.poll(5, TimeUnit.SECONDS);
+                assertNotNull(clientId);
+                assertTrue(clientIds.owns(clientId));
+                assertTrue("Id " + clientId + " handed out twice", live.add(clientId));
+                assertNotNull(socketRegistry.getClient(clientId));
+                accepted.add(clientId);
+            }
+            for (Socket socket : sockets) socket.close();
+            sockets.clear();
+            for (int clientId : accepted) {
+                end(clientIds, clientId);
+                live.remove(clientId);
+            }
+        }
+        assertEquals(0, socketRegistry.clientCount());
+        assertEquals(0, clientIds.allocatedCount());
+        assertEquals(0, listener.errors.get());
+    }
+
+    @Test
+    public void releasesTheIdOfADestroyedClientOnce() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        Socket socket = connectToServer();
+        final int clientId = listenerConnection();
+        final TcpSocketClient client = socketRegistry.getClient(clientId);
+        assertNotNull(client);
+        // Destroyed without end(), as on shutdown, and twice concurrently
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                client.destroy();
+            }
+        });
+        other.start();
+        client.destroy();
+        other.join();
+        assertFalse(socketRegistry.contains(clientId));
+        assertEquals(0, clientIds.allocatedCount());
+        // The next client gets another id, which a late release must not free
+        Socket next = connectToServer();
+        final int nextId = listenerConnection();
+        client.destroy();
+        assertFalse(socketRegistry.removeClient(client));
+        assertEquals(1, clientIds.allocatedCount());
+        end(clientIds, nextId);
+        assertEquals(0, clientIds.allocatedCount());
+        socket.close();
+        next.close();
+    }
+
+    @Test
+    public void rejectsConnectionsWhenIdsAreExhausted() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator(0, 64);
+        server = listen(clientIds);
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            sockets.add(connectToServer());
+            assertNotNull(listener.connections.poll(5, TimeUnit.SECONDS));
+        }
+        Socket rejected = connectToServer();
+        rejected.setSoTimeout(5000);
+        assertTrue(isReset(rejected));
+        assertNull(listener.connections.poll(100, TimeUnit.MILLISECONDS));
+        rejected.close();
+
+        end(clientIds, 10);
+        sockets.add(connectToServer());
+        assertEquals(Integer.valueOf(10), listener.connections.poll(5, TimeUnit.SECONDS));
+        for (Socket socket : sockets) socket.close();
+    }
+
+    @Test
+    public void enforcesMaxConnectionsAndReleasesSlots() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        options.putInt("maxConnections", 8);
+        server = listen(clientIds, options);
+        List<Socket> sockets = new ArrayList<>();
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            sockets.add(connectToServer());
+            accepted.add(listener.connections.poll(5, TimeUnit.SECONDS));
+        }
+        // A flood over the limit is reset without creating clients
+        for (int i = 0; i < 100; i++) {
+            Socket rejected = connectToServer();
+            rejected.setSoTimeout(5000);
+            assertTrue(isReset(rejected));
+            rejected.close();
+        }
+        assertNull(listener.connections.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(8, server.getConnectionCount());
+        assertEquals(8, socketRegistry.clientCount());
+        assertEquals(100, server.getRejectedMaxConnectionsCount());
+
+        end(clientIds, accepted.get(0));
+        assertEquals(7, server.getConnectionCount());
+        sockets.add(connectToServer());
+        assertNotNull(listener.connections.poll(5, TimeUnit.SECONDS));
+        assertEquals(9, server.getAcceptedCount());
+        for (Socket socket : sockets) socket.close();
+    }
+
+    @Test
+    public void enforcesMaxConnectionsPerIp() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        options.putInt("maxConnectionsPerIp", 2);
+        server = listen(clientIds, options);
+        Socket first = connectToServer();
+        Socket second = connectToServer();
+        int firstId = listener.connections.poll(5, TimeUnit.SECONDS);
+        assertNotNull(listener.connections.poll(5, TimeUnit.SECONDS));
+        Socket rejected = connectToServer();
+        rejected.setSoTimeout(5000);
+        assertTrue(isReset(rejected));
+        assertEquals(1, server.getRejectedPerIpCount());
+
+        end(clientIds, firstId);
+        Socket third = connectToServer();
+        assertNotNull(listener.connections.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRejectedPerIpCount());
+        first.close();
+        second.close();
+        third.close();
+        rejected.close();
+    }
+
+    @Test
+    public void throttlesAcceptRate() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        options.putDouble("acceptRate", 20);
+        options.putDouble("acceptBurst", 5);
+        server = listen(clientIds, options);
+        List<Socket> sockets = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 15; i++) sockets.add(connectToServer());
+        for (int i = 0; i < 15; i++) assertNotNull(listener.connections.poll(5, TimeUnit.SECONDS));
+        // 5 connections of burst, then 10 more at 20 per second
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Accepted 15 connections in " + elapsedMillis + "ms", elapsedMillis >= 400);
+        assertTrue(server.getThrottledAcceptCount() >= 9);
+        for (Socket socket : sockets) socket.close();
+    }
+
+    @Test
+    public void servesSeveralListenersFromOneServer() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        JavaOnlyArray extraListeners = new JavaOnlyArray();
+        JavaOnlyMap second = new JavaOnlyMap();
+        second.putInt("port", 0);
+        second.putString("host", "127.0.0.1");
+        extraListeners.pushMap(second);
+        JavaOnlyMap third = new JavaOnlyMap();
+        third.putInt("port", 0);
+        third.putString("host", "::1");
+        extraListeners.pushMap(third);
+        options.putArray("listeners", extraListeners);
+        server = listen(clientIds, options);
+
+        List<TcpSocketServer.Listener> listeners = server.getListeners();
+        assertEquals(3, listeners.size());
+        List<Socket> sockets = new ArrayList<>();
+        for (TcpSocketServer.Listener listener : listeners) {
+            ServerSocket serverSocket = listener.getServerSocket();
+            assertFalse(listener.isTLS());
+            sockets.add(new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort()));
+            int clientId = listenerConnection();
+            assertEquals(Integer.valueOf(listener.index), this.listener.connectionListeners.get(clientId));
+        }
+        assertEquals(3, server.getConnectionCount());
+        for (Socket socket : sockets) socket.close();
+    }
+
+    @Test
+    public void writesWhileTheReceiverIsBlockedInARead() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        Socket socket = connectToServer();
+        socket.setSoTimeout(5000);
+        int clientId = listenerConnection();
+        // Give the receiver thread time to block reading the silent peer
+        Thread.sleep(100);
+        socketRegistry.getClient(clientId).write(1, "hello".getBytes("UTF-8"));
+        byte[] greeting = new byte[5];
+        int read = 0;
+        while (read < greeting.length) {
+            int count = socket.getInputStream().read(greeting, read, greeting.length - read);
+            assertTrue(count > 0);
+            read += count;
+        }
+        assertEquals("hello", new String(greeting, "UTF-8"));
+        socket.close();
+    }
+
+    @Test
+    public void writesWhileTheReceiverOfATlsSocketIsBlockedInARead() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = new TcpSocketServer(socketRegistry, clientIds, listener, timerWheel, SERVER_ID, listenOptions(), serverSSLContext());
+        assertTrue(server.getListeners().get(0).isTLS());
+        SSLSocket socket = (SSLSocket) trustingSSLContext().getSocketFactory().createSocket(
+                InetAddress.getLoopbackAddress(), server.getServerSocket().getLocalPort());
+        socket.setSoTimeout(5000);
+        socket.startHandshake();
+        int clientId = listenerConnection();
+        // Give the receiver thread time to block reading the silent peer
+        Thread.sleep(100);
+        socketRegistry.getClient(clientId).write(1, "hello".getBytes("UTF-8"));
+        byte[] greeting = new byte[5];
+        new DataInputStream(socket.getInputStream()).readFully(greeting);
+        assertEquals("hello", new String(greeting, "UTF-8"));
+        assertEquals(Integer.valueOf(1), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        socket.getOutputStream().write("ping".getBytes("UTF-8"));
+        assertArrayEquals("ping".getBytes("UTF-8"), receive(4));
+        socket.close();
+    }
+
+    @Test
+    public void boundsTheHandshakesOfSilentTlsClients() throws Exception {
+        JavaOnlyMap options = listenOptions();
+        options.putInt("handshakeTimeout", 2000);
+        server = new TcpSocketServer(socketRegistry, new TcpSocketIdAllocator(), listener, timerWheel, SERVER_ID, options, serverSSLContext());
+        // Each silent client holds a handshake slot until its handshake times out
+        List<Socket> silent = new ArrayList<>();
+        for (int i = 0; i < TcpSocketServer.MAX_PENDING_HANDSHAKES; i++) {
+            silent.add(connectToServer());
+        }
+        // Connections over the backlog are only accepted once the client retransmits
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getAcceptedCount() < silent.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(silent.size(), server.getAcceptedCount());
+        long start = System.nanoTime();
+        SSLSocket socket = (SSLSocket) trustingSSLContext().getSocketFactory().createSocket(
+                InetAddress.getLoopbackAddress(), server.getServerSocket().getLocalPort());
+        socket.setSoTimeout(5000);
+        socket.startHandshake();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(500));
+        listenerConnection();
+        for (Socket silentSocket : silent) {
+            silentSocket.setSoTimeout(5000);
+            // Closed by the server once the handshake timed out, after a TLS alert
+            InputStream in = silentSocket.getInputStream();
+            int read;
+            do {
+                read = in.read();
+            } while (read != -1);
+            silentSocket.close();
+        }
+        assertEquals(1, server.getConnectionCount());
+        socket.close();
+    }
+
+    @Test
+    public void gathersVectoredWritesIntoOneWrittenEvent() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        Socket socket = connectToServer();
+        socket.setSoTimeout(5000);
+        int clientId = listenerConnection();
+        byte[][] buffers = {"head".getBytes("UTF-8"), new byte[0], "body".getBytes("UTF-8")};
+        socketRegistry.getClient(clientId).writev(4, buffers);
+        assertEquals(Integer.valueOf(4), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        byte[] message = new byte[8];
+        new DataInputStream(socket.getInputStream()).readFully(message);
+        assertEquals("headbody", new String(message, "UTF-8"));
+        assertEquals(1, listener.writtenEvents.get());
+        socket.close();
+    }
+
+    @Test
+    public void holdsCorkedWritesUntilTheLastUncork() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        Socket socket = connectToServer();
+        int clientId = listenerConnection();
+        TcpSocketClient client = socketRegistry.getClient(clientId);
+        client.cork();
+        client.cork();
+        client.write(1, "ab".getBytes("UTF-8"));
+        client.write(2, "cd".getBytes("UTF-8"));
+        client.uncork(true);
+        assertNull(listener.writtenMessages.poll(100, TimeUnit.MILLISECONDS));
+        socket.setSoTimeout(50);
+        try {
+            socket.getInputStream().read();
+            fail("Corked data was written");
+        } catch (SocketTimeoutException e) {
+            // Nothing was sent
+        }
+        client.uncork(true);
+        assertEquals(Integer.valueOf(1), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(2), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        socket.setSoTimeout(5000);
+        byte[] data = new byte[4];
+        new DataInputStream(socket.getInputStream()).readFully(data);
+        assertEquals("abcd", new String(data, "UTF-8"));
+        assertFalse(client.getSocket().getTcpNoDelay());
+        socket.close();
+    }
+
+    @Test
+    public void acknowledgesCorkedWritesCumulatively() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        options.putString("writeAcks", "cumulative");
+        server = listen(clientIds, options);
+        Socket socket = connectToServer();
+        socket.setSoTimeout(5000);
+        TcpSocketClient client = socketRegistry.getClient(listenerConnection());
+        client.cork();
+        for (int i = 1; i <= 5; i++) {
+            client.write(i, new byte[]{(byte) i});
+        }
+        client.uncork(false);
+        assertEquals(Integer.valueOf(5), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        byte[] data = new byte[5];
+        new DataInputStream(socket.getInputStream()).readFully(data);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, data);
+        assertEquals(1, listener.writtenEvents.get());
+        socket.close();
+    }
+
+    @Test
+    public void broadcastsOneBufferToTheSelectedClients() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        Socket[] sockets = new Socket[3];
+        int[] ids = new int[3];
+        for (int i = 0; i < sockets.length; i++) {
+            sockets[i] = connectToServer();
+            sockets[i].setSoTimeout(5000);
+            ids[i] = listenerConnection();
+        }
+        final BlockingQueue<int[]> results = new LinkedBlockingQueue<>();
+        TcpSocketServer.BroadcastCallback callback = new TcpSocketServer.BroadcastCallback() {
+            @Override
+            public void onComplete(int written, int failed) {
+                results.add(new int[]{written, failed});
+            }
+        };
+        byte[] update = "tick".getBytes("UTF-8");
+        assertEquals(2, server.broadcast(update, null, new int[]{ids[1]}, callback));
+        assertArrayEquals(new int[]{2, 0}, results.poll(5, TimeUnit.SECONDS));
+        byte[] data = new byte[4];
+        new DataInputStream(sockets[0].getInputStream()).readFully(data);
+        assertArrayEquals(update, data);
+        new DataInputStream(sockets[2].getInputStream()).readFully(data);
+        assertArrayEquals(update, data);
+        // Only the broadcast callback is told, the clients emit no `written` event
+        assertEquals(0, listener.writtenEvents.get());
+
+        assertEquals(1, server.broadcast(update, new int[]{ids[1], 9999}, null, callback));
+        assertArrayEquals(new int[]{1, 0}, results.poll(5, TimeUnit.SECONDS));
+        new DataInputStream(sockets[1].getInputStream()).readFully(data);
+        assertArrayEquals(update, data);
+
+        // A client included twice gets the data once
+        assertEquals(1, server.broadcast(update, new int[]{ids[2], ids[2]}, null, callback));
+        assertArrayEquals(new int[]{1, 0}, results.poll(5, TimeUnit.SECONDS));
+        new DataInputStream(sockets[2].getInputStream()).readFully(data);
+        assertArrayEquals(update, data);
+        server.broadcast("done".getBytes("UTF-8"), new int[]{ids[2]}, null, callback);
+        assertArrayEquals(new int[]{1, 0}, results.poll(5, TimeUnit.SECONDS));
+        new DataInputStream(sockets[2].getInputStream()).readFully(data);
+        assertArrayEquals("done".getBytes("UTF-8"), data);
+        for (Socket socket : sockets) socket.close();
+    }
+
+    @Test
+    public void rejectsBroadcastsToMultiplexedClients() throws Exception {
+        JavaOnlyMap options = listenOptions();
+        options.putBoolean("multiplex", true);
+        server = listen(new TcpSocketIdAllocator(), options);
+        Socket socket = connectToServer();
+        listenerConnection();
+        try {
+            server.broadcast("tick".getBytes("UTF-8"), null, null, new TcpSocketServer.BroadcastCallback() {
+                @Override
+                public void onComplete(int written, int failed) {
+                    fail("Broadcast raw data to a multiplexed client");
+                }
+            });
+            fail("Broadcast raw data to a multiplexed client");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        // Nothing reached the peer
+        socket.setSoTimeout(200);
+        try {
+            socket.getInputStream().read();
+            fail("Broadcast raw data to a multiplexed client");
+        } catch (SocketTimeoutException e) {
+            // Expected
+        }
+        socket.close();
+    }
+
+    @Test
+    public void sendsHighPriorityWritesBetweenTheChunksOfABulkWrite() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        Socket socket = connectToServer();
+        socket.setSoTimeout(5000);
+        TcpSocketClient client = socketRegistry.getClient(listenerConnection());
+        byte[] bulk = new byte[4 << 20];
+        Arrays.fill(bulk, (byte) 'b');
+        client.write(1, bulk, TcpWriteQueue.PRIORITY_LOW);
+        // The peer does not read yet, the bulk write blocks once the socket buffers are full
+        Thread.sleep(100);
+        client.write(2, "PING".getBytes("UTF-8"), TcpWriteQueue.PRIORITY_HIGH);
+        byte[] received = new byte[bulk.length + 4];
+        new DataInputStream(socket.getInputStream()).readFully(received);
+        assertEquals(Integer.valueOf(2), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        int ping = new String(received, "UTF-8").indexOf("PING");
+        assertTrue(ping > 0 && ping < bulk.length);
+        assertEquals(0, ping % TcpSocketClient.WRITE_CHUNK_SIZE);
+        socket.close();
+    }
+
+    @Test
+    public void timesTheConnectPhases() throws Exception {
+        server = listen(new TcpSocketIdAllocator(), listenOptions());
+        TcpLatencyHistogram connectHistogram = TcpConnectTimings.getHistogram(TcpConnectTimings.CONNECT);
+        long connects = connectHistogram.getCount();
+        long handshakes = TcpConnectTimings.getHistogram(TcpConnectTimings.HANDSHAKE).getCount();
+        TcpSocketClient client = new TcpSocketClient(listener, timerWheel, 1000, null);
+        TcpConnectTimings timings = new TcpConnectTimings(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+        timings.end(TcpConnectTimings.QUEUED, timings.getStartNanos());
+        client.connect(null, "127.0.0.1", server.getServerSocket().getLocalPort(), new JavaOnlyMap(), null, null, timings);
+        assertTrue(client.getConnectTimings() == timings);
+        assertTrue(timings.getNanos(TcpConnectTimings.QUEUED) >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(timings.getNanos(TcpConnectTimings.CONNECT) > 0);
+        assertEquals(0, timings.getNanos(TcpConnectTimings.HANDSHAKE));
+        assertTrue(timings.getNanos(TcpConnectTimings.TOTAL) >= timings.getNanos(TcpConnectTimings.QUEUED)
+                + timings.getNanos(TcpConnectTimings.DNS) + timings.getNanos(TcpConnectTimings.CONNECT));
+        assertEquals(connects + 1, connectHistogram.getCount());
+        // Plain sockets skip the handshake histogram
+        assertEquals(handshakes, TcpConnectTimings.getHistogram(TcpConnectTimings.HANDSHAKE).getCount());
+        listenerConnection();
+        client.destroy();
+    }
+
+    @Test
+    public void tracesTheAcceptsAndTheWrites() throws Exception {
+        TcpTraceBuffer trace = new TcpTraceBuffer(TcpTraceBuffer.DEFAULT_CAPACITY);
+        TcpTracer.set(trace);
+        try {
+            // The tracer is global, the spans of other sockets are told apart by id
+            final int serverId = 77;
+            server = new TcpSocketServer(null, socketRegistry, new TcpSocketIdAllocator(), listener, timerWheel, serverId, listenOptions());
+            Socket socket = connectToServer();
+            TcpSocketClient client = socketRegistry.getClient(listenerConnection());
+            client.write(7, "PING".getBytes("UTF-8"));
+            assertEquals(Integer.valueOf(7), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+            // The write span ends right after its acknowledgement
+            int accepts = 0;
+            int writes = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (writes == 0 && System.nanoTime() < deadline) {
+                for (TcpTraceBuffer.Span span : trace.drain()) {
+                    if (span.span == TcpTracer.ACCEPT && span.id == serverId) accepts++;
+                    if (span.span == TcpTracer.WRITE_TO_ACK && span.id == client.getId()) writes++;
+                }
+                Thread.sleep(10);
+            }
+            assertEquals(1, accepts);
+            // Client ids are not unique across the concurrent tests
+            assertTrue(writes >= 1);
+            socket.close();
+        } finally {
+            TcpTracer.set(TcpTracer.NONE);
+        }
+    }
+
+    @Test
+    public void transfersLargePayloadsWithSmallReadBuffers() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        options.putInt("readBufferSize", 4096);
+        server = listen(clientIds, options);
+        JavaOnlyMap clientOptions = new JavaOnlyMap();
+        clientOptions.putInt("readBufferSize", 1000);
+        TcpSocketClient client = new TcpSocketClient(listener, timerWheel, 1000, null);
+        client.connect(null, "127.0.0.1", server.getServerSocket().getLocalPort(), clientOptions, null, null);
+        TcpSocketClient accepted = socketRegistry.getClient(listenerConnection());
+        byte[] payload = new byte[1 << 20];
+        new Random(42).nextBytes(payload);
+
+        client.writev(1, new byte[][]{Arrays.copyOf(payload, 10), Arrays.copyOfRange(payload, 10, payload.length)});
+        assertArrayEquals(payload, receive(payload.length));
+        accepted.write(2, payload);
+        assertArrayEquals(payload, receive(payload.length));
+        // Buffers smaller and larger than the staging buffer of the channel
+        accepted.writev(3, new byte[][]{Arrays.copyOf(payload, 10), new byte[0],
+                Arrays.copyOfRange(payload, 10, TcpSocketClient.WRITE_STAGING_SIZE + 20),
+                Arrays.copyOfRange(payload, TcpSocketClient.WRITE_STAGING_SIZE + 20, payload.length)});
+        assertArrayEquals(payload, receive(payload.length));
+        client.destroy();
+    }
+
+    @Test
+    public void shapesTheReadsAndWritesOfAcceptedSockets() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        options.putInt("writeBytesPerSecond", 100000);
+        server = listen(clientIds, options);
+        Socket socket = connectToServer();
+        socket.setSoTimeout(5000);
+        TcpSocketClient client = socketRegistry.getClient(listenerConnection());
+        byte[] payload = new byte[65000];
+        // 40000 bytes over the burst of 25000
+        long start = System.nanoTime();
+        client.write(1, payload);
+        new DataInputStream(socket.getInputStream()).readFully(new byte[payload.length]);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(350));
+        assertTrue(client.getWriteThrottledNanos() >= TimeUnit.MILLISECONDS.toNanos(350));
+
+        client.setBandwidth(100000, 0);
+        start = System.nanoTime();
+        socket.getOutputStream().write(payload);
+        receive(payload.length);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+        assertTrue(client.getReadThrottledNanos() > 0);
+        socket.close();
+    }
+
+    @Test
+    public void spillsQueuedWritesOverTheThresholdAndSendsThemInOrder() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        JavaOnlyMap options = listenOptions();
+        options.putInt("spillThreshold", 65536);
+        server = listen(clientIds, options);
+        Socket socket = connectToServer();
+        socket.setSoTimeout(5000);
+        TcpSocketClient client = socketRegistry.getClient(listenerConnection());
+        int messages = 256;
+        byte[] message = new byte[16384];
+        // The peer does not read yet, the writes pile up
+        for (int i = 0; i < messages; i++) {
+            Arrays.fill(message, (byte) i);
+            client.write(i, message.clone());
+        }
+        // Spilled in the background, write() does not wait on the disk
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.getWriteQueue().getMemoryBytes() > 65536 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(client.getWriteQueue().getMemoryBytes() <= 65536);
+        assertTrue(client.getWriteQueue().getSpilledBytes() > 0);
+
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        for (int i = 0; i < messages; i++) {
+            in.readFully(message);
+            assertEquals((byte) i, message[0]);
+            assertEquals((byte) i, message[message.length - 1]);
+        }
+        for (int i = 0; i < messages; i++) {
+            assertEquals(Integer.valueOf(i), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, client.getWriteQueue().getSpilledBytes());
+        socket.close();
+    }
+
+    @Test
+    public void reconnectsAndSendsTheWritesQueuedMeanwhile() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        TcpSocketClient client = new TcpSocketClient(listener, timerWheel, 1000, null);
+        client.connect(null, "127.0.0.1", server.getServerSocket().getLocalPort(), reconnectOptions(0), null, null);
+        TcpSocketClient accepted = socketRegistry.getClient(listenerConnection());
+        // Reset the connection, a plain close would end it
+        accepted.getSocket().setSoLinger(true, 0);
+        end(clientIds, accepted.getId());
+        assertEquals(Integer.valueOf(1), listener.reconnectAttempts.poll(5, TimeUnit.SECONDS));
+
+        client.write(1, "queued".getBytes("UTF-8"));
+        assertEquals(Integer.valueOf(1000), listener.reconnects.poll(5, TimeUnit.SECONDS));
+        listenerConnection();
+        assertEquals("queued", new String(receive(6), "UTF-8"));
+        assertEquals(Integer.valueOf(1), listener.writtenMessages.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, listener.errors.get());
+        int closes = listener.closes.get();
+        client.destroy();
+        assertEquals(closes + 1, listener.closes.get());
+    }
+
+    @Test
+    public void failsTheQueuedWritesOnceOutOfReconnectAttempts() throws Exception {
+        TcpSocketIdAllocator clientIds = new TcpSocketIdAllocator();
+        server = listen(clientIds);
+        TcpSocketClient client = new TcpSocketClient(listener, timerWheel, 1000, null);
+        client.connect(null, "127.0.0.1", server.getServerSocket().getLocalPort(), reconnectOptions(2), null, null);
+        TcpSocketClient accepted = socketRegistry.getClient(listenerConnection());
+        // Nothing to reconnect to
+        server.close();
+        server = null;
+        accepted.getSocket().setSoLinger(true, 0);
+        end(clientIds, accepted.getId());
+        assertEquals(Integer.valueOf(1), listener.reconnectAttempts.poll(5, TimeUnit.SECONDS));
+        client.write(1, "lost".getBytes("UTF-8"));
+        assertEquals(Integer.valueOf(2), listener.reconnectAttempts.poll(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (listener.writtenEvents.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, listener.writtenEvents.get());
+        assertTrue(listener.writtenMessages.isEmpty());
+        assertTrue(listener.errors.get() >= 1);
+        assertTrue(listener.reconnects.isEmpty());
+        int closes = listener.closes.get();
+        client.destroy();
+        assertEquals(closes + 1, listener.closes.get());
+    }
+
+    private static JavaOnlyMap reconnectOptions(int maxAttempts) {
+        JavaOnlyMap reconnect = new JavaOnlyMap();
+        reconnect.putInt("initialDelay", 50);
+        reconnect.putInt("maxAttempts", maxAttempts);
+        reconnect.putDouble("jitter", 0);
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putMap("reconnect", reconnect);
+        return options;
+    }
+
+    private byte[] receive(int length) throws InterruptedException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        while (received.size() < length) {
+            byte[] data = listener.received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(data);
+            received.write(data, 0, data.length);
+        }
+        return received.toByteArray();
+    }
+
+    private int listenerConnection() throws InterruptedException {
+        Integer clientId = listener.connections.poll(5, TimeUnit.SECONDS);
+        assertNotNull(clientId);
+        return clientId;
+    }
+
+    private static boolean isReset(Socket socket) {
+        try {
+            return socket.getInputStream().read() == -1;
+        } catch (IOException e) {
+            // Connection reset
+            return true;
+        }
+    }
+
+    private static SSLContext serverSSLContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        InputStream in = TcpSocketServerTest.class.getResourceAsStream("/server-keystore.p12");
+        try {
+            keyStore.load(in, new char[0]);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, new char[0]);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private static SSLContext trustingSSLContext() throws Exception {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[]{new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return sslContext;
+    }
+
+    private static JavaOnlyMap listenOptions() {
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putInt("port", 0);
+        options.putString("host", "127.0.0.1");
+        options.putBoolean("reuseAddress", true);
+        return options;
+    }
+
+    private TcpSocketServer listen(TcpSocketIdAllocator clientIds) throws Exception {
+        return listen(clientIds, listenOptions());
+    }
+
+    private TcpSocketServer listen(TcpSocketIdAllocator clientIds, JavaOnlyMap options) throws Exception {
+        return new TcpSocketServer(null, socketRegistry, clientIds, listener, timerWheel, SERVER_ID, options);
+    }
+
+    private Socket connectToServer() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), server.getServerSocket().getLocalPort());
+    }
+
+    /**
+     * Same steps as {@link TcpSocketModule#end(Integer)}.
+     */
+    private void end(TcpSocketIdAllocator clientIds, int clientId) {
+        TcpSocketClient client = socketRegistry.getClient(clientId);
+        assertNotNull(client);
+        client.destroy();
+        socketRegistry.removeClient(client);
+        assertFalse(socketRegistry.contains(clientId));
+    }
+}
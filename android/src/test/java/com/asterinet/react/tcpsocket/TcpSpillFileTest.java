@@ -0,0 +1,73 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TcpSpillFileTest {
+    private static byte[] filled(int length, int value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    @Test
+    public void readsBackTheConcatenatedBuffers() throws IOException {
+        TcpSpillFile spillFile = new TcpSpillFile("spill-test-");
+        TcpSpillFile.Record first = spillFile.append(new byte[][]{{1, 2}, {3}});
+        TcpSpillFile.Record second = spillFile.append(new byte[][]{{4, 5, 6}});
+        assertEquals(6, spillFile.getSpilledBytes());
+        assertArrayEquals(new byte[]{1, 2, 3}, spillFile.take(first));
+        assertArrayEquals(new byte[]{4, 5, 6}, spillFile.take(second));
+        assertEquals(0, spillFile.getSpilledBytes());
+    }
+
+    @Test
+    public void spansSeveralSegments() throws IOException {
+        TcpSpillFile spillFile = new TcpSpillFile("spill-test-");
+        List<TcpSpillFile.Record> records = new ArrayList<>();
+        // Two and a half segments, plus a record larger than a segment
+        for (int i = 0; i < 10; i++) {
+            records.add(spillFile.append(new byte[][]{filled(TcpSpillFile.SEGMENT_SIZE / 4, i)}));
+        }
+        records.add(spillFile.append(new byte[][]{filled(TcpSpillFile.SEGMENT_SIZE + 1, 10)}));
+        for (int i = 0; i < records.size(); i++) {
+            byte[] data = spillFile.take(records.get(i));
+            assertEquals(i, data[0]);
+            assertEquals(i, data[data.length - 1]);
+        }
+        assertEquals(0, spillFile.getSpilledBytes());
+    }
+
+    @Test
+    public void rewindsTheCurrentSegmentOnceDrained() throws IOException {
+        TcpSpillFile spillFile = new TcpSpillFile("spill-test-");
+        byte[] data = filled(TcpSpillFile.SEGMENT_SIZE / 2, 1);
+        // Would need a new segment every other record without the rewinding
+        for (int i = 0; i < 8; i++) {
+            TcpSpillFile.Record record = spillFile.append(new byte[][]{data});
+            spillFile.discard(spillFile.append(new byte[][]{data}));
+            assertArrayEquals(data, spillFile.take(record));
+        }
+        assertEquals(0, spillFile.getSpilledBytes());
+    }
+
+    @Test
+    public void rejectsAppendsOnceClosed() {
+        TcpSpillFile spillFile = new TcpSpillFile("spill-test-");
+        spillFile.close();
+        try {
+            spillFile.append(new byte[][]{{1}});
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
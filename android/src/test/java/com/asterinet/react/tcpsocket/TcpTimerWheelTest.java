@@ -0,0 +1,146 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TcpTimerWheelTest {
+    private TcpTimerWheel timerWheel;
+
+    @Before
+    public void setUp() {
+        timerWheel = new TcpTimerWheel(10, TimeUnit.MILLISECONDS, 64);
+    }
+
+    @After
+    public void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    public void runsTaskAfterDelay() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        TcpTimerWheel.Timeout timeout = new TcpTimerWheel.Timeout(countDown(fired));
+        long start = System.nanoTime();
+        timerWheel.schedule(timeout, 50, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertFalse(timerWheel.isArmed(timeout));
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    public void cancelledTaskDoesNotRun() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        TcpTimerWheel.Timeout timeout = new TcpTimerWheel.Timeout(increment(runs));
+        timerWheel.schedule(timeout, 30, TimeUnit.MILLISECONDS);
+        assertTrue(timerWheel.cancel(timeout));
+        assertFalse(timerWheel.cancel(timeout));
+        Thread.sleep(100);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void rearmingMovesTheDeadline() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        TcpTimerWheel.Timeout timeout = new TcpTimerWheel.Timeout(countDown(fired));
+        timerWheel.schedule(timeout, 20, TimeUnit.MILLISECONDS);
+        timerWheel.schedule(timeout, 300, TimeUnit.MILLISECONDS);
+        assertEquals(1, timerWheel.size());
+        assertFalse(fired.await(150, TimeUnit.MILLISECONDS));
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void handlesDeadlinesBeyondOneRevolution() throws InterruptedException {
+        // 64 buckets of 10ms: a 1s deadline wraps the wheel more than once
+        final CountDownLatch fired = new CountDownLatch(1);
+        TcpTimerWheel.Timeout timeout = new TcpTimerWheel.Timeout(countDown(fired));
+        long start = System.nanoTime();
+        timerWheel.schedule(timeout, 1, TimeUnit.SECONDS);
+        assertTrue(fired.await(3, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void collectsTheTicksMissedWhileATaskBlocks() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        TcpTimerWheel.Timeout blocking = new TcpTimerWheel.Timeout(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        TcpTimerWheel.Timeout timeout = new TcpTimerWheel.Timeout(countDown(fired));
+        timerWheel.schedule(blocking, 10, TimeUnit.MILLISECONDS);
+        timerWheel.schedule(timeout, 50, TimeUnit.MILLISECONDS);
+        // The bucket of `timeout` goes by while the worker blocks, a skipped bucket would only be
+        // collected again one revolution (640ms) later
+        assertTrue(fired.await(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void handlesTensOfThousandsOfTimeouts() throws InterruptedException {
+        final int count = 50000;
+        final CountDownLatch fired = new CountDownLatch(count / 2);
+        final AtomicInteger cancelledRuns = new AtomicInteger();
+        TcpTimerWheel.Timeout[] timeouts = new TcpTimerWheel.Timeout[count];
+        for (int i = 0; i < count; i++) {
+            timeouts[i] = new TcpTimerWheel.Timeout(i % 2 == 0 ? countDown(fired) : increment(cancelledRuns));
+            timerWheel.schedule(timeouts[i], 500 + (i % 200), TimeUnit.MILLISECONDS);
+        }
+        assertEquals(count, timerWheel.size());
+        for (int i = 1; i < count; i += 2) {
+            timerWheel.cancel(timeouts[i]);
+        }
+        assertEquals(count / 2, timerWheel.size());
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(0, cancelledRuns.get());
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    public void taskCanRearmItself() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(3);
+        final TcpTimerWheel.Timeout[] timeout = new TcpTimerWheel.Timeout[1];
+        timeout[0] = new TcpTimerWheel.Timeout(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+                if (fired.getCount() > 0) timerWheel.schedule(timeout[0], 10, TimeUnit.MILLISECONDS);
+            }
+        });
+        timerWheel.schedule(timeout[0], 10, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+    }
+
+    private static Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+
+    private static Runnable increment(final AtomicInteger counter) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TcpTokenBucketTest {
+    @Test
+    public void allowsBurstThenLimitsRate() {
+        TcpTokenBucket bucket = new TcpTokenBucket(1, 3);
+        assertEquals(0, bucket.reserve(1));
+        assertEquals(0, bucket.reserve(2));
+        // The next token is one second away
+        long delay = bucket.reserve(1);
+        assertTrue(delay > TimeUnit.MILLISECONDS.toNanos(900));
+        assertTrue(delay <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void reserveGoesIntoDebt() {
+        TcpTokenBucket bucket = new TcpTokenBucket(1000, 10);
+        assertEquals(0, bucket.reserve(10));
+        long delay = bucket.reserve(100);
+        // 100 tokens at 1000 per second
+        assertTrue(delay > TimeUnit.MILLISECONDS.toNanos(90));
+        assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(100));
+        // The debt adds up
+        delay = bucket.reserve(100);
+        assertTrue(delay > TimeUnit.MILLISECONDS.toNanos(190));
+        assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void refillsAtTheRate() {
+        TcpTokenBucket bucket = new TcpTokenBucket(100, 1);
+        assertEquals(0, bucket.reserve(1));
+        // 10ms per token
+        long delay = bucket.reserve(50);
+        assertTrue(delay > TimeUnit.MILLISECONDS.toNanos(450));
+        assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(500));
+    }
+}
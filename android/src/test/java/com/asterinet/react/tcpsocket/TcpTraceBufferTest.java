@@ -0,0 +1,47 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TcpTraceBufferTest {
+    @Test
+    public void drainsTheSpansInOrder() {
+        TcpTraceBuffer buffer = new TcpTraceBuffer(8);
+        long token = buffer.begin(TcpTracer.CONNECT, 5);
+        buffer.end(TcpTracer.CONNECT, 5, token);
+        buffer.end(TcpTracer.WRITE_TO_ACK, 6, buffer.begin(TcpTracer.WRITE_TO_ACK, 6));
+        TcpTraceBuffer.Span[] spans = buffer.drain();
+        assertEquals(2, spans.length);
+        assertEquals(TcpTracer.CONNECT, spans[0].span);
+        assertEquals(5, spans[0].id);
+        assertEquals(token, spans[0].startNanos);
+        assertTrue(spans[0].durationNanos >= 0);
+        assertEquals(TcpTracer.WRITE_TO_ACK, spans[1].span);
+        assertEquals(0, buffer.drain().length);
+    }
+
+    @Test
+    public void overwritesTheOldestSpansOnceFull() {
+        TcpTraceBuffer buffer = new TcpTraceBuffer(4);
+        for (int id = 0; id < 10; id++) {
+            buffer.end(TcpTracer.READ_TO_EMIT, id, buffer.begin(TcpTracer.READ_TO_EMIT, id));
+        }
+        TcpTraceBuffer.Span[] spans = buffer.drain();
+        assertEquals(4, spans.length);
+        for (int i = 0; i < spans.length; i++) {
+            assertEquals(6 + i, spans[i].id);
+        }
+        assertEquals(6, buffer.getDroppedCount());
+        buffer.end(TcpTracer.READ_TO_EMIT, 10, buffer.begin(TcpTracer.READ_TO_EMIT, 10));
+        assertEquals(10, buffer.drain()[0].id);
+    }
+
+    @Test
+    public void noopTracerIgnoresSpans() {
+        long token = TcpTracer.NONE.begin(TcpTracer.HANDSHAKE, 1);
+        TcpTracer.NONE.end(TcpTracer.HANDSHAKE, 1, token);
+        assertEquals(0, token);
+    }
+}
@@ -0,0 +1,59 @@
+package com.asterinet.react.tcpsocket;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TcpWriteAcknowledgerTest {
+    private final RecordingEventListener listener = new RecordingEventListener();
+
+    @Test
+    public void holdsCumulativeAcknowledgementsUntilFlushed() {
+        TcpWriteAcknowledger acks = new TcpWriteAcknowledger(listener, 1, TcpWriteAcknowledger.MODE_CUMULATIVE);
+        for (int msgId = 0; msgId < TcpWriteAcknowledger.MAX_HELD_ACKS + 3; msgId++) {
+            acks.acknowledge(msgId, null, true);
+        }
+        // A full batch is acknowledged without waiting for the queue to drain
+        assertEquals(1, listener.writtenEvents.get());
+        assertEquals(Integer.valueOf(TcpWriteAcknowledger.MAX_HELD_ACKS - 1), listener.writtenMessages.poll());
+        acks.flush();
+        acks.flush();
+        assertEquals(2, listener.writtenEvents.get());
+        assertEquals(Integer.valueOf(TcpWriteAcknowledger.MAX_HELD_ACKS + 2), listener.writtenMessages.poll());
+    }
+
+    @Test
+    public void reportsFailuresAfterTheHeldAcknowledgements() {
+        TcpWriteAcknowledger acks = new TcpWriteAcknowledger(listener, 1, TcpWriteAcknowledger.MODE_CUMULATIVE);
+        acks.acknowledge(1, null, true);
+        acks.acknowledge(2, null, true);
+        acks.acknowledge(3, new IOException("Broken pipe"), true);
+        assertEquals(Integer.valueOf(2), listener.writtenMessages.poll());
+        assertEquals(2, listener.writtenEvents.get());
+        assertEquals(1, listener.errors.get());
+    }
+
+    @Test
+    public void acknowledgesOutOfOrderWritesOnTheirOwn() {
+        TcpWriteAcknowledger acks = new TcpWriteAcknowledger(listener, 1, TcpWriteAcknowledger.MODE_CUMULATIVE);
+        acks.acknowledge(1, null, true);
+        acks.acknowledge(3, null, false);
+        assertEquals(Integer.valueOf(3), listener.writtenMessages.poll());
+        acks.flush();
+        assertEquals(Integer.valueOf(1), listener.writtenMessages.poll());
+    }
+
+    @Test
+    public void fireAndForgetOnlyReportsErrors() {
+        TcpWriteAcknowledger acks = new TcpWriteAcknowledger(listener, 1, TcpWriteAcknowledger.MODE_NONE);
+        acks.acknowledge(1, null, true);
+        acks.flush();
+        acks.acknowledge(2, new IOException("Broken pipe"), true);
+        assertEquals(0, listener.writtenEvents.get());
+        assertEquals(1, listener.errors.get());
+        assertTrue(listener.writtenMessages.isEmpty());
+    }
+}
@@ -13,13 +13,36 @@ jest.mock('react-native', () => {
                 end: jest.fn(),
                 destroy: jest.fn(),
                 write: jest.fn(),
+                writev: jest.fn(),
+                writeWithPriority: jest.fn(),
+                cork: jest.fn(),
+                uncork: jest.fn(),
+                request: jest.fn(),
+                respond: jest.fn(),
                 listen: jest.fn(),
                 pause: jest.fn(),
                 resume: jest.fn(),
                 setKeepAlive: jest.fn(),
                 setNoDelay: jest.fn(),
+                setTimeout: jest.fn(),
+                getServerStats: jest.fn(),
+                broadcast: jest.fn(),
+                getCompressionStats: jest.fn(),
+                getEventQueueStats: jest.fn(),
+                setBandwidth: jest.fn(),
+                getBandwidthStats: jest.fn(),
+                setGlobalBandwidth: jest.fn(),
+                getGlobalBandwidthStats: jest.fn(),
+                getConnectTimingStats: jest.fn(),
+                setTracing: jest.fn(),
+                dumpTrace: jest.fn(),
+                bindDatagram: jest.fn(),
+                sendDatagrams: jest.fn(),
+                closeDatagram: jest.fn(),
+                setDatagramBroadcast: jest.fn(),
             },
         },
+        Platform: { OS: 'android' },
         NativeEventEmitter: NativeEventEmitter,
     };
 });
@@ -6,6 +6,51 @@
  * @property {boolean} [allowHalfOpen]
  * @property {boolean} [pauseOnConnect]
  *
+ * @typedef {object} ListenOptions
+ * @property {number} port
+ * @property {string} [host]
+ * @property {boolean} [reuseAddress]
+ * @property {number} [receiveBufferSize]
+ * @property {number} [sendBufferSize]
+ * @property {number} [readBufferSize]
+ * @property {number} [minReadBufferSize]
+ * @property {number} [linger]
+ * @property {number} [trafficClass]
+ * @property {number} [keepAliveInterval]
+ * @property {number} [keepAliveCount]
+ * @property {number} [maxConnections]
+ * @property {number} [maxConnectionsPerIp]
+ * @property {number} [acceptRate]
+ * @property {number} [acceptBurst]
+ * @property {boolean} [multiplex] Frame the traffic of accepted sockets for `request()`/`respond()`
+ * @property {number} [maxFrameSize]
+ * @property {'stream' | 'frame'} [compression] Compress the traffic of accepted sockets
+ * @property {number} [compressionLevel]
+ * @property {string} [compressionDictionary] Base64 encoded preset dictionary
+ * @property {string[]} [handlers] Native handlers added to the pipeline of accepted sockets
+ * @property {import('./Socket').WriteAcks} [writeAcks] How the writes of accepted sockets are acknowledged
+ * @property {ListenerOptions[]} [listeners] Additional addresses served by the same server
+ *
+ * @typedef {object} ListenerOptions
+ * @property {number} port
+ * @property {string} [host]
+ * @property {boolean} [tls] Defaults to `true` on TLS servers
+ *
+ * @typedef {object} ServerStats
+ * @property {number} connections
+ * @property {number} accepted
+ * @property {number} rejectedMaxConnections
+ * @property {number} rejectedPerIp
+ * @property {number} throttledAccepts
+ *
+ * @typedef {object} BroadcastFilter
+ * @property {Socket[]} [include] Only write to these connections
+ * @property {Socket[]} [exclude] Skip these connections
+ *
+ * @typedef {object} BroadcastResult
+ * @property {number} written Connections the data was written to
+ * @property {number} failed Connections the write failed on
+ *
  * @typedef {import('./TLSSocket').default} TLSSocket
  *
  * @typedef {object} ServerEvents
@@ -35,9 +80,20 @@ export default class Server extends EventEmitter<ServerEvents, any> {
     private _localPort;
     /** @private */
     private _localFamily;
+    /** @private @type {{ localAddress: string; localPort: number; localFamily: string; }[] | undefined} */
+    private _listeners;
     /** @private @type {ServerOptions} */
     private _serverOptions;
+    /** @private @type {import('./Socket').WriteAcks | undefined} */
+    private _writeAcks;
+    /** @private */
+    private _multiplex;
     listening: boolean;
+    /**
+     * Connections over this limit are rejected by the native server. Must be set before `listen()`.
+     * @type {number | undefined}
+     */
+    maxConnections: number | undefined;
     /**
      * Start a server listening for connections.
      *
@@ -48,16 +104,12 @@ export default class Server extends EventEmitter<ServerEvents, any> {
      * `server.listen()` call or `server.close()` has been called. Otherwise, an `ERR_SERVER_ALREADY_LISTEN`
      * error will be thrown.
      *
-     * @param {{ port: number; host?: string; reuseAddress?: boolean} | number} options Options or port
+     * @param {ListenOptions | number} options Options or port
      * @param {string | (() => void)} [callback_or_host] Callback or host string
      * @param {() => void} [callback] Callback function
      * @returns {Server}
      */
-    listen(options: {
-        port: number;
-        host?: string;
-        reuseAddress?: boolean;
-    } | number, callback_or_host?: string | (() => void) | undefined, callback?: (() => void) | undefined): Server;
+    listen(options: ListenOptions | number, callback_or_host?: string | (() => void) | undefined, callback?: (() => void) | undefined): Server;
     /**
      * Asynchronously get the number of concurrent connections on the server.
      *
@@ -67,6 +119,27 @@ export default class Server extends EventEmitter<ServerEvents, any> {
      * @returns {Server}
      */
     getConnections(callback: (err: Error | null, count: number) => void): Server;
+    /**
+     * Get the admission counters of the native server: open connections, accepted connections, connections
+     * rejected by `maxConnections` or `maxConnectionsPerIp`, and accepts delayed by `acceptRate`.
+     *
+     * @returns {Promise<ServerStats>}
+     */
+    getStats(): Promise<ServerStats>;
+    /**
+     * Writes the same data to every connection of the server, or to the ones selected by `filter`, with a single
+     * native call. The data is decoded once and shared by the write queues of the connections, so a slow connection
+     * does not delay the others. Resolves once the data has been written to, or failed on, every connection.
+     *
+     * The connections do not emit `'drain'` nor count the data in `bytesWritten`. Rejects on servers listening with the
+     * `multiplex` option, whose connections only exchange frames.
+     *
+     * @param {string | Buffer | Uint8Array} data
+     * @param {BroadcastFilter} [filter]
+     * @param {import('./Socket').BufferEncoding} [encoding]
+     * @returns {Promise<BroadcastResult>}
+     */
+    broadcast(data: string | Buffer | Uint8Array, filter?: BroadcastFilter | undefined, encoding?: import("./Socket").BufferEncoding | undefined): Promise<BroadcastResult>;
     /**
      * Stops the server from accepting new connections and keeps existing connections.
      * This function is asynchronous, the server is finally closed when all connections are ended and the server emits a `'close'` event.
@@ -85,6 +158,12 @@ export default class Server extends EventEmitter<ServerEvents, any> {
      * @returns {import('./Socket').AddressInfo | null}
      */
     address(): import('./Socket').AddressInfo | null;
+    /**
+     * Returns the address of every listener of the server, the main one first.
+     *
+     * @returns {import('./Socket').AddressInfo[]}
+     */
+    addresses(): import('./Socket').AddressInfo[];
     ref(): Server;
     unref(): Server;
     /**
@@ -105,12 +184,13 @@ export default class Server extends EventEmitter<ServerEvents, any> {
     protected _addConnection(socket: Socket): void;
     /**
      * @protected
-     * @param {{ id: number; connection: import('./Socket').NativeConnectionInfo; }} info
+     * @param {{ id: number; connection: import('./Socket').NativeConnectionInfo; listener?: number; }} info
      * @returns {Socket}
      */
     protected _buildSocket(info: {
         id: number;
         connection: import('./Socket').NativeConnectionInfo;
+        listener?: number;
     }): Socket;
     /**
      * Apply server socket options to a newly connected socket
@@ -126,6 +206,100 @@ export type ServerOptions = {
     allowHalfOpen?: boolean | undefined;
     pauseOnConnect?: boolean | undefined;
 };
+export type ListenOptions = {
+    port: number;
+    host?: string | undefined;
+    reuseAddress?: boolean | undefined;
+    receiveBufferSize?: number | undefined;
+    sendBufferSize?: number | undefined;
+    readBufferSize?: number | undefined;
+    minReadBufferSize?: number | undefined;
+    linger?: number | undefined;
+    trafficClass?: number | undefined;
+    keepAliveInterval?: number | undefined;
+    keepAliveCount?: number | undefined;
+    maxConnections?: number | undefined;
+    maxConnectionsPerIp?: number | undefined;
+    acceptRate?: number | undefined;
+    acceptBurst?: number | undefined;
+    /**
+     * Frame the traffic of accepted sockets for `request()`/`respond()`
+     */
+    multiplex?: boolean | undefined;
+    maxFrameSize?: number | undefined;
+    /**
+     * Compress the traffic of accepted sockets
+     */
+    compression?: "stream" | "frame" | undefined;
+    compressionLevel?: number | undefined;
+    /**
+     * Base64 encoded preset dictionary
+     */
+    compressionDictionary?: string | undefined;
+    /**
+     * Native handlers added to the pipeline of accepted sockets
+     */
+    handlers?: string[] | undefined;
+    /**
+     * How the writes of accepted sockets are acknowledged
+     */
+    writeAcks?: import("./Socket").WriteAcks | undefined;
+    /**
+     * Read limit of every accepted socket
+     */
+    readBytesPerSecond?: number | undefined;
+    /**
+     * Write limit of every accepted socket
+     */
+    writeBytesPerSecond?: number | undefined;
+    /**
+     * Bytes of queued writes of an accepted socket held in memory before spilling to disk
+     */
+    spillThreshold?: number | undefined;
+    /**
+     * Milliseconds to wait for the client during the TLS handshake of an accepted socket, 10000 by default
+     */
+    handshakeTimeout?: number | undefined;
+    /**
+     * Additional addresses served by the same server
+     */
+    listeners?: ListenerOptions[] | undefined;
+};
+export type ListenerOptions = {
+    port: number;
+    host?: string | undefined;
+    /**
+     * Defaults to `true` on TLS servers
+     */
+    tls?: boolean | undefined;
+};
+export type ServerStats = {
+    connections: number;
+    accepted: number;
+    rejectedMaxConnections: number;
+    rejectedPerIp: number;
+    throttledAccepts: number;
+};
+export type BroadcastFilter = {
+    /**
+     * Only write to these connections
+     */
+    include?: Socket[] | undefined;
+    /**
+     * Skip these connections
+     */
+    exclude?: Socket[] | undefined;
+};
+export type BroadcastResult = {
+    /**
+     * Connections the data was written to
+     */
+    written: number;
+    /**
+     * Connections the write failed on
+     */
+    failed: number;
+};
 export type TLSSocket = import("./TLSSocket").default;
 export type ServerEvents = {
     close: () => void;
@@ -135,4 +309,5 @@ export type ServerEvents = {
     secureConnection: (tlsSocket: TLSSocket) => void;
 };
 import EventEmitter from "eventemitter3";
+import { Buffer } from "buffer";
 import Socket from "./Socket";
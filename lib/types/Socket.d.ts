@@ -18,8 +18,42 @@
  * tlsCheckValidity?: boolean,
  * tlsCert?: any,
  * connectTimeout?: number,
+ * handshakeTimeout?: number,
+ * receiveBufferSize?: number,
+ * sendBufferSize?: number,
+ * readBufferSize?: number,
+ * minReadBufferSize?: number,
+ * linger?: number,
+ * trafficClass?: number,
+ * keepAliveInterval?: number,
+ * keepAliveCount?: number,
+ * multiplex?: boolean,
+ * maxFrameSize?: number,
+ * compression?: 'stream' | 'frame',
+ * compressionLevel?: number,
+ * compressionDictionary?: string,
+ * handlers?: string[],
+ * writeAcks?: WriteAcks,
  * }} ConnectionOptions
  *
+ * @typedef {'message' | 'cumulative' | 'none'} WriteAcks
+ *
+ * @typedef {object} WriteOptions
+ * @property {BufferEncoding} [encoding]
+ * @property {'high' | 'normal' | 'low'} [priority] Queued writes of a higher priority are sent first
+ *
+ * @typedef {{ encoding?: BufferEncoding, timeout?: number }} RequestOptions
+ *
+ * @typedef {object} CompressionStats
+ * @property {number} uncompressedBytesWritten
+ * @property {number} compressedBytesWritten
+ * @property {number} compressedBytesRead
+ * @property {number} uncompressedBytesRead
+ * @property {number} writeRatio Uncompressed bytes written per compressed byte sent
+ * @property {number} readRatio Uncompressed bytes read per compressed byte received
+ * @property {number} compressCpuTime Milliseconds of CPU time spent compressing
+ * @property {number} decompressCpuTime Milliseconds of CPU time spent decompressing
+ *
  * @typedef {object} ReadableEvents
  * @property {() => void} pause
  * @property {() => void} resume
@@ -33,6 +67,7 @@
  * @property {(err: Error) => void} error
  * @property {() => void} timeout
  * @property {() => void} secureConnect
+ * @property {(requestId: number, data: Buffer | string) => void} request
  *
  * @extends {EventEmitter<SocketEvents & ReadableEvents, any>}
  */
@@ -41,20 +76,22 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
     _id: number;
     /** @private */
     private _eventEmitter;
-    /** @type {EventEmitter<'written', any>} @private */
-    private _msgEvtEmitter;
     /** @type {number} @private */
     private _timeoutMsecs;
     /** @type {number | undefined} @private */
     private _timeout;
     /** @private */
+    private _nativeTimeout;
+    /** @private */
     private _encoding;
     /** @private */
     private _msgId;
-    /** @private */
-    private _lastRcvMsgId;
-    /** @private */
-    private _lastSentMsgId;
+    /** @type {{ msgId: number; byteLength: number; ordered: boolean; cb?: (err?: Error) => void }[]} @private */
+    private _pendingWrites;
+    /** @type {WriteAcks} @package */
+    _writeAcks: WriteAcks;
+    /** @package */
+    _multiplex: boolean;
     /** @private */
     private _paused;
     /** @private */
@@ -62,6 +99,8 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
     /** @private */
     private _writeBufferSize;
     /** @private */
+    private _corked;
+    /** @private */
     private _bytesRead;
     /** @private */
     private _bytesWritten;
@@ -83,12 +122,23 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
     remoteAddress: string | undefined;
     remotePort: number | undefined;
     remoteFamily: string | undefined;
+    /**
+     * Index of the server listener that accepted this socket, `0` being the main `listen()` address.
+     * @type {number | undefined}
+     */
+    listenerIndex: number | undefined;
+    /**
+     * Time spent in each phase of the last connection, set when `'connect'` or `'reconnect'` is emitted.
+     * @type {ConnectTimings | undefined}
+     */
+    connectTimings: ConnectTimings | undefined;
     allowHalfOpen: boolean;
     get readyState(): "opening" | "open" | "readOnly" | "writeOnly";
     get destroyed(): boolean;
     get pending(): boolean;
     get connecting(): boolean;
     get bytesWritten(): number;
+    get writableCorked(): number;
     get bytesRead(): number;
     get timeout(): number | undefined;
     /**
@@ -120,6 +170,10 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
      * @param {() => void} [callback]
      */
     setTimeout(timeout: number, callback?: (() => void) | undefined): Socket;
+    /**
+     * @private
+     */
+    private _setNativeTimeout;
     /**
      * @private
      */
@@ -148,13 +202,29 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
      * @param {boolean} noDelay Default: `true`
      */
     setNoDelay(noDelay?: boolean): Socket;
+    /**
+     * Forces the written data to be buffered natively until `uncork()` is called, so a burst of small writes
+     * leaves the socket in full segments with a single write. Calls can be nested, the data is flushed by the
+     * `uncork()` matching the first `cork()`.
+     *
+     * Only Android buffers the data, other platforms keep writing it immediately.
+     */
+    cork(): void;
+    /**
+     * Flushes the data buffered since `cork()`. The callbacks of the corked writes are called once it is written.
+     *
+     * @param {boolean} [noDelay] Send the data with Nagle's algorithm disabled, so the last partial segment
+     * is not delayed. Default: `false`
+     */
+    uncork(noDelay?: boolean | undefined): void;
     /**
      * Enable/disable keep-alive functionality, and optionally set the initial delay before the first keepalive probe is sent on an idle socket.
      *
-     * `initialDelay` is ignored.
+     * `initialDelay` is ignored on iOS. On Android, the probe interval and count can be set with the `keepAliveInterval`
+     * and `keepAliveCount` connection options.
      *
      * @param {boolean} enable Default: `false`
-     * @param {number} initialDelay ***IGNORED**. Default: `0`
+     * @param {number} initialDelay Default: `0`
      */
     setKeepAlive(enable?: boolean, initialDelay?: number): Socket;
     /**
@@ -177,6 +247,8 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
     destroy(): Socket;
     /**
      * Sends data on the socket. The second parameter specifies the encoding in the case of a string — it defaults to UTF8 encoding.
+     * It may also be an object with the `encoding` and the `priority` of the write. On Android, queued writes of a higher priority
+     * are sent first, even between the chunks of a large write already being sent.
      *
      * Returns `true` if the entire data was flushed successfully to the kernel buffer. Returns `false` if all or part of the data
      * was queued in user memory. `'drain'` will be emitted when the buffer is again free.
@@ -184,12 +256,66 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
      * The optional callback parameter will be executed when the data is finally written out, which may not be immediately.
      *
      * @param {string | Buffer | Uint8Array} buffer
+     * @param {BufferEncoding | WriteOptions} [encoding]
+     * @param {(err?: Error) => void} [cb]
+     *
+     * @return {boolean}
+     */
+    write(buffer: string | Buffer | Uint8Array, encoding?: "ascii" | "utf8" | "utf-8" | "utf16le" | "ucs2" | "ucs-2" | "base64" | "latin1" | "binary" | "hex" | WriteOptions | undefined, cb?: ((err?: Error | undefined) => void) | undefined): boolean;
+    /**
+     * Sends several chunks on the socket with a single native write, such as the header and the body of a message.
+     * The chunks are acknowledged together: `cb` is called once all of them are written out.
+     *
+     * @param {(string | Buffer | Uint8Array)[]} buffers
      * @param {BufferEncoding} [encoding]
      * @param {(err?: Error) => void} [cb]
      *
      * @return {boolean}
      */
-    write(buffer: string | Buffer | Uint8Array, encoding?: "ascii" | "utf8" | "utf-8" | "utf16le" | "ucs2" | "ucs-2" | "base64" | "latin1" | "binary" | "hex" | undefined, cb?: ((err?: Error | undefined) => void) | undefined): boolean;
+    writev(buffers: (string | Buffer | Uint8Array)[], encoding?: "ascii" | "utf8" | "utf-8" | "utf16le" | "ucs2" | "ucs-2" | "base64" | "latin1" | "binary" | "hex" | undefined, cb?: ((err?: Error | undefined) => void) | undefined): boolean;
+    /**
+     * Sends `data` as a request to the peer and resolves with its response. The socket must have been
+     * created with the `multiplex` option: requests are framed and matched to their responses natively,
+     * so any number of them can be in flight at once.
+     *
+     * The promise is rejected with the `code` `'ETIMEDOUT'` after `options.timeout` milliseconds, `'EREMOTE'`
+     * if the peer answered with an error and `'ECLOSED'` if the socket closes first.
+     *
+     * @param {string | Buffer | Uint8Array} data
+     * @param {RequestOptions} [options]
+     * @returns {Promise<Buffer>}
+     */
+    request(data: string | Buffer | Uint8Array, options?: RequestOptions | undefined): Promise<Buffer>;
+    /**
+     * Answers a request received through the `'request'` event. An `Error` is sent to the peer as an error
+     * response carrying its message.
+     *
+     * @param {number} requestId
+     * @param {string | Buffer | Uint8Array | Error} data
+     * @param {BufferEncoding} [encoding]
+     * @param {(err?: Error) => void} [cb]
+     * @return {boolean}
+     */
+    respond(requestId: number, data: string | Buffer | Uint8Array | Error, encoding?: BufferEncoding | undefined, cb?: ((err?: Error | undefined) => void) | undefined): boolean;
+    /**
+     * Get the counters of the native compression stage of a socket created with the `compression` option.
+     *
+     * @returns {Promise<CompressionStats>}
+     */
+    getCompressionStats(): Promise<CompressionStats>;
+    /**
+     * Limits the bandwidth of the socket natively. A throttled socket stops reading, which slows the peer down.
+     * The limits of `net.setGlobalBandwidth()` apply as well.
+     *
+     * @param {Bandwidth} bandwidth
+     */
+    setBandwidth(bandwidth: Bandwidth): Socket;
+    /**
+     * Get the time the socket spent waiting for its own bandwidth limits.
+     *
+     * @returns {Promise<BandwidthStats>}
+     */
+    getBandwidthStats(): Promise<BandwidthStats>;
     /**
      * Pauses the reading of data. That is, `'data'` events will not be emitted. Useful to throttle back an upload.
      */
@@ -216,12 +342,48 @@ export default class Socket extends EventEmitter<SocketEvents & ReadableEvents,
     _errorListener: import("react-native").EmitterSubscription | undefined;
     _closeListener: import("react-native").EmitterSubscription | undefined;
     _endListener: import("react-native").EmitterSubscription | undefined;
+    _timeoutListener: import("react-native").EmitterSubscription | undefined;
     _connectListener: import("react-native").EmitterSubscription | undefined;
+    _reconnectingListener: import("react-native").EmitterSubscription | undefined;
+    _reconnectListener: import("react-native").EmitterSubscription | undefined;
     _writtenListener: import("react-native").EmitterSubscription | undefined;
+    _requestListener: import("react-native").EmitterSubscription | undefined;
     /**
      * @package
      */
     _unregisterEvents(): void;
+    /**
+     * Tracks the `written` event of an outgoing write of `byteLength` bytes, handed to the native side by `send`.
+     *
+     * @private
+     * @param {number} byteLength
+     * @param {((err?: Error) => void) | undefined} cb
+     * @param {(msgId: number) => void} send
+     * @param {boolean} [ordered] `false` if the write may complete before the writes sent earlier
+     * @return {boolean}
+     */
+    private _sendBuffer;
+    /**
+     * Completes the writes acknowledged by a `written` event. Writes of the normal priority are acknowledged in order,
+     * so the event of such a write also completes the earlier ones that were not acknowledged on their own.
+     *
+     * @private
+     * @param {{ msgId: number, err?: string }} evt
+     */
+    private _onWritten;
+    /**
+     * Raw data would desynchronize the frame decoder of the peer of a multiplexed socket.
+     *
+     * @private
+     * @param {number} byteLength
+     */
+    private _checkRawWrite;
+    /**
+     * @private
+     * @param {'cork' | 'uncork'} method
+     * @param {boolean} [noDelay]
+     */
+    private _callCorkMethod;
     /**
      * @private
      * @param {string | Buffer | Uint8Array} buffer
@@ -258,6 +420,138 @@ export type ConnectionOptions = {
     tlsCheckValidity?: boolean | undefined;
     tlsCert?: any;
     connectTimeout?: number | undefined;
+    handshakeTimeout?: number | undefined;
+    receiveBufferSize?: number | undefined;
+    sendBufferSize?: number | undefined;
+    readBufferSize?: number | undefined;
+    minReadBufferSize?: number | undefined;
+    linger?: number | undefined;
+    trafficClass?: number | undefined;
+    keepAliveInterval?: number | undefined;
+    keepAliveCount?: number | undefined;
+    multiplex?: boolean | undefined;
+    maxFrameSize?: number | undefined;
+    compression?: "stream" | "frame" | undefined;
+    compressionLevel?: number | undefined;
+    compressionDictionary?: string | undefined;
+    handlers?: string[] | undefined;
+    writeAcks?: WriteAcks | undefined;
+    readBytesPerSecond?: number | undefined;
+    writeBytesPerSecond?: number | undefined;
+    spillThreshold?: number | undefined;
+    reconnect?: ReconnectOptions | undefined;
+};
+export type ReconnectOptions = {
+    /**
+     * Milliseconds before the first attempt, doubled after every failed attempt
+     */
+    initialDelay?: number | undefined;
+    /**
+     * Longest delay between two attempts in milliseconds
+     */
+    maxDelay?: number | undefined;
+    /**
+     * Attempts before giving up with an `'error'`, `0` for no limit
+     */
+    maxAttempts?: number | undefined;
+    /**
+     * Largest fraction, from `0` to `1`, randomly taken off each delay
+     */
+    jitter?: number | undefined;
+};
+export type ReconnectingInfo = {
+    /**
+     * Number of the next attempt, from 1
+     */
+    attempt: number;
+    /**
+     * Milliseconds before the next attempt
+     */
+    delay: number;
+    /**
+     * Why the connection or the last attempt failed
+     */
+    error: string;
+};
+export type ConnectTimings = {
+    /**
+     * Milliseconds waiting for a native thread
+     */
+    queued: number;
+    /**
+     * Milliseconds selecting the network of the `interface` option
+     */
+    network: number;
+    /**
+     * Milliseconds resolving the local and remote addresses
+     */
+    dns: number;
+    /**
+     * Milliseconds of the TCP connection
+     */
+    connect: number;
+    /**
+     * Milliseconds of the TLS handshake
+     */
+    handshake: number;
+    /**
+     * Milliseconds from `connect()` to the connection, the phases included
+     */
+    total: number;
+};
+export type WriteAcks = "message" | "cumulative" | "none";
+export type WriteOptions = {
+    encoding?: BufferEncoding | undefined;
+    /**
+     * Queued writes of a higher priority are sent first
+     */
+    priority?: "high" | "normal" | "low" | undefined;
+};
+export type RequestOptions = {
+    encoding?: BufferEncoding | undefined;
+    timeout?: number | undefined;
+};
+export type CompressionStats = {
+    uncompressedBytesWritten: number;
+    compressedBytesWritten: number;
+    compressedBytesRead: number;
+    uncompressedBytesRead: number;
+    /**
+     * Uncompressed bytes written per compressed byte sent
+     */
+    writeRatio: number;
+    /**
+     * Uncompressed bytes read per compressed byte received
+     */
+    readRatio: number;
+    /**
+     * Milliseconds of CPU time spent compressing
+     */
+    compressCpuTime: number;
+    /**
+     * Milliseconds of CPU time spent decompressing
+     */
+    decompressCpuTime: number;
+};
+export type Bandwidth = {
+    /**
+     * Bytes per second read from the peer, `0` for no limit
+     */
+    read?: number | undefined;
+    /**
+     * Bytes per second written to the peer, `0` for no limit
+     */
+    write?: number | undefined;
+};
+export type BandwidthStats = {
+    /**
+     * Milliseconds spent waiting for the read limit
+     */
+    readThrottledTime: number;
+    /**
+     * Milliseconds spent waiting for the write limit
+     */
+    writeThrottledTime: number;
 };
 export type ReadableEvents = {
     pause: () => void;
@@ -272,6 +566,9 @@ export type SocketEvents = {
     error: (err: Error) => void;
     timeout: () => void;
     secureConnect: () => void;
+    request: (requestId: number, data: Buffer | string) => void;
+    reconnecting: (info: ReconnectingInfo) => void;
+    reconnect: () => void;
 };
 import EventEmitter from "eventemitter3";
 import { Buffer } from "buffer";
@@ -0,0 +1,141 @@
+/**
+ * @typedef {'udp4' | 'udp6'} UdpSocketType
+ *
+ * @typedef {{
+ * type: UdpSocketType,
+ * reuseAddr?: boolean,
+ * receiveBufferSize?: number,
+ * sendBufferSize?: number,
+ * }} UdpSocketOptions
+ *
+ * @typedef {{ port?: number, address?: string }} BindOptions
+ *
+ * @typedef {{ address: string, family: string, port: number, size: number }} RemoteInfo
+ *
+ * @typedef {string | Buffer | Uint8Array} UdpMessage
+ *
+ * @typedef {object} UdpSocketEvents
+ * @property {(msg: Buffer, rinfo: RemoteInfo) => void} message
+ * @property {() => void} listening
+ * @property {() => void} close
+ * @property {(err: Error) => void} error
+ *
+ * @extends {EventEmitter<UdpSocketEvents, any>}
+ */
+export default class UdpSocket extends EventEmitter<UdpSocketEvents, any> {
+    /**
+     * @param {UdpSocketOptions} options
+     * @param {(msg: Buffer, rinfo: RemoteInfo) => void} [messageListener] A listener for the `'message'` event
+     */
+    constructor(options: UdpSocketOptions, messageListener?: ((msg: Buffer, rinfo: RemoteInfo) => void) | undefined);
+    /** @package */
+    _id: number;
+    /** @private */
+    private _eventEmitter;
+    /** @type {EventEmitter<'written', any>} @private */
+    private _msgEvtEmitter;
+    /** @private */
+    private _options;
+    /** @type {'unbound' | 'binding' | 'bound' | 'closed'} @private */
+    private _state;
+    /** @private */
+    private _msgId;
+    /** @type {{ data: Buffer, port: number, address: string, callback?: (err: Error | null, bytes?: number) => void }[]} @private */
+    private _sendQueue;
+    /** @private */
+    private _flushScheduled;
+    /** @type {import('./Socket').AddressInfo | undefined} @private */
+    private _address;
+    /**
+     * Binds the socket to `port` and `address`. An unbound socket is bound to a random port on all
+     * interfaces by its first `send()`.
+     *
+     * @param {number | BindOptions | (() => void)} [port]
+     * @param {string | (() => void)} [address]
+     * @param {() => void} [callback] A listener for the `'listening'` event
+     * @returns {UdpSocket}
+     */
+    bind(port?: number | BindOptions | (() => void) | undefined, address?: string | (() => void) | undefined, callback?: (() => void) | undefined): UdpSocket;
+    /**
+     * Sends a datagram to `port` and `address`, `localhost` by default.
+     *
+     * Datagrams sent during the same tick are handed to the native side in a single call.
+     *
+     * @param {UdpMessage | UdpMessage[]} msg Several messages are sent as one datagram
+     * @param {number} port
+     * @param {string | ((err: Error | null, bytes?: number) => void)} [address]
+     * @param {(err: Error | null, bytes?: number) => void} [callback]
+     */
+    send(msg: UdpMessage | UdpMessage[], port: number, address?: string | ((err: Error | null, bytes?: number | undefined) => void) | undefined, callback?: ((err: Error | null, bytes?: number | undefined) => void) | undefined): void;
+    /**
+     * @param {() => void} [callback] A listener for the `'close'` event
+     * @returns {UdpSocket}
+     */
+    close(callback?: (() => void) | undefined): UdpSocket;
+    /**
+     * Returns the bound `address`, the address `family` name and `port` of the socket.
+     *
+     * @returns {import('./Socket').AddressInfo | undefined}
+     */
+    address(): import('./Socket').AddressInfo | undefined;
+    /**
+     * Enables sending datagrams to broadcast addresses.
+     *
+     * @param {boolean} flag
+     */
+    setBroadcast(flag: boolean): void;
+    /**
+     * @private
+     */
+    private _scheduleFlush;
+    /**
+     * Sends every queued datagram in a single native call.
+     *
+     * @private
+     */
+    private _flush;
+    /**
+     * @private
+     * @param {UdpMessage} buffer
+     */
+    private _generateSendBuffer;
+    /**
+     * @private
+     */
+    private _registerEvents;
+    _messageListener: import("react-native").EmitterSubscription | undefined;
+    _listeningListener: import("react-native").EmitterSubscription | undefined;
+    _errorListener: import("react-native").EmitterSubscription | undefined;
+    _closeListener: import("react-native").EmitterSubscription | undefined;
+    _writtenListener: import("react-native").EmitterSubscription | undefined;
+    /**
+     * @private
+     */
+    private _setClosed;
+}
+export type UdpSocketType = 'udp4' | 'udp6';
+export type UdpSocketOptions = {
+    type: UdpSocketType;
+    reuseAddr?: boolean;
+    receiveBufferSize?: number;
+    sendBufferSize?: number;
+};
+export type BindOptions = {
+    port?: number;
+    address?: string;
+};
+export type RemoteInfo = {
+    address: string;
+    family: string;
+    port: number;
+    size: number;
+};
+export type UdpMessage = string | Buffer | Uint8Array;
+export type UdpSocketEvents = {
+    message: (msg: Buffer, rinfo: RemoteInfo) => void;
+    listening: () => void;
+    close: () => void;
+    error: (err: Error) => void;
+};
+import EventEmitter from "eventemitter3";
+import { Buffer } from "buffer";
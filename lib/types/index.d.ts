@@ -4,13 +4,21 @@ declare namespace _default {
     export { createConnection };
     export { createTLSServer };
     export { connectTLS };
+    export { createSocket };
     export { isIP };
     export { isIPv4 };
     export { isIPv6 };
+    export { getEventQueueStats };
+    export { setGlobalBandwidth };
+    export { getBandwidthStats };
+    export { getConnectTimingStats };
+    export { setTracing };
+    export { dumpTrace };
     export { Server };
     export { Socket };
     export { TLSServer };
     export { TLSSocket };
+    export { UdpSocket };
     export const hasIdentity: typeof import("./TLSSocket").default.hasIdentity;
 }
 export default _default;
@@ -21,6 +29,104 @@ export type ServerOptions = {
     allowHalfOpen?: boolean | undefined;
     pauseOnConnect?: boolean | undefined;
 };
+export type EventQueueStats = {
+    /**
+     * Events waiting to be emitted
+     */
+    depth: number;
+    /**
+     * Largest number of events that have been waiting at once
+     */
+    maxDepth: number;
+    /**
+     * Events emitted so far
+     */
+    dispatched: number;
+    /**
+     * Average milliseconds between a native event and its emission
+     */
+    averageLatency: number;
+    /**
+     * Largest milliseconds between a native event and its emission
+     */
+    maxLatency: number;
+};
+export type LatencyHistogram = {
+    /**
+     * Durations recorded
+     */
+    count: number;
+    /**
+     * Average duration in milliseconds
+     */
+    average: number;
+    /**
+     * Median in milliseconds, rounded up to the bound of its bucket
+     */
+    p50: number;
+    /**
+     * 90th percentile in milliseconds, rounded up to the bound of its bucket
+     */
+    p90: number;
+    /**
+     * 99th percentile in milliseconds, rounded up to the bound of its bucket
+     */
+    p99: number;
+    /**
+     * Longest duration in milliseconds
+     */
+    max: number;
+    /**
+     * Durations under 1ms, then from `2^(i-1)` to `2^i` milliseconds for bucket `i`, the last one unbounded
+     */
+    buckets: number[];
+};
+export type ConnectTimingStats = {
+    queued: LatencyHistogram;
+    network: LatencyHistogram;
+    dns: LatencyHistogram;
+    connect: LatencyHistogram;
+    handshake: LatencyHistogram;
+    total: LatencyHistogram;
+};
+export type TracingOptions = {
+    /**
+     * `'systrace'` writes `android.os.Trace` sections, `'buffer'` keeps the last spans for `dumpTrace()`
+     */
+    mode: "off" | "systrace" | "buffer";
+    /**
+     * Spans kept in `'buffer'` mode, 4096 by default
+     */
+    capacity?: number | undefined;
+};
+export type TraceSpan = {
+    /**
+     * One of `'tcp connect'`, `'tcp handshake'`, `'tcp accept'`, `'tcp read-to-emit'` and `'tcp write-to-ack'`
+     */
+    name: string;
+    /**
+     * Id of the socket, of the server for `'tcp accept'`
+     */
+    id: number;
+    /**
+     * Start in milliseconds of a monotonic clock
+     */
+    start: number;
+    /**
+     * Milliseconds
+     */
+    duration: number;
+};
+export type TraceDump = {
+    /**
+     * Spans ended since the last dump, oldest first
+     */
+    spans: TraceSpan[];
+    /**
+     * Spans overwritten before being dumped
+     */
+    dropped: number;
+};
 /**
  * @param {import('./Socket').ConnectionOptions} options
  * @param {() => void} callback
@@ -57,6 +163,14 @@ declare function createTLSServer(options: import('./TLSServer').TLSServerOptions
  * @returns {TLSSocket}
  */
 declare function connectTLS(options: import('./TLSSocket').TLSSocketOptions & import('./Socket').ConnectionOptions, callback?: (() => void) | undefined): TLSSocket;
+/**
+ * Creates a new UDP socket.
+ *
+ * @param {import('./UdpSocket').UdpSocketOptions | import('./UdpSocket').UdpSocketType} options
+ * @param {(msg: import('buffer').Buffer, rinfo: import('./UdpSocket').RemoteInfo) => void} [messageListener] A listener for the `'message'` event
+ * @returns {UdpSocket}
+ */
+declare function createSocket(options: import('./UdpSocket').UdpSocketOptions | import('./UdpSocket').UdpSocketType, messageListener?: ((msg: import('buffer').Buffer, rinfo: import('./UdpSocket').RemoteInfo) => void) | undefined): UdpSocket;
 /**
  * Tests if input is an IP address. Returns `0` for invalid strings, returns `4` for IP version 4 addresses, and returns `6` for IP version 6 addresses.
  *
@@ -75,7 +189,44 @@ declare function isIPv4(input: string): boolean;
  * @param {string} input
  */
 declare function isIPv6(input: string): boolean;
+/**
+ * Get the counters of the native queue of socket events waiting to be emitted to JS.
+ *
+ * @returns {Promise<EventQueueStats>}
+ */
+declare function getEventQueueStats(): Promise<EventQueueStats>;
+/**
+ * Limits the bandwidth shared by every socket of the app, on top of the limits of each socket.
+ *
+ * @param {import('./Socket').Bandwidth} bandwidth
+ */
+declare function setGlobalBandwidth(bandwidth: import("./Socket").Bandwidth): void;
+/**
+ * Get the time sockets spent waiting for the global bandwidth limits.
+ *
+ * @returns {Promise<import('./Socket').BandwidthStats>}
+ */
+declare function getBandwidthStats(): Promise<import("./Socket").BandwidthStats>;
+/**
+ * Get the histograms of the connection phases of the client sockets since the app started.
+ *
+ * @returns {Promise<ConnectTimingStats>}
+ */
+declare function getConnectTimingStats(): Promise<ConnectTimingStats>;
+/**
+ * Traces the connections, TLS handshakes, accepts, data events and write acknowledgements of every socket.
+ *
+ * @param {TracingOptions} options
+ */
+declare function setTracing(options: TracingOptions): void;
+/**
+ * Get the spans recorded in `'buffer'` tracing mode since the last call.
+ *
+ * @returns {Promise<TraceDump>}
+ */
+declare function dumpTrace(): Promise<TraceDump>;
 import Server from "./Server";
 import Socket from "./Socket";
 import TLSServer from "./TLSServer";
 import TLSSocket from "./TLSSocket";
+import UdpSocket from "./UdpSocket";
@@ -4,6 +4,7 @@ import { getNextId, nativeEventEmitter } from './Globals';
 
 import EventEmitter from 'eventemitter3';
 import { NativeModules } from 'react-native';
+import { Buffer } from 'buffer';
 import Socket from './Socket';
 
 const Sockets = NativeModules.TcpSockets;
@@ -16,6 +17,55 @@ const Sockets = NativeModules.TcpSockets;
  * @property {boolean} [allowHalfOpen]
  * @property {boolean} [pauseOnConnect]
  *
+ * @typedef {object} ListenOptions
+ * @property {number} port
+ * @property {string} [host]
+ * @property {boolean} [reuseAddress]
+ * @property {number} [receiveBufferSize]
+ * @property {number} [sendBufferSize]
+ * @property {number} [readBufferSize]
+ * @property {number} [minReadBufferSize]
+ * @property {number} [linger]
+ * @property {number} [trafficClass]
+ * @property {number} [keepAliveInterval]
+ * @property {number} [keepAliveCount]
+ * @property {number} [maxConnections]
+ * @property {number} [maxConnectionsPerIp]
+ * @property {number} [acceptRate]
+ * @property {number} [acceptBurst]
+ * @property {boolean} [multiplex] Frame the traffic of accepted sockets for `request()`/`respond()`
+ * @property {number} [maxFrameSize]
+ * @property {'stream' | 'frame'} [compression] Compress the traffic of accepted sockets
+ * @property {number} [compressionLevel]
+ * @property {string} [compressionDictionary] Base64 encoded preset dictionary
+ * @property {string[]} [handlers] Native handlers added to the pipeline of accepted sockets
+ * @property {import('./Socket').WriteAcks} [writeAcks] How the writes of accepted sockets are acknowledged
+ * @property {number} [readBytesPerSecond] Read limit of every accepted socket
+ * @property {number} [writeBytesPerSecond] Write limit of every accepted socket
+ * @property {number} [spillThreshold] Bytes of queued writes of an accepted socket held in memory before spilling to disk
+ * @property {number} [handshakeTimeout] Milliseconds to wait for the client during the TLS handshake of an accepted socket, 10000 by default
+ * @property {ListenerOptions[]} [listeners] Additional addresses served by the same server
+ *
+ * @typedef {object} ListenerOptions
+ * @property {number} port
+ * @property {string} [host]
+ * @property {boolean} [tls] Defaults to `true` on TLS servers
+ *
+ * @typedef {object} ServerStats
+ * @property {number} connections
+ * @property {number} accepted
+ * @property {number} rejectedMaxConnections
+ * @property {number} rejectedPerIp
+ * @property {number} throttledAccepts
+ *
+ * @typedef {object} BroadcastFilter
+ * @property {Socket[]} [include] Only write to these connections
+ * @property {Socket[]} [exclude] Skip these connections
+ *
+ * @typedef {object} BroadcastResult
+ * @property {number} written Connections the data was written to
+ * @property {number} failed Connections the write failed on
+ *
  * @typedef {import('./TLSSocket').default} TLSSocket
  *
  * @typedef {object} ServerEvents
@@ -47,9 +97,20 @@ export default class Server extends EventEmitter {
         this._localPort = undefined;
         /** @private */
         this._localFamily = undefined;
+        /** @private @type {{ localAddress: string; localPort: number; localFamily: string; }[] | undefined} */
+        this._listeners = undefined;
         /** @private @type {ServerOptions} */
         this._serverOptions = {};
+        /** @private @type {import('./Socket').WriteAcks | undefined} */
+        this._writeAcks = undefined;
+        /** @private */
+        this._multiplex = false;
         this.listening = false;
+        /**
+         * Connections over this limit are rejected by the native server. Must be set before `listen()`.
+         * @type {number | undefined}
+         */
+        this.maxConnections = undefined;
 
         // Handle optional options argument
         if (typeof options === 'function') {
@@ -78,7 +139,7 @@ export default class Server extends EventEmitter {
      * `server.listen()` call or `server.close()` has been called. Otherwise, an `ERR_SERVER_ALREADY_LISTEN`
      * error will be thrown.
      *
-     * @param {{ port: number; host?: string; reuseAddress?: boolean} | number} options Options or port
+     * @param {ListenOptions | number} options Options or port
      * @param {string | (() => void)} [callback_or_host] Callback or host string
      * @param {() => void} [callback] Callback function
      * @returns {Server}
@@ -86,7 +147,7 @@ export default class Server extends EventEmitter {
     listen(options, callback_or_host, callback) {
         if (this._localAddress !== undefined) throw new Error('ERR_SERVER_ALREADY_LISTEN');
 
-        /** @type {{ port: number; host: string; reuseAddress?: boolean }} */
+        /** @type {ListenOptions} */
         let listenOptions = { port: 0, host: '0.0.0.0' };
         /** @type {(() => void) | undefined} */
         let cb;
@@ -103,17 +164,16 @@ export default class Server extends EventEmitter {
             }
         } else if (typeof options === 'object') {
             // listen(options, [callback])
-            listenOptions = {
-                port: options.port,
-                host: options.host || '0.0.0.0',
-                reuseAddress: options.reuseAddress,
-            };
+            listenOptions = { ...options, host: options.host || '0.0.0.0' };
             if (typeof callback_or_host === 'function') {
                 cb = callback_or_host;
             }
         } else {
             throw new TypeError('options must be an object or a number');
         }
+        if (listenOptions.maxConnections === undefined && this.maxConnections !== undefined) {
+            listenOptions.maxConnections = this.maxConnections;
+        }
 
         // Add callback as a listener for the listening event
         if (typeof cb === 'function') {
@@ -124,6 +184,8 @@ export default class Server extends EventEmitter {
             this.listening = true;
         });
 
+        this._writeAcks = listenOptions.writeAcks;
+        this._multiplex = !!listenOptions.multiplex;
         Sockets.listen(this._id, listenOptions);
         return this;
     }
@@ -141,6 +203,49 @@ export default class Server extends EventEmitter {
         return this;
     }
 
+    /**
+     * Get the admission counters of the native server: open connections, accepted connections, connections
+     * rejected by `maxConnections` or `maxConnectionsPerIp`, and accepts delayed by `acceptRate`.
+     *
+     * @returns {Promise<ServerStats>}
+     */
+    getStats() {
+        if (typeof Sockets.getServerStats !== 'function') {
+            return Promise.reject(new Error('getStats() is not supported on this platform'));
+        }
+        return Sockets.getServerStats(this._id);
+    }
+
+    /**
+     * Writes the same data to every connection of the server, or to the ones selected by `filter`, with a single
+     * native call. The data is decoded once and shared by the write queues of the connections, so a slow connection
+     * does not delay the others. Resolves once the data has been written to, or failed on, every connection.
+     *
+     * The connections do not emit `'drain'` nor count the data in `bytesWritten`. Rejects on servers listening with the
+     * `multiplex` option, whose connections only exchange frames.
+     *
+     * @param {string | Buffer | Uint8Array} data
+     * @param {BroadcastFilter} [filter]
+     * @param {import('./Socket').BufferEncoding} [encoding]
+     * @returns {Promise<BroadcastResult>}
+     */
+    broadcast(data, filter, encoding) {
+        if (typeof Sockets.broadcast !== 'function') {
+            return Promise.reject(new Error('broadcast() is not supported on this platform'));
+        }
+        if (this._multiplex) {
+            return Promise.reject(new Error('Cannot broadcast raw data to multiplexed sockets'));
+        }
+        let buffer;
+        if (typeof data === 'string') buffer = Buffer.from(data, encoding);
+        else buffer = Buffer.isBuffer(data) ? data : Buffer.from(data);
+        const nativeFilter = filter && {
+            include: filter.include?.map((socket) => socket._id),
+            exclude: filter.exclude?.map((socket) => socket._id),
+        };
+        return Sockets.broadcast(this._id, buffer.toString('base64'), nativeFilter ?? null);
+    }
+
     /**
      * Stops the server from accepting new connections and keeps existing connections.
      * This function is asynchronous, the server is finally closed when all connections are ended and the server emits a `'close'` event.
@@ -174,6 +279,22 @@ export default class Server extends EventEmitter {
         return { address: this._localAddress, port: this._localPort, family: this._localFamily };
     }
 
+    /**
+     * Returns the address of every listener of the server, the main one first.
+     *
+     * @returns {import('./Socket').AddressInfo[]}
+     */
+    addresses() {
+        const mainAddress = this.address();
+        if (!mainAddress) return [];
+        if (!this._listeners) return [mainAddress];
+        return this._listeners.map((listener) => ({
+            address: listener.localAddress,
+            port: listener.localPort,
+            family: listener.localFamily,
+        }));
+    }
+
     ref() {
         console.warn('react-native-tcp-socket: Server.ref() method will have no effect.');
         return this;
@@ -193,6 +314,7 @@ export default class Server extends EventEmitter {
             this._localAddress = evt.connection.localAddress;
             this._localPort = evt.connection.localPort;
             this._localFamily = evt.connection.localFamily;
+            this._listeners = evt.connection.listeners;
             this.emit('listening');
         });
         this._errorListener = this._eventEmitter.addListener('error', (evt) => {
@@ -215,6 +337,7 @@ export default class Server extends EventEmitter {
         this._localAddress = undefined;
         this._localPort = undefined;
         this._localFamily = undefined;
+        this._listeners = undefined;
     }
 
     /**
@@ -232,13 +355,16 @@ export default class Server extends EventEmitter {
 
     /**
      * @protected
-     * @param {{ id: number; connection: import('./Socket').NativeConnectionInfo; }} info
+     * @param {{ id: number; connection: import('./Socket').NativeConnectionInfo; listener?: number; }} info
      * @returns {Socket}
      */
     _buildSocket(info) {
         const newSocket = new Socket();
         newSocket._setId(info.id);
         newSocket._setConnected(info.connection);
+        newSocket.listenerIndex = info.listener ?? 0;
+        if (this._writeAcks) newSocket._writeAcks = this._writeAcks;
+        newSocket._multiplex = this._multiplex;
 
         // Apply server options to the socket if they exist
         if (this._serverOptions) {
@@ -1,6 +1,6 @@
 'use strict';
 
-import { NativeModules } from 'react-native';
+import { NativeModules, Platform } from 'react-native';
 import EventEmitter from 'eventemitter3';
 import { Buffer } from 'buffer';
 import { nativeEventEmitter, getNextId } from './Globals';
@@ -25,8 +25,73 @@ import { nativeEventEmitter, getNextId } from './Globals';
  * tlsCheckValidity?: boolean,
  * tlsCert?: any,
  * connectTimeout?: number,
+ * handshakeTimeout?: number,
+ * receiveBufferSize?: number,
+ * sendBufferSize?: number,
+ * readBufferSize?: number,
+ * minReadBufferSize?: number,
+ * linger?: number,
+ * trafficClass?: number,
+ * keepAliveInterval?: number,
+ * keepAliveCount?: number,
+ * multiplex?: boolean,
+ * maxFrameSize?: number,
+ * compression?: 'stream' | 'frame',
+ * compressionLevel?: number,
+ * compressionDictionary?: string,
+ * handlers?: string[],
+ * writeAcks?: WriteAcks,
+ * readBytesPerSecond?: number,
+ * writeBytesPerSecond?: number,
+ * spillThreshold?: number,
+ * reconnect?: ReconnectOptions,
  * }} ConnectionOptions
  *
+ * @typedef {object} ReconnectOptions
+ * @property {number} [initialDelay] Milliseconds before the first attempt, doubled after every failed attempt
+ * @property {number} [maxDelay] Longest delay between two attempts in milliseconds
+ * @property {number} [maxAttempts] Attempts before giving up with an `'error'`, `0` for no limit
+ * @property {number} [jitter] Largest fraction, from `0` to `1`, randomly taken off each delay
+ *
+ * @typedef {object} ReconnectingInfo
+ * @property {number} attempt Number of the next attempt, from 1
+ * @property {number} delay Milliseconds before the next attempt
+ * @property {string} error Why the connection or the last attempt failed
+ *
+ * @typedef {object} ConnectTimings
+ * @property {number} queued Milliseconds waiting for a native thread
+ * @property {number} network Milliseconds selecting the network of the `interface` option
+ * @property {number} dns Milliseconds resolving the local and remote addresses
+ * @property {number} connect Milliseconds of the TCP connection
+ * @property {number} handshake Milliseconds of the TLS handshake
+ * @property {number} total Milliseconds from `connect()` to the connection, the phases included
+ *
+ * @typedef {'message' | 'cumulative' | 'none'} WriteAcks
+ *
+ * @typedef {object} WriteOptions
+ * @property {BufferEncoding} [encoding]
+ * @property {'high' | 'normal' | 'low'} [priority] Queued writes of a higher priority are sent first
+ *
+ * @typedef {{ encoding?: BufferEncoding, timeout?: number }} RequestOptions
+ *
+ * @typedef {object} CompressionStats
+ * @property {number} uncompressedBytesWritten
+ * @property {number} compressedBytesWritten
+ * @property {number} compressedBytesRead
+ * @property {number} uncompressedBytesRead
+ * @property {number} writeRatio Uncompressed bytes written per compressed byte sent
+ * @property {number} readRatio Uncompressed bytes read per compressed byte received
+ * @property {number} compressCpuTime Milliseconds of CPU time spent compressing
+ * @property {number} decompressCpuTime Milliseconds of CPU time spent decompressing
+ *
+ * @typedef {object} Bandwidth
+ * @property {number} [read] Bytes per second read from the peer, `0` for no limit
+ * @property {number} [write] Bytes per second written to the peer, `0` for no limit
+ *
+ * @typedef {object} BandwidthStats
+ * @property {number} readThrottledTime Milliseconds spent waiting for the read limit
+ * @property {number} writeThrottledTime Milliseconds spent waiting for the write limit
+ *
  * @typedef {object} ReadableEvents
  * @property {() => void} pause
  * @property {() => void} resume
@@ -40,6 +105,9 @@ import { nativeEventEmitter, getNextId } from './Globals';
  * @property {(err: Error) => void} error
  * @property {() => void} timeout
  * @property {() => void} secureConnect
+ * @property {(requestId: number, data: Buffer | string) => void} request
+ * @property {(info: ReconnectingInfo) => void} reconnecting
+ * @property {() => void} reconnect
  *
  * @extends {EventEmitter<SocketEvents & ReadableEvents, any>}
  */
@@ -53,20 +121,22 @@ export default class Socket extends EventEmitter {
         this._id = getNextId();
         /** @private */
         this._eventEmitter = nativeEventEmitter;
-        /** @type {EventEmitter<'written', any>} @private */
-        this._msgEvtEmitter = new EventEmitter();
         /** @type {number} @private */
         this._timeoutMsecs = 0;
         /** @type {number | undefined} @private */
         this._timeout = undefined;
         /** @private */
+        this._nativeTimeout = typeof NativeModules.TcpSockets.setTimeout === 'function';
+        /** @private */
         this._encoding = undefined;
         /** @private */
         this._msgId = 0;
-        /** @private */
-        this._lastRcvMsgId = Number.MAX_SAFE_INTEGER - 1;
-        /** @private */
-        this._lastSentMsgId = 0;
+        /** @type {{ msgId: number; byteLength: number; ordered: boolean; cb?: (err?: Error) => void }[]} @private */
+        this._pendingWrites = [];
+        /** @type {WriteAcks} @package */
+        this._writeAcks = 'message';
+        /** @package */
+        this._multiplex = false;
         /** @private */
         this._paused = false;
         /** @private */
@@ -74,6 +144,8 @@ export default class Socket extends EventEmitter {
         /** @private */
         this._writeBufferSize = 0;
         /** @private */
+        this._corked = 0;
+        /** @private */
         this._bytesRead = 0;
         /** @private */
         this._bytesWritten = 0;
@@ -96,6 +168,16 @@ export default class Socket extends EventEmitter {
         this.remoteAddress = undefined;
         this.remotePort = undefined;
         this.remoteFamily = undefined;
+        /**
+         * Index of the server listener that accepted this socket, `0` being the main `listen()` address.
+         * @type {number | undefined}
+         */
+        this.listenerIndex = undefined;
+        /**
+         * Time spent in each phase of the last connection, set when `'connect'` or `'reconnect'` is emitted.
+         * @type {ConnectTimings | undefined}
+         */
+        this.connectTimings = undefined;
         this.allowHalfOpen = false;
         this._registerEvents();
     }
@@ -120,6 +202,10 @@ export default class Socket extends EventEmitter {
         return this._bytesWritten;
     }
 
+    get writableCorked() {
+        return this._corked;
+    }
+
     get bytesRead() {
         return this._bytesRead;
     }
@@ -166,6 +252,8 @@ export default class Socket extends EventEmitter {
         });
         this._connecting = true;
         this._readyState = 'opening';
+        if (customOptions.writeAcks) this._writeAcks = customOptions.writeAcks;
+        this._multiplex = !!customOptions.multiplex;
         NativeModules.TcpSockets.connect(
             this._id,
             customOptions.host,
@@ -190,7 +278,10 @@ export default class Socket extends EventEmitter {
      */
     setTimeout(timeout, callback) {
         this._timeoutMsecs = timeout;
-        if (this._timeoutMsecs === 0) {
+        if (this._nativeTimeout) {
+            // Idle time is tracked natively, which also accounts for reads while the JS thread is busy
+            this._setNativeTimeout();
+        } else if (this._timeoutMsecs === 0) {
             this._clearTimeout();
         } else {
             this._resetTimeout();
@@ -199,10 +290,23 @@ export default class Socket extends EventEmitter {
         return this;
     }
 
+    /**
+     * @private
+     */
+    _setNativeTimeout() {
+        if (this._pending) {
+            this.once('connect', () => this._setNativeTimeout());
+            return;
+        }
+        if (this._destroyed) return;
+        NativeModules.TcpSockets.setTimeout(this._id, this._timeoutMsecs);
+    }
+
     /**
      * @private
      */
     _resetTimeout() {
+        if (this._nativeTimeout) return;
         if (this._timeoutMsecs !== 0) {
             this._clearTimeout();
             this._timeout = setTimeout(() => {
@@ -254,13 +358,38 @@ export default class Socket extends EventEmitter {
         return this;
     }
 
+    /**
+     * Forces the written data to be buffered natively until `uncork()` is called, so a burst of small writes
+     * leaves the socket in full segments with a single write. Calls can be nested, the data is flushed by the
+     * `uncork()` matching the first `cork()`.
+     *
+     * Only Android buffers the data, other platforms keep writing it immediately.
+     */
+    cork() {
+        this._corked++;
+        this._callCorkMethod('cork');
+    }
+
+    /**
+     * Flushes the data buffered since `cork()`. The callbacks of the corked writes are called once it is written.
+     *
+     * @param {boolean} [noDelay] Send the data with Nagle's algorithm disabled, so the last partial segment
+     * is not delayed. Default: `false`
+     */
+    uncork(noDelay = false) {
+        if (this._corked === 0) return;
+        this._corked--;
+        this._callCorkMethod('uncork', noDelay);
+    }
+
     /**
      * Enable/disable keep-alive functionality, and optionally set the initial delay before the first keepalive probe is sent on an idle socket.
      *
-     * `initialDelay` is ignored.
+     * `initialDelay` is ignored on iOS. On Android, the probe interval and count can be set with the `keepAliveInterval`
+     * and `keepAliveCount` connection options.
      *
      * @param {boolean} enable Default: `false`
-     * @param {number} initialDelay ***IGNORED**. Default: `0`
+     * @param {number} initialDelay Default: `0`
      */
     setKeepAlive(enable = false, initialDelay = 0) {
         if (this._pending) {
@@ -268,7 +397,7 @@ export default class Socket extends EventEmitter {
             return this;
         }
 
-        if (initialDelay !== 0) {
+        if (initialDelay !== 0 && Platform.OS === 'ios') {
             console.warn(
                 'react-native-tcp-socket: initialDelay param in socket.setKeepAlive() is ignored'
             );
@@ -296,6 +425,11 @@ export default class Socket extends EventEmitter {
      * @param {BufferEncoding} [encoding]
      */
     end(data, encoding) {
+        if (this._corked > 0 && !this._pending && !this._destroyed) {
+            // Flush the corked data before ending, the empty write is acknowledged after it
+            while (this._corked > 0) this.uncork();
+            data = data || Buffer.alloc(0);
+        }
         if (data) {
             this.write(data, encoding, () => {
                 NativeModules.TcpSockets.end(this._id);
@@ -322,6 +456,8 @@ export default class Socket extends EventEmitter {
 
     /**
      * Sends data on the socket. The second parameter specifies the encoding in the case of a string — it defaults to UTF8 encoding.
+     * It may also be an object with the `encoding` and the `priority` of the write. On Android, queued writes of a higher priority
+     * are sent first, even between the chunks of a large write already being sent.
      *
      * Returns `true` if the entire data was flushed successfully to the kernel buffer. Returns `false` if all or part of the data
      * was queued in user memory. `'drain'` will be emitted when the buffer is again free.
@@ -329,7 +465,7 @@ export default class Socket extends EventEmitter {
      * The optional callback parameter will be executed when the data is finally written out, which may not be immediately.
      *
      * @param {string | Buffer | Uint8Array} buffer
-     * @param {BufferEncoding} [encoding]
+     * @param {BufferEncoding | WriteOptions} [encoding]
      * @param {(err?: Error) => void} [cb]
      *
      * @return {boolean}
@@ -337,35 +473,161 @@ export default class Socket extends EventEmitter {
     write(buffer, encoding, cb) {
         if (this._pending || this._destroyed) throw new Error('Socket is closed.');
 
-        const generatedBuffer = this._generateSendBuffer(buffer, encoding);
-        this._writeBufferSize += generatedBuffer.byteLength;
-        const currentMsgId = this._msgId;
-        this._msgId = (this._msgId + 1) % Number.MAX_SAFE_INTEGER;
-        const msgEvtHandler = (/** @type {{id: number, msgId: number, err?: string}} */ evt) => {
-            const { msgId, err } = evt;
-            if (msgId === currentMsgId) {
-                this._msgEvtEmitter.removeListener('written', msgEvtHandler);
-                this._writeBufferSize -= generatedBuffer.byteLength;
-                this._lastRcvMsgId = msgId;
-                this._resetTimeout();
-                if (this.writableNeedDrain && this._lastSentMsgId === msgId) {
-                    this.writableNeedDrain = false;
-                    this.emit('drain');
-                }
-                if (cb) {
-                    if (err) cb(new Error(err));
-                    else cb();
-                }
-            }
-        };
-        // Callback equivalent with better performance
-        this._msgEvtEmitter.on('written', msgEvtHandler, this);
-        const ok = this._writeBufferSize < this.writableHighWaterMark;
-        if (!ok) this.writableNeedDrain = true;
-        this._lastSentMsgId = currentMsgId;
+        const options = typeof encoding === 'object' ? encoding : { encoding };
+        const generatedBuffer = this._generateSendBuffer(buffer, options.encoding);
+        this._checkRawWrite(generatedBuffer.byteLength);
+        const priority = options.priority ?? 'normal';
+        if (priority !== 'normal' && typeof NativeModules.TcpSockets.writeWithPriority === 'function') {
+            return this._sendBuffer(
+                generatedBuffer.byteLength,
+                cb,
+                (msgId) => NativeModules.TcpSockets.writeWithPriority(this._id, generatedBuffer.toString('base64'), msgId, priority),
+                false
+            );
+        }
+        return this._sendBuffer(generatedBuffer.byteLength, cb, (msgId) =>
+            NativeModules.TcpSockets.write(this._id, generatedBuffer.toString('base64'), msgId)
+        );
+    }
+
+    /**
+     * Sends several chunks on the socket with a single native write, such as the header and the body of a message.
+     * The chunks are acknowledged together: `cb` is called once all of them are written out.
+     *
+     * @param {(string | Buffer | Uint8Array)[]} buffers
+     * @param {BufferEncoding} [encoding]
+     * @param {(err?: Error) => void} [cb]
+     *
+     * @return {boolean}
+     */
+    writev(buffers, encoding, cb) {
+        if (this._pending || this._destroyed) throw new Error('Socket is closed.');
+
+        const generatedBuffers = buffers.map((buffer) => this._generateSendBuffer(buffer, encoding));
+        const byteLength = generatedBuffers.reduce((total, buffer) => total + buffer.byteLength, 0);
+        this._checkRawWrite(byteLength);
+        if (typeof NativeModules.TcpSockets.writev !== 'function') {
+            const generatedBuffer = Buffer.concat(generatedBuffers);
+            return this._sendBuffer(byteLength, cb, (msgId) =>
+                NativeModules.TcpSockets.write(this._id, generatedBuffer.toString('base64'), msgId)
+            );
+        }
+        return this._sendBuffer(byteLength, cb, (msgId) =>
+            NativeModules.TcpSockets.writev(
+                this._id,
+                generatedBuffers.map((buffer) => buffer.toString('base64')),
+                msgId
+            )
+        );
+    }
+
+    /**
+     * Sends `data` as a request to the peer and resolves with its response. The socket must have been
+     * created with the `multiplex` option: requests are framed and matched to their responses natively,
+     * so any number of them can be in flight at once.
+     *
+     * The promise is rejected with the `code` `'ETIMEDOUT'` after `options.timeout` milliseconds, `'EREMOTE'`
+     * if the peer answered with an error and `'ECLOSED'` if the socket closes first.
+     *
+     * @param {string | Buffer | Uint8Array} data
+     * @param {RequestOptions} [options]
+     * @returns {Promise<Buffer>}
+     */
+    request(data, options = {}) {
+        if (this._destroyed) return Promise.reject(new Error('Socket is closed.'));
+        if (this._pending) {
+            return new Promise((resolve, reject) => {
+                const onConnect = () => {
+                    this.removeListener('close', onClose);
+                    resolve(this.request(data, options));
+                };
+                const onClose = () => {
+                    this.removeListener('connect', onConnect);
+                    reject(new Error('Socket is closed.'));
+                };
+                this.once('connect', onConnect);
+                this.once('close', onClose);
+            });
+        }
+        const generatedBuffer = this._generateSendBuffer(data, options.encoding);
         this._bytesWritten += generatedBuffer.byteLength;
-        NativeModules.TcpSockets.write(this._id, generatedBuffer.toString('base64'), currentMsgId);
-        return ok;
+        this._resetTimeout();
+        return NativeModules.TcpSockets.request(
+            this._id,
+            generatedBuffer.toString('base64'),
+            options.timeout ?? 0
+        ).then((/** @type {string} */ response) => {
+            const responseData = Buffer.from(response, 'base64');
+            this._bytesRead += responseData.byteLength;
+            this._resetTimeout();
+            return responseData;
+        });
+    }
+
+    /**
+     * Answers a request received through the `'request'` event. An `Error` is sent to the peer as an error
+     * response carrying its message.
+     *
+     * @param {number} requestId
+     * @param {string | Buffer | Uint8Array | Error} data
+     * @param {BufferEncoding} [encoding]
+     * @param {(err?: Error) => void} [cb]
+     * @return {boolean}
+     */
+    respond(requestId, data, encoding, cb) {
+        if (this._pending || this._destroyed) throw new Error('Socket is closed.');
+
+        const isError = data instanceof Error;
+        const generatedBuffer = isError
+            ? Buffer.from(data.message, 'utf8')
+            : this._generateSendBuffer(data, encoding);
+        return this._sendBuffer(generatedBuffer.byteLength, cb, (msgId) =>
+            NativeModules.TcpSockets.respond(this._id, requestId, generatedBuffer.toString('base64'), isError, msgId)
+        );
+    }
+
+    /**
+     * Get the counters of the native compression stage of a socket created with the `compression` option.
+     *
+     * @returns {Promise<CompressionStats>}
+     */
+    getCompressionStats() {
+        if (typeof NativeModules.TcpSockets.getCompressionStats !== 'function') {
+            return Promise.reject(new Error('getCompressionStats() is not supported on this platform'));
+        }
+        return NativeModules.TcpSockets.getCompressionStats(this._id).then(
+            (/** @type {Omit<CompressionStats, 'writeRatio' | 'readRatio'>} */ stats) => ({
+                ...stats,
+                writeRatio: stats.compressedBytesWritten > 0 ? stats.uncompressedBytesWritten / stats.compressedBytesWritten : 0,
+                readRatio: stats.compressedBytesRead > 0 ? stats.uncompressedBytesRead / stats.compressedBytesRead : 0,
+            })
+        );
+    }
+
+    /**
+     * Limits the bandwidth of the socket natively. A throttled socket stops reading, which slows the peer down.
+     * The limits of `net.setGlobalBandwidth()` apply as well.
+     *
+     * @param {Bandwidth} bandwidth
+     */
+    setBandwidth(bandwidth) {
+        if (typeof NativeModules.TcpSockets.setBandwidth !== 'function') {
+            throw new Error('setBandwidth() is not supported on this platform');
+        }
+        NativeModules.TcpSockets.setBandwidth(this._id, bandwidth.read || 0, bandwidth.write || 0);
+        return this;
+    }
+
+    /**
+     * Get the time the socket spent waiting for its own bandwidth limits.
+     *
+     * @returns {Promise<BandwidthStats>}
+     */
+    getBandwidthStats() {
+        if (typeof NativeModules.TcpSockets.getBandwidthStats !== 'function') {
+            return Promise.reject(new Error('getBandwidthStats() is not supported on this platform'));
+        }
+        return NativeModules.TcpSockets.getBandwidthStats(this._id);
     }
 
     /**
@@ -477,14 +739,36 @@ export default class Socket extends EventEmitter {
             }
             this.emit('end');
         });
+        this._timeoutListener = this._eventEmitter.addListener('timeout', (evt) => {
+            if (evt.id !== this._id) return;
+            this.emit('timeout');
+        });
         this._connectListener = this._eventEmitter.addListener('connect', (evt) => {
             if (evt.id !== this._id) return;
             this._setConnected(evt.connection);
+            this.connectTimings = evt.timings;
             this.emit('connect');
         });
+        this._reconnectingListener = this._eventEmitter.addListener('reconnecting', (evt) => {
+            if (evt.id !== this._id) return;
+            this.emit('reconnecting', { attempt: evt.attempt, delay: evt.delay, error: evt.error });
+        });
+        this._reconnectListener = this._eventEmitter.addListener('reconnect', (evt) => {
+            if (evt.id !== this._id) return;
+            this._setConnected(evt.connection);
+            this.connectTimings = evt.timings;
+            this.emit('reconnect');
+        });
         this._writtenListener = this._eventEmitter.addListener('written', (evt) => {
             if (evt.id !== this._id) return;
-            this._msgEvtEmitter.emit('written', evt);
+            this._onWritten(evt);
+        });
+        this._requestListener = this._eventEmitter.addListener('request', (evt) => {
+            if (evt.id !== this._id) return;
+            this._resetTimeout();
+            const bufferData = Buffer.from(evt.data, 'base64');
+            this._bytesRead += bufferData.byteLength;
+            this.emit('request', evt.requestId, this._encoding ? bufferData.toString(this._encoding) : bufferData);
         });
     }
 
@@ -497,7 +781,106 @@ export default class Socket extends EventEmitter {
         this._closeListener?.remove();
         this._endListener?.remove();
         this._connectListener?.remove();
+        this._reconnectingListener?.remove();
+        this._reconnectListener?.remove();
+        this._timeoutListener?.remove();
         this._writtenListener?.remove();
+        this._requestListener?.remove();
+    }
+
+    /**
+     * Tracks the `written` event of an outgoing write of `byteLength` bytes, handed to the native side by `send`.
+     *
+     * @private
+     * @param {number} byteLength
+     * @param {((err?: Error) => void) | undefined} cb
+     * @param {(msgId: number) => void} send
+     * @param {boolean} [ordered] `false` if the write may complete before the writes sent earlier
+     * @return {boolean}
+     */
+    _sendBuffer(byteLength, cb, send, ordered = true) {
+        const currentMsgId = this._msgId;
+        this._msgId = (this._msgId + 1) % Number.MAX_SAFE_INTEGER;
+        this._bytesWritten += byteLength;
+        if (this._writeAcks === 'none') {
+            // Never acknowledged, failed writes are reported by the 'error' event
+            send(currentMsgId);
+            if (cb) Promise.resolve().then(() => cb());
+            return true;
+        }
+        this._writeBufferSize += byteLength;
+        this._pendingWrites.push({ msgId: currentMsgId, byteLength, ordered, cb });
+        const ok = this._writeBufferSize < this.writableHighWaterMark;
+        if (!ok) this.writableNeedDrain = true;
+        send(currentMsgId);
+        return ok;
+    }
+
+    /**
+     * Completes the writes acknowledged by a `written` event. Writes of the normal priority are acknowledged in order,
+     * so the event of such a write also completes the earlier ones that were not acknowledged on their own.
+     *
+     * @private
+     * @param {{ msgId: number, err?: string }} evt
+     */
+    _onWritten(evt) {
+        const { msgId, err } = evt;
+        const index = this._pendingWrites.findIndex((write) => write.msgId === msgId);
+        if (index < 0) return;
+        let completed;
+        if (index === 0 || !this._pendingWrites[index].ordered) {
+            completed = this._pendingWrites.splice(index, 1);
+        } else {
+            const remaining = [];
+            completed = [];
+            for (let i = 0; i < this._pendingWrites.length; i++) {
+                const write = this._pendingWrites[i];
+                if (i <= index && write.ordered) completed.push(write);
+                else remaining.push(write);
+            }
+            this._pendingWrites = remaining;
+        }
+        this._resetTimeout();
+        for (let i = 0; i < completed.length; i++) {
+            const { byteLength, cb } = completed[i];
+            this._writeBufferSize -= byteLength;
+            if (!cb) continue;
+            // Only the write named by the event failed
+            if (err && i === completed.length - 1) cb(new Error(err));
+            else cb();
+        }
+        if (this.writableNeedDrain && this._pendingWrites.length === 0) {
+            this.writableNeedDrain = false;
+            this.emit('drain');
+        }
+    }
+
+    /**
+     * Raw data would desynchronize the frame decoder of the peer of a multiplexed socket.
+     *
+     * @private
+     * @param {number} byteLength
+     */
+    _checkRawWrite(byteLength) {
+        if (this._multiplex && byteLength > 0) {
+            throw new Error('Cannot write raw data to a multiplexed socket, use request() or respond().');
+        }
+    }
+
+    /**
+     * @private
+     * @param {'cork' | 'uncork'} method
+     * @param {boolean} [noDelay]
+     */
+    _callCorkMethod(method, noDelay) {
+        if (typeof NativeModules.TcpSockets[method] !== 'function') return;
+        if (this._pending) {
+            // The native socket does not exist until it connects
+            this.once('connect', () => this._callCorkMethod(method, noDelay));
+            return;
+        }
+        if (method === 'cork') NativeModules.TcpSockets.cork(this._id);
+        else NativeModules.TcpSockets.uncork(this._id, noDelay);
     }
 
     /**
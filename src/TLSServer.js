@@ -39,7 +39,7 @@ export default class TLSServer extends Server {
      * `server.listen()` call or `server.close()` has been called. Otherwise, an `ERR_SERVER_ALREADY_LISTEN`
      * error will be thrown.
      *
-     * @param {{ port: number; host: string; reuseAddress?: boolean}} options
+     * @param {import('./Server').ListenOptions} options
      * @param {() => void} [callback]
      * @override
      */
@@ -45,6 +45,7 @@ export default class TLSSocket extends Socket {
         // Avoid calling twice destroy() if an error occurs
         this._socket._errorListener?.remove();
         this.on('error', (error) => this._socket.emit('error', error));
+        this._multiplex = this._socket._multiplex;
         this._setConnected({
             // @ts-ignore
             localAddress: this._socket.localAddress,
@@ -0,0 +1,283 @@
+'use strict';
+
+import { NativeModules } from 'react-native';
+import EventEmitter from 'eventemitter3';
+import { Buffer } from 'buffer';
+import { nativeEventEmitter, getNextId } from './Globals';
+
+/**
+ * @typedef {'udp4' | 'udp6'} UdpSocketType
+ *
+ * @typedef {{
+ * type: UdpSocketType,
+ * reuseAddr?: boolean,
+ * receiveBufferSize?: number,
+ * sendBufferSize?: number,
+ * }} UdpSocketOptions
+ *
+ * @typedef {{ port?: number, address?: string }} BindOptions
+ *
+ * @typedef {{ address: string, family: string, port: number, size: number }} RemoteInfo
+ *
+ * @typedef {string | Buffer | Uint8Array} UdpMessage
+ *
+ * @typedef {object} UdpSocketEvents
+ * @property {(msg: Buffer, rinfo: RemoteInfo) => void} message
+ * @property {() => void} listening
+ * @property {() => void} close
+ * @property {(err: Error) => void} error
+ *
+ * @extends {EventEmitter<UdpSocketEvents, any>}
+ */
+export default class UdpSocket extends EventEmitter {
+    /**
+     * @param {UdpSocketOptions} options
+     * @param {(msg: Buffer, rinfo: RemoteInfo) => void} [messageListener] A listener for the `'message'` event
+     */
+    constructor(options, messageListener) {
+        super();
+        /** @package */
+        this._id = getNextId();
+        /** @private */
+        this._eventEmitter = nativeEventEmitter;
+        /** @type {EventEmitter<'written', any>} @private */
+        this._msgEvtEmitter = new EventEmitter();
+        /** @private */
+        this._options = options;
+        /** @type {'unbound' | 'binding' | 'bound' | 'closed'} @private */
+        this._state = 'unbound';
+        /** @private */
+        this._msgId = 0;
+        /** @type {{ data: Buffer, port: number, address: string, callback?: (err: Error | null, bytes?: number) => void }[]} @private */
+        this._sendQueue = [];
+        /** @private */
+        this._flushScheduled = false;
+        /** @type {import('./Socket').AddressInfo | undefined} @private */
+        this._address = undefined;
+        if (messageListener) this.on('message', messageListener);
+        this._registerEvents();
+    }
+
+    /**
+     * Binds the socket to `port` and `address`. An unbound socket is bound to a random port on all
+     * interfaces by its first `send()`.
+     *
+     * @param {number | BindOptions | (() => void)} [port]
+     * @param {string | (() => void)} [address]
+     * @param {() => void} [callback] A listener for the `'listening'` event
+     * @returns {UdpSocket}
+     */
+    bind(port, address, callback) {
+        if (this._state !== 'unbound') throw new Error('Socket is already bound');
+        /** @type {BindOptions} */
+        let bindOptions = {};
+        if (typeof port === 'function') callback = port;
+        else if (typeof port === 'object') bindOptions = port;
+        else if (typeof port === 'number') bindOptions = { port: port };
+        if (typeof address === 'function') callback = address;
+        else if (typeof address === 'string') bindOptions.address = address;
+        if (callback) this.once('listening', callback);
+
+        const nativeOptions = {
+            port: bindOptions.port ?? 0,
+            address: bindOptions.address ?? (this._options.type === 'udp6' ? '::' : '0.0.0.0'),
+            reuseAddress: this._options.reuseAddr ?? false,
+        };
+        if (this._options.receiveBufferSize !== undefined) {
+            nativeOptions.receiveBufferSize = this._options.receiveBufferSize;
+        }
+        if (this._options.sendBufferSize !== undefined) {
+            nativeOptions.sendBufferSize = this._options.sendBufferSize;
+        }
+        this._state = 'binding';
+        NativeModules.TcpSockets.bindDatagram(this._id, nativeOptions);
+        return this;
+    }
+
+    /**
+     * Sends a datagram to `port` and `address`, `localhost` by default.
+     *
+     * Datagrams sent during the same tick are handed to the native side in a single call.
+     *
+     * @param {UdpMessage | UdpMessage[]} msg Several messages are sent as one datagram
+     * @param {number} port
+     * @param {string | ((err: Error | null, bytes?: number) => void)} [address]
+     * @param {(err: Error | null, bytes?: number) => void} [callback]
+     */
+    send(msg, port, address, callback) {
+        if (this._state === 'closed') throw new Error('Not running');
+        if (typeof address === 'function') {
+            callback = address;
+            address = undefined;
+        }
+        const data = Array.isArray(msg)
+            ? Buffer.concat(msg.map((m) => this._generateSendBuffer(m)))
+            : this._generateSendBuffer(msg);
+        this._sendQueue.push({
+            data: data,
+            port: port,
+            address: address ?? (this._options.type === 'udp6' ? '::1' : '127.0.0.1'),
+            callback: callback,
+        });
+        if (this._state === 'unbound') this.bind();
+        if (this._state === 'bound') this._scheduleFlush();
+    }
+
+    /**
+     * @param {() => void} [callback] A listener for the `'close'` event
+     * @returns {UdpSocket}
+     */
+    close(callback) {
+        if (this._state === 'closed') throw new Error('Not running');
+        if (callback) this.once('close', callback);
+        if (this._state === 'unbound') {
+            this._setClosed();
+            this.emit('close');
+        } else {
+            NativeModules.TcpSockets.closeDatagram(this._id);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the bound `address`, the address `family` name and `port` of the socket.
+     *
+     * @returns {import('./Socket').AddressInfo | undefined}
+     */
+    address() {
+        return this._address;
+    }
+
+    /**
+     * Enables sending datagrams to broadcast addresses.
+     *
+     * @param {boolean} flag
+     */
+    setBroadcast(flag) {
+        if (this._state !== 'bound') throw new Error('Not running');
+        NativeModules.TcpSockets.setDatagramBroadcast(this._id, flag);
+    }
+
+    /**
+     * @private
+     */
+    _scheduleFlush() {
+        if (this._flushScheduled) return;
+        this._flushScheduled = true;
+        Promise.resolve().then(() => {
+            this._flushScheduled = false;
+            this._flush();
+        });
+    }
+
+    /**
+     * Sends every queued datagram in a single native call.
+     *
+     * @private
+     */
+    _flush() {
+        if (this._state !== 'bound' || this._sendQueue.length === 0) return;
+        const batch = this._sendQueue;
+        this._sendQueue = [];
+        const currentMsgId = this._msgId;
+        this._msgId = (this._msgId + 1) % Number.MAX_SAFE_INTEGER;
+        const msgEvtHandler = (/** @type {{id: number, msgId: number, err?: string}} */ evt) => {
+            const { msgId, err } = evt;
+            if (msgId !== currentMsgId) return;
+            this._msgEvtEmitter.removeListener('written', msgEvtHandler);
+            for (const datagram of batch) {
+                if (!datagram.callback) continue;
+                if (err) datagram.callback(new Error(err));
+                else datagram.callback(null, datagram.data.byteLength);
+            }
+        };
+        this._msgEvtEmitter.on('written', msgEvtHandler, this);
+        NativeModules.TcpSockets.sendDatagrams(
+            this._id,
+            batch.map((datagram) => ({
+                data: datagram.data.toString('base64'),
+                port: datagram.port,
+                address: datagram.address,
+            })),
+            currentMsgId
+        );
+    }
+
+    /**
+     * @private
+     * @param {UdpMessage} buffer
+     */
+    _generateSendBuffer(buffer) {
+        if (typeof buffer === 'string') {
+            return Buffer.from(buffer, 'utf8');
+        } else if (Buffer.isBuffer(buffer)) {
+            return buffer;
+        } else if (buffer instanceof Uint8Array) {
+            return Buffer.from(buffer);
+        } else {
+            throw new TypeError(`Invalid data, msg must be a string or buffer, not ${typeof buffer}`);
+        }
+    }
+
+    /**
+     * @private
+     */
+    _registerEvents() {
+        this._messageListener = this._eventEmitter.addListener('message', (evt) => {
+            if (evt.id !== this._id) return;
+            for (const message of evt.messages) {
+                const data = Buffer.from(message.data, 'base64');
+                this.emit('message', data, {
+                    address: message.address,
+                    family: message.family,
+                    port: message.port,
+                    size: data.byteLength,
+                });
+            }
+        });
+        this._listeningListener = this._eventEmitter.addListener('listening', (evt) => {
+            if (evt.id !== this._id) return;
+            this._state = 'bound';
+            this._address = {
+                address: evt.connection.localAddress,
+                port: evt.connection.localPort,
+                family: evt.connection.localFamily,
+            };
+            this.emit('listening');
+            this._scheduleFlush();
+        });
+        this._errorListener = this._eventEmitter.addListener('error', (evt) => {
+            if (evt.id !== this._id) return;
+            // A failed bind leaves the socket unusable
+            if (this._state === 'binding') this._setClosed();
+            this.emit('error', evt.error);
+        });
+        this._closeListener = this._eventEmitter.addListener('close', (evt) => {
+            if (evt.id !== this._id) return;
+            this._setClosed();
+            this.emit('close');
+        });
+        this._writtenListener = this._eventEmitter.addListener('written', (evt) => {
+            if (evt.id !== this._id) return;
+            this._msgEvtEmitter.emit('written', evt);
+        });
+    }
+
+    /**
+     * @private
+     */
+    _setClosed() {
+        this._state = 'closed';
+        this._address = undefined;
+        const pending = this._sendQueue;
+        this._sendQueue = [];
+        for (const datagram of pending) {
+            if (datagram.callback) datagram.callback(new Error('Socket closed before sending'));
+        }
+        this._messageListener?.remove();
+        this._listeningListener?.remove();
+        this._errorListener?.remove();
+        this._closeListener?.remove();
+        this._writtenListener?.remove();
+    }
+}
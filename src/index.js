@@ -1,9 +1,11 @@
 'use strict';
 
+import { NativeModules } from 'react-native';
 import Server from './Server';
 import Socket from './Socket';
 import TLSServer from './TLSServer';
 import TLSSocket from './TLSSocket';
+import UdpSocket from './UdpSocket';
 
 /**
  * @typedef {object} ServerOptions
@@ -12,6 +14,38 @@ import TLSSocket from './TLSSocket';
  * @property {number} [keepAliveInitialDelay]
  * @property {boolean} [allowHalfOpen]
  * @property {boolean} [pauseOnConnect]
+ *
+ * @typedef {object} EventQueueStats
+ * @property {number} depth Events waiting to be emitted
+ * @property {number} maxDepth Largest number of events that have been waiting at once
+ * @property {number} dispatched Events emitted so far
+ * @property {number} averageLatency Average milliseconds between a native event and its emission
+ * @property {number} maxLatency Largest milliseconds between a native event and its emission
+ *
+ * @typedef {object} LatencyHistogram
+ * @property {number} count Durations recorded
+ * @property {number} average Average duration in milliseconds
+ * @property {number} p50 Median in milliseconds, rounded up to the bound of its bucket
+ * @property {number} p90 90th percentile in milliseconds, rounded up to the bound of its bucket
+ * @property {number} p99 99th percentile in milliseconds, rounded up to the bound of its bucket
+ * @property {number} max Longest duration in milliseconds
+ * @property {number[]} buckets Durations under 1ms, then from `2^(i-1)` to `2^i` milliseconds for bucket `i`, the last one unbounded
+ *
+ * @typedef {{ [phase in keyof import('./Socket').ConnectTimings]: LatencyHistogram }} ConnectTimingStats
+ *
+ * @typedef {object} TracingOptions
+ * @property {'off' | 'systrace' | 'buffer'} mode `'systrace'` writes `android.os.Trace` sections, `'buffer'` keeps the last spans for `dumpTrace()`
+ * @property {number} [capacity] Spans kept in `'buffer'` mode, 4096 by default
+ *
+ * @typedef {object} TraceSpan
+ * @property {string} name One of `'tcp connect'`, `'tcp handshake'`, `'tcp accept'`, `'tcp read-to-emit'` and `'tcp write-to-ack'`
+ * @property {number} id Id of the socket, of the server for `'tcp accept'`
+ * @property {number} start Start in milliseconds of a monotonic clock
+ * @property {number} duration Milliseconds
+ *
+ * @typedef {object} TraceDump
+ * @property {TraceSpan[]} spans Spans ended since the last dump, oldest first
+ * @property {number} dropped Spans overwritten before being dumped
  */
 
 /**
@@ -62,6 +96,89 @@ function createConnection(options, callback) {
     return tcpSocket.connect(options, callback);
 }
 
+/**
+ * Creates a new UDP socket.
+ *
+ * @param {import('./UdpSocket').UdpSocketOptions | import('./UdpSocket').UdpSocketType} options
+ * @param {(msg: import('buffer').Buffer, rinfo: import('./UdpSocket').RemoteInfo) => void} [messageListener] A listener for the `'message'` event
+ * @returns {UdpSocket}
+ */
+function createSocket(options, messageListener) {
+    return new UdpSocket(typeof options === 'string' ? { type: options } : options, messageListener);
+}
+
+/**
+ * Get the counters of the native queue of socket events waiting to be emitted to JS.
+ *
+ * @returns {Promise<EventQueueStats>}
+ */
+function getEventQueueStats() {
+    if (typeof NativeModules.TcpSockets.getEventQueueStats !== 'function') {
+        return Promise.reject(new Error('getEventQueueStats() is not supported on this platform'));
+    }
+    return NativeModules.TcpSockets.getEventQueueStats();
+}
+
+/**
+ * Limits the bandwidth shared by every socket of the app, on top of the limits of each socket.
+ *
+ * @param {import('./Socket').Bandwidth} bandwidth
+ */
+function setGlobalBandwidth(bandwidth) {
+    if (typeof NativeModules.TcpSockets.setGlobalBandwidth !== 'function') {
+        throw new Error('setGlobalBandwidth() is not supported on this platform');
+    }
+    NativeModules.TcpSockets.setGlobalBandwidth(bandwidth.read || 0, bandwidth.write || 0);
+}
+
+/**
+ * Get the time sockets spent waiting for the global bandwidth limits.
+ *
+ * @returns {Promise<import('./Socket').BandwidthStats>}
+ */
+function getBandwidthStats() {
+    if (typeof NativeModules.TcpSockets.getGlobalBandwidthStats !== 'function') {
+        return Promise.reject(new Error('getBandwidthStats() is not supported on this platform'));
+    }
+    return NativeModules.TcpSockets.getGlobalBandwidthStats();
+}
+
+/**
+ * Get the histograms of the connection phases of the client sockets since the app started.
+ *
+ * @returns {Promise<ConnectTimingStats>}
+ */
+function getConnectTimingStats() {
+    if (typeof NativeModules.TcpSockets.getConnectTimingStats !== 'function') {
+        return Promise.reject(new Error('getConnectTimingStats() is not supported on this platform'));
+    }
+    return NativeModules.TcpSockets.getConnectTimingStats();
+}
+
+/**
+ * Traces the connections, TLS handshakes, accepts, data events and write acknowledgements of every socket.
+ *
+ * @param {TracingOptions} options
+ */
+function setTracing(options) {
+    if (typeof NativeModules.TcpSockets.setTracing !== 'function') {
+        throw new Error('setTracing() is not supported on this platform');
+    }
+    NativeModules.TcpSockets.setTracing(options);
+}
+
+/**
+ * Get the spans recorded in `'buffer'` tracing mode since the last call.
+ *
+ * @returns {Promise<TraceDump>}
+ */
+function dumpTrace() {
+    if (typeof NativeModules.TcpSockets.dumpTrace !== 'function') {
+        return Promise.reject(new Error('dumpTrace() is not supported on this platform'));
+    }
+    return NativeModules.TcpSockets.dumpTrace();
+}
+
 // IPv4 Segment
 const v4Seg = '(?:[0-9]|[1-9][0-9]|1[0-9][0-9]|2[0-4][0-9]|25[0-5])';
 const v4Str = `(${v4Seg}[.]){3}${v4Seg}`;
@@ -117,13 +234,21 @@ export default {
     createConnection,
     createTLSServer,
     connectTLS,
+    createSocket,
     isIP,
     isIPv4,
     isIPv6,
+    getEventQueueStats,
+    setGlobalBandwidth,
+    getBandwidthStats,
+    getConnectTimingStats,
+    setTracing,
+    dumpTrace,
     Server,
     Socket,
     TLSServer,
     TLSSocket,
+    UdpSocket,
     hasIdentity: TLSSocket.hasIdentity,
 };
 
@@ -134,12 +259,20 @@ module.exports = {
     createConnection,
     createTLSServer,
     connectTLS,
+    createSocket,
     isIP,
     isIPv4,
     isIPv6,
+    getEventQueueStats,
+    setGlobalBandwidth,
+    getBandwidthStats,
+    getConnectTimingStats,
+    setTracing,
+    dumpTrace,
     Server,
     Socket,
     TLSServer,
     TLSSocket,
+    UdpSocket,
     hasIdentity: TLSSocket.hasIdentity,
 };